@@ -24,6 +24,7 @@ import org.conqat.lib.commons.string.StringUtils;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.server.ServerProperties;
 
+import com.teamscale.client.TeamscaleServer;
 import com.teamscale.jacoco.agent.options.AgentOptions;
 import com.teamscale.jacoco.agent.upload.IUploadRetry;
 import com.teamscale.jacoco.agent.upload.IUploader;
@@ -42,6 +43,12 @@ import com.teamscale.report.jacoco.dump.Dump;
  */
 public class Agent extends AgentBase {
 
+	/**
+	 * How long the shutdown waits for pending uploads once all dumps have been converted. The conversions themselves
+	 * are never abandoned.
+	 */
+	private static final Duration UPLOAD_SHUTDOWN_TIMEOUT = Duration.ofMinutes(1);
+
 	/** Converts binary data to XML. */
 	private final JaCoCoXmlReportGenerator generator;
 
@@ -51,6 +58,9 @@ public class Agent extends AgentBase {
 	/** Stores the XML files. */
 	protected final IUploader uploader;
 
+	/** Dumps, converts and uploads the coverage in the background. */
+	private final DumpPipeline dumpPipeline;
+
 	/** Constructor. */
 	public Agent(AgentOptions options, Instrumentation instrumentation)
 			throws IllegalStateException, UploaderException {
@@ -61,10 +71,12 @@ public class Agent extends AgentBase {
 		retryUnsuccessfulUploads(options, uploader);
 		generator = new JaCoCoXmlReportGenerator(options.getClassDirectoriesOrZips(),
 				options.getLocationIncludeFilter(), options.getDuplicateClassFileBehavior(),
-				options.shouldIgnoreUncoveredClasses(), wrap(logger));
+				options.shouldIgnoreUncoveredClasses(), options.shouldCacheClassStructure(), wrap(logger));
+		dumpPipeline = new DumpPipeline(controller, this::convertToXml, uploader, this::getUploadTarget,
+				options.getDumpQueueSize(), options.getDumpQueueOverflowPolicy());
 
 		if (options.shouldDumpInIntervals()) {
-			timer = new Timer(this::dumpReport, Duration.ofMinutes(options.getDumpIntervalInMinutes()));
+			timer = new Timer(dumpPipeline::dumpInBackground, Duration.ofMinutes(options.getDumpIntervalInMinutes()));
 			timer.start();
 			logger.info("Dumping every {} minutes.", options.getDumpIntervalInMinutes());
 		}
@@ -125,8 +137,9 @@ public class Agent extends AgentBase {
 			timer.stop();
 		}
 		if (options.shouldDumpOnExit()) {
-			dumpReport();
+			dumpPipeline.dumpInBackground();
 		}
+		dumpPipeline.shutdown(UPLOAD_SHUTDOWN_TIMEOUT);
 
 		try {
 			deleteDirectoryIfEmpty(options.getOutputDirectory());
@@ -153,39 +166,27 @@ public class Agent extends AgentBase {
 	}
 
 	/**
-	 * Dumps the current execution data, converts it, writes it to the output
-	 * directory defined in {@link #options} and uploads it if an uploader is
-	 * configured. Logs any errors, never throws an exception.
+	 * Dumps the current execution data and waits until it has been converted, written to the output directory defined
+	 * in {@link #options} and uploaded if an uploader is configured. Logs any errors, never throws an exception.
 	 */
 	public void dumpReport() {
-		logger.debug("Starting dump");
-
-		try {
-			dumpReportUnsafe();
-		} catch (Throwable t) {
-			// we want to catch anything in order to avoid crashing the whole system under
-			// test
-			logger.error("Dump job failed with an exception", t);
-		}
+		dumpPipeline.dumpAndWait();
 	}
 
-	private void dumpReportUnsafe() {
-		Dump dump;
-		try {
-			dump = controller.dumpAndReset();
-		} catch (JacocoRuntimeController.DumpException e) {
-			logger.error("Dumping failed, retrying later", e);
-			return;
-		}
+	/**
+	 * Returns the project, partition and commit or revision to which the coverage is currently uploaded. The partition
+	 * and commit can be changed at runtime via the REST API.
+	 */
+	private String getUploadTarget() {
+		TeamscaleServer server = options.getTeamscaleServerOptions();
+		return server.project + "/" + server.partition + "@" + server.commit + "/" + server.revision;
+	}
 
+	/** Converts the dump to an XML report in the output directory. */
+	private CoverageFile convertToXml(Dump dump) throws IOException, EmptyReportException {
 		try (Benchmark ignored = new Benchmark("Generating the XML report")) {
 			File outputFile = options.createNewFileInOutputDirectory("jacoco", "xml");
-			CoverageFile coverageFile = generator.convert(dump, outputFile);
-			uploader.upload(coverageFile);
-		} catch (IOException e) {
-			logger.error("Converting binary dump to XML failed", e);
-		} catch (EmptyReportException e) {
-			logger.error("No coverage was collected. " + e.getMessage(), e);
+			return generator.convert(dump, outputFile);
 		}
 	}
 }
@@ -0,0 +1,423 @@
+package com.teamscale.jacoco.agent;
+
+import com.teamscale.jacoco.agent.options.EDumpQueueOverflowPolicy;
+import com.teamscale.jacoco.agent.upload.IUploader;
+import com.teamscale.jacoco.agent.util.DaemonThreadFactory;
+import com.teamscale.jacoco.agent.util.LoggingUtils;
+import com.teamscale.report.jacoco.CoverageFile;
+import com.teamscale.report.jacoco.EmptyReportException;
+import com.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.teamscale.jacoco.agent.upload.teamscale.TeamscaleUploader.RETRY_UPLOAD_FILE_SUFFIX;
+
+/**
+ * Dumps, converts and uploads coverage in three stages, each on its own background thread, so that a slow conversion
+ * or upload never delays taking the next dump.
+ * <p>
+ * Dumps wait in a bounded queue for their conversion. If the queue is full, the {@link EDumpQueueOverflowPolicy}
+ * decides whether the new dump is merged into the most recent one or the oldest dump is discarded. The conversion
+ * stage only takes the next dump once there is room for its report in the upload stage, so a slow upload lets the
+ * dumps pile up in the queue, where they can still be merged, rather than converted reports on disk.
+ * <p>
+ * If the uploader marks a report for upload retry, e.g. because Teamscale is not available, its dump is kept and merged
+ * into the next dump. Once the report of the merged dump has been uploaded or marked for upload retry itself, the
+ * older reports are deleted. So even after a long outage, only a single report per upload target is left for the
+ * upload retry at the next agent start. Since the commit, revision and partition can be changed at runtime, dumps are
+ * only merged if their upload target is the same. Otherwise, the older reports are kept for the upload retry.
+ */
+/* package */ class DumpPipeline {
+
+	/** Converts a dump to a coverage report. */
+	/* package */ interface IDumpConverter {
+
+		/** Converts the given dump. */
+		CoverageFile convert(Dump dump) throws IOException, EmptyReportException;
+	}
+
+	/** The logger. */
+	private final Logger logger = LoggingUtils.getLogger(this);
+
+	/** Controls the JaCoCo runtime. */
+	private final JacocoRuntimeController controller;
+
+	/** Converts the dumps. */
+	private final IDumpConverter converter;
+
+	/** Uploads the converted reports. */
+	private final IUploader uploader;
+
+	/** Returns a description of where the reports are currently uploaded to, e.g. the commit and partition. */
+	private final Supplier<String> uploadTarget;
+
+	/** The maximum number of dumps that wait for their conversion. */
+	private final int maxPendingDumps;
+
+	/** What happens to new dumps if {@link #maxPendingDumps} is reached. */
+	private final EDumpQueueOverflowPolicy overflowPolicy;
+
+	/** The dumps that wait for their conversion, oldest first. Guarded by this. */
+	private final Deque<Dump> pendingDumps = new ArrayDeque<>();
+
+	/**
+	 * The merged dumps of all reports whose upload failed and that have not been merged into a newer dump yet or null.
+	 * Guarded by this.
+	 */
+	private Dump failedUploadsDump = null;
+
+	/** The upload target of the {@link #failedUploadsDump}. Guarded by this. */
+	private String failedUploadsTarget = null;
+
+	/** The reports of the {@link #failedUploadsDump}, which are marked for upload retry. Guarded by this. */
+	private final List<CoverageFile> failedUploadReports = new ArrayList<>();
+
+	/** Limits the number of converted reports that wait for their upload. */
+	private final Semaphore uploadSlots;
+
+	/** Takes the dumps. */
+	private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(
+			new DaemonThreadFactory(DumpPipeline.class, "snapshot thread"));
+
+	/** Converts the dumps. */
+	private final ExecutorService conversionExecutor = Executors.newSingleThreadExecutor(
+			new DaemonThreadFactory(DumpPipeline.class, "conversion thread"));
+
+	/** Uploads the reports. */
+	private final ExecutorService uploadExecutor = Executors.newSingleThreadExecutor(
+			new DaemonThreadFactory(DumpPipeline.class, "upload thread"));
+
+	/**
+	 * Constructor.
+	 *
+	 * @param uploadTarget Returns a description of where the reports are currently uploaded to. Only dumps with equal
+	 *                     descriptions are merged.
+	 * @param queueSize    The maximum number of dumps that wait for their conversion and of reports that wait for
+	 *                     their upload.
+	 */
+	/* package */ DumpPipeline(JacocoRuntimeController controller, IDumpConverter converter, IUploader uploader,
+								Supplier<String> uploadTarget, int queueSize,
+								EDumpQueueOverflowPolicy overflowPolicy) {
+		this.controller = controller;
+		this.converter = converter;
+		this.uploader = uploader;
+		this.uploadTarget = uploadTarget;
+		this.maxPendingDumps = queueSize;
+		this.overflowPolicy = overflowPolicy;
+		this.uploadSlots = new Semaphore(queueSize);
+	}
+
+	/** Takes a dump in the background. Its conversion and upload also happen in the background. */
+	/* package */ Future<?> dumpInBackground() {
+		return snapshotExecutor.submit(this::takeDump);
+	}
+
+	/** Takes a dump and waits until it and all dumps before it have been converted and uploaded. */
+	/* package */ void dumpAndWait() {
+		await(dumpInBackground());
+		awaitPendingWork();
+	}
+
+	/** Waits until all dumps that have been taken so far have been converted and uploaded. */
+	/* package */ void awaitPendingWork() {
+		await(snapshotExecutor.submit(() -> {
+		}));
+		// the conversion stage hands reports to the upload stage before its tasks finish
+		await(conversionExecutor.submit(() -> {
+		}));
+		await(uploadExecutor.submit(() -> {
+		}));
+	}
+
+	/**
+	 * Lets the stages finish their pending work one after the other and stops their threads. The dumps are always
+	 * converted completely, however long that takes, so that no coverage is lost. Only the uploads are abandoned once
+	 * the given timeout has passed after the conversions have finished, so that a hanging upload can't block the
+	 * shutdown of the JVM. Reports whose upload is abandoned are left on disk.
+	 */
+	/* package */ void shutdown(Duration uploadTimeout) {
+		// the earlier stages hand their work to the later stages, so they must be terminated first
+		snapshotExecutor.shutdown();
+		awaitTermination(snapshotExecutor);
+		// no more dumps are taken, so the remaining ones are converted without waiting for room in the upload stage,
+		// which a hanging upload would never free
+		uploadSlots.release(maxPendingDumps);
+		conversionExecutor.shutdown();
+		awaitTermination(conversionExecutor);
+		uploadExecutor.shutdown();
+		try {
+			if (uploadExecutor.awaitTermination(uploadTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+				return;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		int abandonedUploads = uploadExecutor.shutdownNow().size();
+		logger.error("The uploads did not finish within {} seconds. Abandoning {} queued uploads. Their reports are "
+				+ "left on disk.", uploadTimeout.getSeconds(), abandonedUploads);
+	}
+
+	/** Waits until the executor has terminated. */
+	private static void awaitTermination(ExecutorService executor) {
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				// keep waiting, the conversion of a large application may take several minutes
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Waits for the given task. Failures have already been logged by the task itself. */
+	private void await(Future<?> future) {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			logger.error("Dump pipeline task failed", e.getCause());
+		}
+	}
+
+	/** Dumps the execution data of the runtime and queues it for conversion. */
+	private void takeDump() {
+		logger.debug("Starting dump");
+		try {
+			takeDumpUnsafe();
+		} catch (Throwable t) {
+			// we want to catch anything in order to avoid crashing the whole system under test
+			logger.error("Dump job failed with an exception", t);
+		}
+	}
+
+	private void takeDumpUnsafe() {
+		Dump dump;
+		try {
+			dump = controller.dumpAndReset();
+		} catch (JacocoRuntimeController.DumpException e) {
+			logger.error("Dumping failed, retrying later", e);
+			return;
+		}
+		if (dump.store.getContents().isEmpty()) {
+			logger.info("No classes were executed since the last dump. Skipping the conversion and upload.");
+			return;
+		}
+
+		enqueue(dump);
+		conversionExecutor.execute(this::convertNextDump);
+	}
+
+	/** Adds the dump to the {@link #pendingDumps} and applies the {@link #overflowPolicy} if the queue is full. */
+	/* package */
+	synchronized void enqueue(Dump dump) {
+		if (pendingDumps.size() < maxPendingDumps) {
+			pendingDumps.addLast(dump);
+			return;
+		}
+
+		switch (overflowPolicy) {
+			case MERGE:
+				logger.warn("{} dumps are waiting for their conversion. Merging the new dump into the latest one.",
+						pendingDumps.size());
+				pendingDumps.addLast(merge(pendingDumps.pollLast(), dump));
+				return;
+			case DROP_OLDEST:
+				logger.warn("{} dumps are waiting for their conversion. Discarding the coverage of the oldest one.",
+						pendingDumps.size());
+				pendingDumps.pollFirst();
+				pendingDumps.addLast(dump);
+				return;
+			default:
+				throw new IllegalStateException("Unknown overflow policy " + overflowPolicy);
+		}
+	}
+
+	/** Returns the oldest pending dump or null if there is none. */
+	/* package */
+	synchronized Dump pollPendingDump() {
+		return pendingDumps.pollFirst();
+	}
+
+	/** Merges the newer dump into the older one. The older dump must not be used anymore afterwards. */
+	private static Dump merge(Dump older, Dump newer) {
+		for (ExecutionData data : newer.store.getContents()) {
+			older.store.put(data);
+		}
+		SessionInfo info = new SessionInfo(newer.info.getId(),
+				Math.min(older.info.getStartTimeStamp(), newer.info.getStartTimeStamp()),
+				newer.info.getDumpTimeStamp());
+		return new Dump(info, older.store);
+	}
+
+	/**
+	 * Converts the oldest pending dump and hands the report to the upload stage. Waits for room in the upload stage
+	 * first, so that the dump can still be merged while the uploads are lagging behind. The dumps of failed uploads to
+	 * the current upload target are merged into the converted dump, so that its report replaces their reports.
+	 */
+	private void convertNextDump() {
+		try {
+			uploadSlots.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		boolean uploadScheduled = false;
+		Dump dump = null;
+		List<CoverageFile> supersededReports = new ArrayList<>();
+		try {
+			dump = pollPendingDump();
+			if (dump == null) {
+				// the dump of this task has been merged into another one or discarded
+				return;
+			}
+			String target = uploadTarget.get();
+			synchronized (this) {
+				if (failedUploadsDump != null && !target.equals(failedUploadsTarget)) {
+					forgetFailedUploads();
+				}
+				if (failedUploadsDump != null) {
+					dump = merge(failedUploadsDump, dump);
+					failedUploadsDump = null;
+				}
+				supersededReports.addAll(failedUploadReports);
+				failedUploadReports.clear();
+			}
+			ConvertedDump convertedDump = new ConvertedDump(dump, target, converter.convert(dump),
+					supersededReports);
+			uploadExecutor.execute(() -> upload(convertedDump));
+			uploadScheduled = true;
+		} catch (IOException e) {
+			logger.error("Converting binary dump to XML failed", e);
+		} catch (EmptyReportException e) {
+			logger.error("No coverage was collected. " + e.getMessage(), e);
+		} catch (Throwable t) {
+			// we want to catch anything in order to avoid crashing the whole system under test
+			logger.error("Converting the dump failed with an exception", t);
+		} finally {
+			if (!uploadScheduled) {
+				if (!supersededReports.isEmpty()) {
+					rememberFailedUpload(dump, uploadTarget.get(), supersededReports);
+				}
+				uploadSlots.release();
+			}
+		}
+	}
+
+	/**
+	 * Uploads the report and frees its slot in the upload stage. If the uploader marked the report for upload retry,
+	 * the dump is kept to be merged into the next dump. Either way, the report replaces the reports that it supersedes,
+	 * unless the upload target has changed since they were merged.
+	 */
+	private void upload(ConvertedDump convertedDump) {
+		try {
+			// the uploader reads the target when uploading, which may differ from the one the dump was merged for
+			String target = uploadTarget.get();
+			uploader.upload(convertedDump.report);
+			if (isMarkedForUploadRetry(convertedDump.report)) {
+				rememberFailedUpload(convertedDump.dump, target, Collections.singletonList(convertedDump.report));
+			}
+			if (target.equals(convertedDump.target)) {
+				deleteReports(convertedDump.supersededReports);
+			} else {
+				logger.warn("The upload target changed to {} during the conversion. The reports {} of failed uploads "
+						+ "to {} are kept for the upload retry at the next agent start.", target,
+						convertedDump.supersededReports, convertedDump.target);
+			}
+		} catch (Throwable t) {
+			// we want to catch anything in order to avoid crashing the whole system under test
+			logger.error("Uploading the coverage failed with an exception", t);
+		} finally {
+			uploadSlots.release();
+		}
+	}
+
+	/**
+	 * Merges the dump into the {@link #failedUploadsDump} and remembers the reports of the dump. If the failed uploads
+	 * so far went to another upload target, they are forgotten instead.
+	 */
+	private synchronized void rememberFailedUpload(Dump dump, String target, List<CoverageFile> reports) {
+		if (failedUploadsDump != null && !target.equals(failedUploadsTarget)) {
+			forgetFailedUploads();
+		}
+		if (failedUploadsDump == null) {
+			failedUploadsDump = dump;
+			failedUploadsTarget = target;
+		} else {
+			failedUploadsDump = merge(dump, failedUploadsDump);
+		}
+		failedUploadReports.addAll(reports);
+	}
+
+	/**
+	 * Stops merging the {@link #failedUploadsDump} into newer dumps, e.g. because the upload target has changed. Its
+	 * reports stay on disk, so they are uploaded to their own target by the upload retry at the next agent start.
+	 */
+	private synchronized void forgetFailedUploads() {
+		logger.info("The upload target changed to {}. The reports {} of failed uploads to {} are kept for the upload "
+				+ "retry at the next agent start.", uploadTarget.get(), failedUploadReports, failedUploadsTarget);
+		failedUploadsDump = null;
+		failedUploadsTarget = null;
+		failedUploadReports.clear();
+	}
+
+	/** Returns whether the uploader left the report on disk for an upload retry at the next agent start. */
+	private static boolean isMarkedForUploadRetry(CoverageFile report) {
+		return new File(report + RETRY_UPLOAD_FILE_SUFFIX).exists();
+	}
+
+	/** Deletes the reports along with their upload retry marker. */
+	private void deleteReports(List<CoverageFile> reports) {
+		for (CoverageFile report : reports) {
+			try {
+				Files.deleteIfExists(Paths.get(report + RETRY_UPLOAD_FILE_SUFFIX));
+				Files.deleteIfExists(Paths.get(report.toString()));
+			} catch (IOException e) {
+				logger.warn("Failed to delete the report {}, whose coverage is contained in a newer report. "
+						+ "Please delete it manually to avoid uploading its coverage twice.", report, e);
+			}
+		}
+	}
+
+	/** A converted dump that is waiting for its upload. */
+	private static class ConvertedDump {
+
+		/** The dump, which is kept in case the upload fails. */
+		private final Dump dump;
+
+		/** The upload target for which the reports of failed uploads have been merged into the {@link #dump}. */
+		private final String target;
+
+		/** The report of the {@link #dump}. */
+		private final CoverageFile report;
+
+		/** The reports of failed uploads, whose dumps have been merged into the {@link #dump}. */
+		private final List<CoverageFile> supersededReports;
+
+		private ConvertedDump(Dump dump, String target, CoverageFile report, List<CoverageFile> supersededReports) {
+			this.dump = dump;
+			this.target = target;
+			this.report = report;
+			this.supersededReports = supersededReports;
+		}
+	}
+}
@@ -8,6 +8,7 @@ package com.teamscale.jacoco.agent;
 import com.teamscale.report.jacoco.dump.Dump;
 import org.jacoco.agent.rt.IAgent;
 import org.jacoco.agent.rt.RT;
+import org.jacoco.agent.rt.internal_4742761.core.runtime.RuntimeData;
 import org.jacoco.core.data.ExecutionDataReader;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.ISessionInfoVisitor;
@@ -41,18 +42,30 @@ public class JacocoRuntimeController {
 	/** JaCoCo's {@link RT} agent instance */
 	private final IAgent agent;
 
+	/** The execution data of JaCoCo's runtime in this JVM or null if the agent does not provide access to it. */
+	private final RuntimeData runtimeData;
+
 	/** Constructor. */
 	public JacocoRuntimeController(IAgent agent) {
 		this.agent = agent;
+		this.runtimeData = RuntimeDataCollector.getRuntimeData(agent);
 	}
 
 	/**
-	 * Dumps execution data and resets it.
+	 * Dumps execution data and resets it. If the agent is JaCoCo's runtime in this JVM, the probe arrays are copied
+	 * directly from its {@link RuntimeData} and only the copied hits are reset, so that hits of other probes recorded
+	 * during the dump are kept for the next one. Repeated hits of copied probes during the dump are still lost, so
+	 * this is not exact while tests run concurrently. Otherwise, the execution data is transferred in JaCoCo's binary
+	 * format.
 	 *
 	 * @throws DumpException if dumping fails. This should never happen in real life. Dumping should simply be retried
 	 *                       later if this ever happens.
 	 */
 	public Dump dumpAndReset() throws DumpException {
+		if (runtimeData != null) {
+			return RuntimeDataCollector.collect(runtimeData, true);
+		}
+
 		byte[] binaryData = agent.getExecutionData(true);
 
 		try (ByteArrayInputStream inputStream = new ByteArrayInputStream(binaryData)) {
@@ -0,0 +1,110 @@
+package com.teamscale.jacoco.agent;
+
+import com.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.agent.rt.IAgent;
+import org.jacoco.agent.rt.internal_4742761.core.data.ExecutionData;
+import org.jacoco.agent.rt.internal_4742761.core.data.IExecutionDataVisitor;
+import org.jacoco.agent.rt.internal_4742761.core.data.ISessionInfoVisitor;
+import org.jacoco.agent.rt.internal_4742761.core.data.SessionInfo;
+import org.jacoco.agent.rt.internal_4742761.core.runtime.RuntimeData;
+import org.jacoco.core.data.ExecutionDataStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the execution data of the JaCoCo runtime in this JVM directly from its probe arrays into a {@link Dump}.
+ * <p>
+ * In contrast to {@link IAgent#getExecutionData(boolean)}, the execution data is not serialized to
+ * JaCoCo's binary format and parsed again. Only the probe arrays of classes that have been executed are copied, which
+ * is also what the binary format would contain.
+ * <p>
+ * The runtime is locked only while the probe arrays are copied. Afterwards, only those probes are reset that were set
+ * in the copies. Application threads keep writing to the probe arrays during the whole dump. Resetting all probes at
+ * once, as JaCoCo does, loses every hit recorded after a class has been copied. This only narrows that window: a probe
+ * that is set in the copy and hit again before it is reset is still missing from the next dump. So dumping and
+ * resetting is not exact while code runs concurrently, e.g. it may attribute coverage to the wrong test if tests run in
+ * parallel.
+ * <p>
+ * As the runtime itself is not reset, the start time of its session is not updated by dumps.
+ */
+/* package */ class RuntimeDataCollector implements IExecutionDataVisitor, ISessionInfoVisitor {
+
+	/** The store that receives the copied execution data. */
+	private final ExecutionDataStore store = new ExecutionDataStore();
+
+	/** The info of the collected session. */
+	private org.jacoco.core.data.SessionInfo sessionInfo;
+
+	/** The live probe arrays of the runtime that have been copied, in the same order as {@link #copiedProbes}. */
+	private final List<boolean[]> liveProbes = new ArrayList<>();
+
+	/** The copies of the {@link #liveProbes}. */
+	private final List<boolean[]> copiedProbes = new ArrayList<>();
+
+	/* package */ RuntimeDataCollector() {
+	}
+
+	/**
+	 * Returns the execution data of the given agent or null if it is not JaCoCo's runtime in this JVM, e.g. because it
+	 * is a mock.
+	 */
+	/* package */
+	static RuntimeData getRuntimeData(IAgent agent) {
+		if (agent instanceof org.jacoco.agent.rt.internal_4742761.Agent) {
+			return ((org.jacoco.agent.rt.internal_4742761.Agent) agent).getData();
+		}
+		return null;
+	}
+
+	/**
+	 * Copies the execution data of all classes that have been executed and optionally resets the copied probes of the
+	 * runtime afterwards.
+	 */
+	/* package */
+	static Dump collect(RuntimeData runtimeData, boolean reset) {
+		RuntimeDataCollector collector = new RuntimeDataCollector();
+		runtimeData.collect(collector, collector, false);
+		if (reset) {
+			collector.resetCopiedProbes();
+		}
+		return collector.getDump();
+	}
+
+	/**
+	 * Resets the probes of the runtime that were set when they were copied. Other probes are not touched. Hits of the
+	 * reset probes since they were copied are lost.
+	 */
+	/* package */ void resetCopiedProbes() {
+		for (int i = 0; i < liveProbes.size(); i++) {
+			boolean[] live = liveProbes.get(i);
+			boolean[] copy = copiedProbes.get(i);
+			for (int probe = 0; probe < copy.length; probe++) {
+				if (copy[probe]) {
+					live[probe] = false;
+				}
+			}
+		}
+	}
+
+	/** Returns the copied execution data. */
+	/* package */ Dump getDump() {
+		return new Dump(sessionInfo, store);
+	}
+
+	@Override
+	public void visitSessionInfo(SessionInfo info) {
+		sessionInfo = new org.jacoco.core.data.SessionInfo(info.getId(), info.getStartTimeStamp(),
+				info.getDumpTimeStamp());
+	}
+
+	@Override
+	public void visitClassExecution(ExecutionData data) {
+		if (data.hasHits()) {
+			boolean[] copy = data.getProbes().clone();
+			liveProbes.add(data.getProbes());
+			copiedProbes.add(copy);
+			store.put(new org.jacoco.core.data.ExecutionData(data.getId(), data.getName(), copy));
+		}
+	}
+}
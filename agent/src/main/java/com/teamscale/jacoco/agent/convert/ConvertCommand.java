@@ -22,6 +22,7 @@ import org.conqat.lib.commons.string.StringUtils;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -60,8 +61,8 @@ public class ConvertCommand implements ICommand {
 	/* package */ List<String> locationExcludeFilters = new ArrayList<>();
 
 	/** The directory to write the XML traces to. */
-	@Parameter(names = {"--in", "-i"}, required = true, description = "" + "The binary .exec file(s), test details and " +
-			"test executions to read. Can be a single file or a directory that is recursively scanned for relevant files.")
+	@Parameter(names = {"--in", "-i"}, required = true, description = "" + "The binary .exec file(s), test details, " +
+			"test executions and compact testwise coverage reports (*.tcov) to read. Can be a single file or a directory that is recursively scanned for relevant files.")
 	/* package */ List<String> inputFiles = new ArrayList<>();
 
 	/** The directory to write the XML traces to. */
@@ -87,11 +88,40 @@ public class ConvertCommand implements ICommand {
 			"coverage or jacoco coverage should be generated.")
 	/* package */ boolean shouldGenerateTestwiseCoverage = false;
 
+	/** Whether testwise coverage should be written in the compact binary format instead of JSON. */
+	@Parameter(names = {"--compact-testwise-coverage"}, required = false, arity = 0, description = "Whether " +
+			"testwise coverage should be written in a compact, gzip-compressed binary format instead of JSON. The " +
+			"report is written to a single file and must be converted to JSON before it can be uploaded to " +
+			"Teamscale, e.g. by passing it to the convert command as input.")
+	/* package */ boolean shouldWriteCompactTestwiseCoverage = false;
+
 	/** After how many tests testwise coverage should be split into multiple reports. */
 	@Parameter(names = {"--split-after", "-s"}, required = false, arity = 1, description = "After how many tests " +
 			"testwise coverage should be split into multiple reports (Default is 5000).")
 	private int splitAfter = 5000;
 
+	/** The file in which the analysis results of the class files are persisted between runs. */
+	@Parameter(names = {"--probes-cache-file"}, required = false, arity = 1, description = "File in which the " +
+			"analysis results of the class files are persisted between runs for testwise coverage generation. " +
+			"Classes contained in this file are not analyzed again. The file is created if it does not exist.")
+	/* package */ String probesCacheFile = null;
+
+	/** The number of threads used to analyze the class files. */
+	@Parameter(names = {"--analysis-threads"}, required = false, arity = 1, description = "The number of threads " +
+			"used to analyze the class files for testwise coverage generation (Default is 1).")
+	private int analysisThreads = 1;
+
+	/** The number of threads used to convert the sessions of the .exec files. */
+	@Parameter(names = {"--conversion-threads"}, required = false, arity = 1, description = "The number of threads " +
+			"used to convert the sessions of the .exec files to testwise coverage (Default is 1).")
+	private int conversionThreads = 1;
+
+	/** Regular expression for the IDs of the tests whose coverage should be converted. */
+	@Parameter(names = {"--test-id-pattern"}, required = false, arity = 1, description = "Regular expression that " +
+			"the IDs (uniform paths) of the tests must match completely to be included in the testwise coverage " +
+			"(Default is all tests).")
+	/* package */ String testIdPattern = null;
+
 	/** @see #classDirectoriesOrZips */
 	public List<File> getClassDirectoriesOrZips() throws AgentOptionParseException {
 		return ClasspathUtils
@@ -119,11 +149,39 @@ public class ConvertCommand implements ICommand {
 		return new File(outputFile);
 	}
 
+	/** @see #shouldWriteCompactTestwiseCoverage */
+	public boolean shouldWriteCompactTestwiseCoverage() {
+		return shouldWriteCompactTestwiseCoverage;
+	}
+
 	/** @see #splitAfter */
 	public int getSplitAfter() {
 		return splitAfter;
 	}
 
+	/** @see #probesCacheFile */
+	public File getProbesCacheFile() {
+		if (probesCacheFile == null) {
+			return null;
+		}
+		return new File(probesCacheFile);
+	}
+
+	/** @see #analysisThreads */
+	public int getAnalysisThreads() {
+		return analysisThreads;
+	}
+
+	/** @see #conversionThreads */
+	public int getConversionThreads() {
+		return conversionThreads;
+	}
+
+	/** @see #testIdPattern */
+	public String getTestIdPattern() {
+		return testIdPattern;
+	}
+
 	/** @see #duplicateClassFileBehavior */
 	public EDuplicateClassFileBehavior getDuplicateClassFileBehavior() {
 		return duplicateClassFileBehavior;
@@ -148,6 +206,10 @@ public class ConvertCommand implements ICommand {
 					"Cannot read the input file " + inputFile);
 		}
 
+		if (testIdPattern != null) {
+			validator.ensure(() -> Pattern.compile(testIdPattern));
+		}
+
 		validator.ensure(() -> {
 			CCSMAssert.isFalse(StringUtils.isEmpty(outputFile), "You must specify an output file");
 			File outputDir = getOutputFile().getAbsoluteFile().getParentFile();
@@ -8,10 +8,14 @@ import com.teamscale.report.ReportUtils;
 import com.teamscale.report.jacoco.EmptyReportException;
 import com.teamscale.report.jacoco.JaCoCoXmlReportGenerator;
 import com.teamscale.report.jacoco.dump.Dump;
+import com.teamscale.report.testwise.CompactTestwiseCoverageReportReader;
+import com.teamscale.report.testwise.CompactTestwiseCoverageReportWriter;
 import com.teamscale.report.testwise.ETestArtifactFormat;
+import com.teamscale.report.testwise.ITestwiseCoverageReportWriter;
 import com.teamscale.report.testwise.TestwiseCoverageReportWriter;
 import com.teamscale.report.testwise.jacoco.JaCoCoTestwiseReportGenerator;
 import com.teamscale.report.testwise.model.TestExecution;
+import com.teamscale.report.testwise.model.TestInfo;
 import com.teamscale.report.testwise.model.factory.TestInfoFactory;
 import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
 import com.teamscale.report.util.CommandLineLogger;
@@ -25,6 +29,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.function.Predicate;
 
 import static com.teamscale.jacoco.agent.util.LoggingUtils.wrap;
 
@@ -64,7 +69,10 @@ public class Converter {
 		}
 	}
 
-	/** Converts one .exec binary coverage file, test details and test execution files to JSON testwise coverage. */
+	/**
+	 * Converts one .exec binary coverage file, test details and test execution files to JSON testwise coverage. Tests
+	 * from compact testwise coverage reports are copied to the output, which converts them to JSON.
+	 */
 	public void runTestwiseCoverageReportGeneration() throws IOException, AgentOptionParseException {
 		List<TestDetails> testDetails = ReportUtils.readObjects(ETestArtifactFormat.TEST_LIST,
 				TestDetails[].class, arguments.getInputFiles());
@@ -73,12 +81,16 @@ public class Converter {
 
 		List<File> jacocoExecutionDataList = ReportUtils
 				.listFiles(ETestArtifactFormat.JACOCO, arguments.getInputFiles());
+		List<File> compactReports = ReportUtils
+				.listFiles(ETestArtifactFormat.COMPACT_TESTWISE_COVERAGE, arguments.getInputFiles());
 		ILogger logger = new CommandLineLogger();
 
 		JaCoCoTestwiseReportGenerator generator = new JaCoCoTestwiseReportGenerator(
 				arguments.getClassDirectoriesOrZips(),
 				getWildcardIncludeExcludeFilter(),
 				arguments.getDuplicateClassFileBehavior(),
+				arguments.getProbesCacheFile(),
+				arguments.getAnalysisThreads(),
 				logger
 		);
 
@@ -88,10 +100,38 @@ public class Converter {
 			logger.info(
 					"Writing report with " + testDetails.size() + " Details/" + testExecutions.size() + " Results");
 
-			try (TestwiseCoverageReportWriter coverageWriter = new TestwiseCoverageReportWriter(testInfoFactory,
-					arguments.getOutputFile(), arguments.getSplitAfter())) {
+			Predicate<String> testIdFilter = JaCoCoTestwiseReportGenerator.matchingSessionIds(
+					arguments.getTestIdPattern());
+			try (ITestwiseCoverageReportWriter coverageWriter = createTestwiseCoverageWriter(testInfoFactory)) {
 				for (File executionDataFile : jacocoExecutionDataList) {
-					generator.convertAndConsume(executionDataFile, coverageWriter);
+					generator.convertAndConsume(executionDataFile, testIdFilter, coverageWriter,
+							arguments.getConversionThreads(), true);
+				}
+				for (File compactReport : compactReports) {
+					copyTests(compactReport, testIdFilter, testInfoFactory, coverageWriter);
+				}
+			}
+		}
+	}
+
+	/** Creates the writer for the testwise coverage report in the requested format. */
+	private ITestwiseCoverageReportWriter createTestwiseCoverageWriter(
+			TestInfoFactory testInfoFactory) throws IOException {
+		if (arguments.shouldWriteCompactTestwiseCoverage()) {
+			return new CompactTestwiseCoverageReportWriter(testInfoFactory, arguments.getOutputFile(), true);
+		}
+		return new TestwiseCoverageReportWriter(testInfoFactory, arguments.getOutputFile(),
+				arguments.getSplitAfter());
+	}
+
+	/** Copies the tests of the given compact testwise coverage report that match the filter to the writer. */
+	private static void copyTests(File compactReport, Predicate<String> testIdFilter, TestInfoFactory testInfoFactory,
+								  ITestwiseCoverageReportWriter coverageWriter) throws IOException {
+		try (CompactTestwiseCoverageReportReader reader = new CompactTestwiseCoverageReportReader(compactReport)) {
+			for (TestInfo testInfo = reader.read(); testInfo != null; testInfo = reader.read()) {
+				if (testIdFilter.test(testInfo.uniformPath)) {
+					testInfoFactory.markAsProcessed(testInfo.uniformPath);
+					coverageWriter.write(testInfo);
 				}
 			}
 		}
@@ -128,6 +128,15 @@ public class AgentOptions {
 	/** Whether to dump coverage when the JVM shuts down. */
 	/* package */ boolean shouldDumpOnExit = true;
 
+	/**
+	 * How many dumps may wait for their conversion and how many converted reports may wait for their upload before
+	 * the {@link #dumpQueueOverflowPolicy} applies.
+	 */
+	/* package */ int dumpQueueSize = 3;
+
+	/** What happens to new dumps if the dump queue is full. */
+	/* package */ EDumpQueueOverflowPolicy dumpQueueOverflowPolicy = EDumpQueueOverflowPolicy.MERGE;
+
 	/**
 	 * Whether to search directories and jar files recursively for git.properties files
 	 */
@@ -180,6 +189,12 @@ public class AgentOptions {
 	 */
 	/* package */ boolean ignoreUncoveredClasses = false;
 
+	/**
+	 * Whether the analysis results of the class files should be kept in memory between XML conversions, so that only
+	 * classes with coverage need to be analyzed again.
+	 */
+	/* package */ boolean cacheClassStructure = false;
+
 	/**
 	 * The configuration necessary to upload files to an azure file storage
 	 */
@@ -201,6 +216,12 @@ public class AgentOptions {
 	 */
 	/* package */ boolean obfuscateSecurityRelatedOutputs = true;
 
+	/**
+	 * The exec file to which JaCoCo writes the coverage in the {@link ETestwiseCoverageMode#EXEC_FILE} mode. Created on
+	 * first access by {@link #getTestwiseExecFile()}.
+	 */
+	private File testwiseExecFile;
+
 	/**
 	 * Helper class that holds the process information, Teamscale client and profiler configuration and allows to
 	 * continuously update the profiler's info in Teamscale in the background via
@@ -275,6 +296,8 @@ public class AgentOptions {
 
 		validateSapNetWeaverConfig(validator);
 
+		validator.isTrue(dumpQueueSize > 0, "The dump queue size must be positive, but was " + dumpQueueSize);
+
 		validator.isFalse(!useTestwiseCoverageMode() && testImpactConfig.testEnvironmentVariable != null,
 				"You use 'test-env' but did not set 'mode' to 'TESTWISE'!");
 		if (useTestwiseCoverageMode()) {
@@ -619,6 +642,17 @@ public class AgentOptions {
 				.toFile();
 	}
 
+	/**
+	 * Returns the exec file to which JaCoCo writes the coverage in the {@link ETestwiseCoverageMode#EXEC_FILE} mode.
+	 * The file name is determined on the first call, so that JaCoCo and the agent use the same file.
+	 */
+	public synchronized File getTestwiseExecFile() throws IOException {
+		if (testwiseExecFile == null) {
+			testwiseExecFile = createNewFileInOutputDirectory("jacoco", "exec");
+		}
+		return testwiseExecFile;
+	}
+
 	/**
 	 * Creates a new file with the given prefix, extension and current timestamp and ensures that the parent folder
 	 * actually exists. One output folder is created per partition.
@@ -658,6 +692,16 @@ public class AgentOptions {
 		return dumpIntervalInMinutes;
 	}
 
+	/** @see #dumpQueueSize */
+	public int getDumpQueueSize() {
+		return dumpQueueSize;
+	}
+
+	/** @see #dumpQueueOverflowPolicy */
+	public EDumpQueueOverflowPolicy getDumpQueueOverflowPolicy() {
+		return dumpQueueOverflowPolicy;
+	}
+
 	/**
 	 * @see #duplicateClassFileBehavior
 	 */
@@ -728,8 +772,33 @@ public class AgentOptions {
 		return testImpactConfig.testwiseCoverageMode;
 	}
 
+	/** @see TestImpactConfig#probesCacheFile */
+	public File getProbesCacheFile() {
+		return testImpactConfig.probesCacheFile;
+	}
+
+	/** @see TestImpactConfig#analysisThreads */
+	public int getAnalysisThreads() {
+		return testImpactConfig.analysisThreads;
+	}
+
+	/** @see TestImpactConfig#splitAfter */
+	public int getTestwiseCoverageSplitAfter() {
+		return testImpactConfig.splitAfter;
+	}
+
+	/** @see TestImpactConfig#compressUpload */
+	public boolean shouldCompressTestwiseCoverageUpload() {
+		return testImpactConfig.compressUpload;
+	}
+
 	/** @see #ignoreUncoveredClasses */
 	public boolean shouldIgnoreUncoveredClasses() {
 		return ignoreUncoveredClasses;
 	}
+
+	/** @see #cacheClassStructure */
+	public boolean shouldCacheClassStructure() {
+		return cacheClassStructure;
+	}
 }
@@ -218,12 +218,21 @@ public class AgentOptionsParser {
 			case "ignore-uncovered-classes":
 				options.ignoreUncoveredClasses = Boolean.parseBoolean(value);
 				return true;
+			case "cache-class-structure":
+				options.cacheClassStructure = Boolean.parseBoolean(value);
+				return true;
 			case "obfuscate-security-related-outputs":
 				options.obfuscateSecurityRelatedOutputs = Boolean.parseBoolean(value);
 				return true;
 			case "dump-on-exit":
 				options.shouldDumpOnExit = Boolean.parseBoolean(value);
 				return true;
+			case "dump-queue-size":
+				options.dumpQueueSize = parseInt(key, value);
+				return true;
+			case "dump-queue-overflow":
+				options.dumpQueueOverflowPolicy = parseEnumValue(key, value, EDumpQueueOverflowPolicy.class);
+				return true;
 			case "search-git-properties-recursively":
 				options.searchGitPropertiesRecursively = Boolean.parseBoolean(value);
 				return true;
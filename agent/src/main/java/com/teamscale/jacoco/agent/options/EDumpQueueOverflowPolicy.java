@@ -0,0 +1,11 @@
+package com.teamscale.jacoco.agent.options;
+
+/** Describes what happens to a new dump if the queue of dumps that wait for their conversion is full. */
+public enum EDumpQueueOverflowPolicy {
+
+	/** The new dump is merged into the most recent dump in the queue, so that no coverage is lost. */
+	MERGE,
+
+	/** The oldest dump in the queue is discarded along with its coverage to make room for the new dump. */
+	DROP_OLDEST
+}
@@ -90,9 +90,7 @@ public class JacocoAgentOptionsBuilder {
 				sessionId = System.getenv(agentOptions.testImpactConfig.testEnvironmentVariable);
 			}
 			// when writing to a .exec file, we can instruct JaCoCo to do so directly
-			return "sessionid=" + sessionId + ",destfile=" + agentOptions.createNewFileInOutputDirectory("jacoco",
-							"exec")
-					.getAbsolutePath();
+			return "sessionid=" + sessionId + ",destfile=" + agentOptions.getTestwiseExecFile().getAbsolutePath();
 
 		} else {
 			// otherwise we don't need JaCoCo to perform any output of the .exec information
@@ -4,10 +4,10 @@ package com.teamscale.jacoco.agent.testimpact;
 import com.teamscale.jacoco.agent.JacocoRuntimeController;
 import com.teamscale.jacoco.agent.options.AgentOptions;
 import com.teamscale.report.testwise.jacoco.JaCoCoTestwiseReportGenerator;
-import org.conqat.lib.commons.filesystem.FileSystemUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Strategy for appending coverage into one json test-wise coverage file with one session per test.
@@ -20,8 +20,12 @@ public class CoverageToDiskStrategy extends CoverageToJsonStrategyBase {
 	}
 
 	@Override
-	protected void handleTestwiseCoverageJsonReady(String json) throws IOException {
-		File reportFile = agentOptions.createNewFileInPartitionOutputDirectory("testwise-coverage", "json");
-		FileSystemUtils.writeFileUTF8(reportFile, json);
+	protected File createReportFile() throws IOException {
+		return agentOptions.createNewFileInPartitionOutputDirectory("testwise-coverage", "json");
+	}
+
+	@Override
+	protected void handleTestwiseCoverageJsonReady(List<File> reportFiles) {
+		logger.info("Wrote testwise coverage to {}", reportFiles);
 	}
 }
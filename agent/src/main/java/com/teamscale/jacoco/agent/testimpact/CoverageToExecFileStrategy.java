@@ -8,11 +8,13 @@ import com.teamscale.report.testwise.model.TestExecution;
 import com.teamscale.report.testwise.model.TestInfo;
 import org.slf4j.Logger;
 
+import java.io.File;
 import java.io.IOException;
 
 /**
  * Strategy for appending coverage into one exec file with one session per test. Execution data will be stored in a json
- * file side-by-side with the exec file. Test executions are also appended into a single file.
+ * file side-by-side with the exec file. Test executions are also appended into a single file. The position of each
+ * test's session is recorded in an {@link com.teamscale.report.testwise.jacoco.ExecSessionIndex} next to the exec file.
  */
 public class CoverageToExecFileStrategy extends TestEventHandlerStrategyBase {
 
@@ -32,7 +34,12 @@ public class CoverageToExecFileStrategy extends TestEventHandlerStrategyBase {
 							TestExecution testExecution) throws JacocoRuntimeController.DumpException, CoverageGenerationException {
 		logger.debug("Test {} ended with execution {}. Writing exec file and test execution", test, testExecution);
 		super.testEnd(test, testExecution);
+		File execFile = getExecFile();
+		long offset = execFile == null ? 0 : execFile.length();
 		controller.dump();
+		if (execFile != null) {
+			appendToSessionIndex(execFile, test, offset);
+		}
 		if (testExecution != null) {
 			try {
 				testExecutionWriter.append(testExecution);
@@ -43,4 +50,14 @@ public class CoverageToExecFileStrategy extends TestEventHandlerStrategyBase {
 		}
 		return null;
 	}
+
+	/** Returns the exec file JaCoCo writes to or null if it cannot be determined. */
+	private File getExecFile() {
+		try {
+			return agentOptions.getTestwiseExecFile();
+		} catch (IOException e) {
+			logger.warn("Failed to determine the exec file. No session index is written.", e);
+			return null;
+		}
+	}
 }
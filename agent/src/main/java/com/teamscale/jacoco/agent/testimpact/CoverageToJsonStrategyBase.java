@@ -1,25 +1,31 @@
 package com.teamscale.jacoco.agent.testimpact;
 
 import com.teamscale.client.ClusteredTestDetails;
-import com.teamscale.client.JsonUtils;
 import com.teamscale.client.PrioritizableTestCluster;
 import com.teamscale.jacoco.agent.JacocoRuntimeController;
 import com.teamscale.jacoco.agent.options.AgentOptions;
 import com.teamscale.jacoco.agent.util.LoggingUtils;
+import com.teamscale.report.testwise.TestwiseCoverageReportWriter;
+import com.teamscale.report.testwise.jacoco.ExecSessionIndex;
 import com.teamscale.report.testwise.jacoco.JaCoCoTestwiseReportGenerator;
 import com.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
 import com.teamscale.report.testwise.model.TestExecution;
 import com.teamscale.report.testwise.model.TestInfo;
-import com.teamscale.report.testwise.model.TestwiseCoverage;
-import com.teamscale.report.testwise.model.TestwiseCoverageReport;
 import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
-import com.teamscale.report.testwise.model.builder.TestwiseCoverageReportBuilder;
+import com.teamscale.report.testwise.model.factory.TestInfoFactory;
 import org.slf4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.util.stream.Collectors.toList;
 
@@ -39,6 +45,9 @@ public abstract class CoverageToJsonStrategyBase extends TestEventHandlerStrateg
 	 */
 	private File testExecFile;
 	private final List<TestExecution> testExecutions = new ArrayList<>();
+
+	/** The number of sessions in {@link #testExecFile} by the uniform path of their test. */
+	private final Map<String, Integer> sessionCounts = new HashMap<>();
 	private List<ClusteredTestDetails> availableTests = new ArrayList<>();
 
 	private final JaCoCoTestwiseReportGenerator reportGenerator;
@@ -84,8 +93,12 @@ public abstract class CoverageToJsonStrategyBase extends TestEventHandlerStrateg
 			if (testExecFile == null) {
 				testExecFile = agentOptions.createNewFileInOutputDirectory("coverage", "exec");
 				testExecFile.deleteOnExit();
+				ExecSessionIndex.getIndexFile(testExecFile).deleteOnExit();
 			}
+			long offset = testExecFile.length();
 			controller.dumpToFileAndReset(testExecFile);
+			appendToSessionIndex(testExecFile, test, offset);
+			sessionCounts.merge(test, 1, Integer::sum);
 		} catch (IOException e) {
 			throw new JacocoRuntimeController.DumpException(
 					"Failed to write coverage to disk into " + testExecFile + "!",
@@ -102,20 +115,33 @@ public abstract class CoverageToJsonStrategyBase extends TestEventHandlerStrateg
 			return;
 		}
 
-		String testwiseCoverageJson = createTestwiseCoverageReport(partial);
-		handleTestwiseCoverageJsonReady(testwiseCoverageJson);
+		List<File> reportFiles = writeTestwiseCoverageReports(partial);
+		handleTestwiseCoverageJsonReady(reportFiles);
 	}
 
 	/**
-	 * Hook that is invoked when the JSON is ready for processed further.
+	 * Creates the file to which the testwise coverage report of the test run is written. If the report is split, the
+	 * further files are placed next to it.
+	 */
+	protected abstract File createReportFile() throws IOException;
+
+	/**
+	 * Hook that is invoked when the JSON has been written to the given report files and is ready for processed further.
+	 * Unless the report has been split, there is only a single file.
 	 */
-	protected abstract void handleTestwiseCoverageJsonReady(String json) throws IOException;
+	protected abstract void handleTestwiseCoverageJsonReady(List<File> reportFiles) throws IOException;
 
 	/**
-	 * Creates a testwise coverage report from the coverage collected in {@link #testExecFile} and the test execution
-	 * information in {@link #testExecutions}.
+	 * Writes a testwise coverage report from the coverage collected in {@link #testExecFile} and the test execution
+	 * information in {@link #testExecutions} to one or more files. The dumps are converted and written one after the
+	 * other, so that the coverage of the test run never needs to be kept in memory as a whole. Only the coverage of
+	 * tests with multiple sessions, e.g. parameterized tests or tests that have been run again, is kept until their
+	 * last session has been converted, so that each test is written only once.
+	 * <p>
+	 * The exec file is only deleted once the report has been written. If that fails, the coverage is kept and the
+	 * report of the next test run contains it as well.
 	 */
-	private String createTestwiseCoverageReport(boolean partial) throws IOException, CoverageGenerationException {
+	private List<File> writeTestwiseCoverageReports(boolean partial) throws IOException {
 		List<String> executionUniformPaths = testExecutions.stream().map(execution -> {
 			if (execution == null) {
 				return null;
@@ -129,19 +155,87 @@ public abstract class CoverageToJsonStrategyBase extends TestEventHandlerStrateg
 				availableTests.stream().map(test -> test.uniformPath).collect(toList()),
 				executionUniformPaths, partial);
 		reportGenerator.updateClassDirCache();
-		TestwiseCoverage testwiseCoverage = reportGenerator.convert(testExecFile);
-		logger.debug("Created testwise coverage report (containing coverage for tests `{}`)",
-				testwiseCoverage.getTests().stream().map(TestCoverageBuilder::getUniformPath).collect(toList()));
-
-		TestwiseCoverageReport report = TestwiseCoverageReportBuilder
-				.createFrom(availableTests, testwiseCoverage.getTests(), testExecutions, partial);
-
-		testExecFile.delete();
+		TestInfoFactory testInfoFactory = new TestInfoFactory(new ArrayList<>(availableTests), testExecutions);
+		Map<String, Integer> remainingSessions = new HashMap<>();
+		sessionCounts.forEach((uniformPath, count) -> remainingSessions
+				.merge(testInfoFactory.resolveUniformPath(uniformPath), count, Integer::sum));
+		Map<String, TestCoverageBuilder> incompleteTests = new LinkedHashMap<>();
+		List<String> coveredUniformPaths = new ArrayList<>();
+
+		File reportFile = createReportFile();
+		TestwiseCoverageReportWriter reportWriter = new TestwiseCoverageReportWriter(testInfoFactory, reportFile,
+				agentOptions.getTestwiseCoverageSplitAfter(), 1, false, partial, false);
+		boolean success = false;
+		try {
+			try (TestwiseCoverageReportWriter writer = reportWriter) {
+				reportGenerator.convertAndConsume(testExecFile, testCoverage -> {
+					String uniformPath = testInfoFactory.resolveUniformPath(testCoverage.getUniformPath());
+					TestCoverageBuilder mergedCoverage = incompleteTests.remove(uniformPath);
+					if (mergedCoverage == null) {
+						mergedCoverage = testCoverage;
+					} else {
+						mergedCoverage.addAll(testCoverage.getFiles());
+					}
+					if (remainingSessions.merge(uniformPath, -1, Integer::sum) > 0) {
+						incompleteTests.put(uniformPath, mergedCoverage);
+						return;
+					}
+					coveredUniformPaths.add(uniformPath);
+					write(writer, testInfoFactory.createFor(mergedCoverage));
+				});
+				// Sessions whose coverage could not be generated are skipped, so these tests never got all their
+				// sessions
+				for (Map.Entry<String, TestCoverageBuilder> incompleteTest : incompleteTests.entrySet()) {
+					coveredUniformPaths.add(incompleteTest.getKey());
+					write(writer, testInfoFactory.createFor(incompleteTest.getValue()));
+				}
+			}
+			success = true;
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			if (!success) {
+				// the coverage is kept, so that the report can be created at the end of the next test run
+				reportWriter.getReportFiles().forEach(this::deleteFile);
+			}
+		}
+		List<File> reportFiles = keepNameOfUnsplitReport(reportFile, reportWriter.getReportFiles());
+		deleteFile(testExecFile);
+		deleteFile(ExecSessionIndex.getIndexFile(testExecFile));
 		testExecFile = null;
 		availableTests.clear();
 		testExecutions.clear();
+		sessionCounts.clear();
+		logger.debug("Created testwise coverage report (containing coverage for tests `{}`)", coveredUniformPaths);
+		return reportFiles;
+	}
 
-		return JsonUtils.serialize(report);
+	/**
+	 * Renames the report file back to the given name if the report has not been split, since the writer always numbers
+	 * the files. Returns the final report files.
+	 */
+	private static List<File> keepNameOfUnsplitReport(File reportFile, List<File> reportFiles) throws IOException {
+		if (reportFiles.size() != 1) {
+			return reportFiles;
+		}
+		Files.move(reportFiles.get(0).toPath(), reportFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return Collections.singletonList(reportFile);
+	}
+
+	/** Writes the given test with the given writer and wraps errors, so that this can be called from a consumer. */
+	private static void write(TestwiseCoverageReportWriter writer, TestInfo testInfo) {
+		try {
+			writer.write(testInfo);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** Deletes the given file and logs a warning if it still exists afterwards. */
+	private void deleteFile(File file) {
+		if (!file.delete() && file.exists()) {
+			logger.warn("Failed to delete {}. You may delete it manually.", file);
+		}
 	}
 
 }
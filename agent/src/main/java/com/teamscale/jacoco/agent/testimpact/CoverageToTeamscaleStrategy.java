@@ -5,7 +5,6 @@ import com.teamscale.jacoco.agent.JacocoRuntimeController;
 import com.teamscale.jacoco.agent.options.AgentOptions;
 import com.teamscale.jacoco.agent.upload.teamscale.TeamscaleConfig;
 import com.teamscale.report.testwise.jacoco.JaCoCoTestwiseReportGenerator;
-import org.conqat.lib.commons.filesystem.FileSystemUtils;
 
 import java.io.File;
 import java.io.IOException;
@@ -33,18 +32,27 @@ public class CoverageToTeamscaleStrategy extends CoverageToJsonStrategyBase {
 	}
 
 	@Override
-	protected void handleTestwiseCoverageJsonReady(String json) throws IOException {
+	protected File createReportFile() throws IOException {
+		return agentOptions.createNewFileInOutputDirectory("testwise-coverage", "json");
+	}
+
+	/**
+	 * Uploads the report files to Teamscale in a single session and deletes them afterwards. The files are kept if the
+	 * upload fails.
+	 */
+	@Override
+	protected void handleTestwiseCoverageJsonReady(List<File> reportFiles) throws IOException {
 		try {
 			teamscaleClient
-					.uploadReport(EReportFormat.TESTWISE_COVERAGE, json,
+					.uploadReportsInSession(EReportFormat.TESTWISE_COVERAGE, reportFiles,
 							agentOptions.getTeamscaleServerOptions().commit,
 							agentOptions.getTeamscaleServerOptions().revision,
 							agentOptions.getTeamscaleServerOptions().partition,
-							agentOptions.getTeamscaleServerOptions().getMessage());
+							agentOptions.getTeamscaleServerOptions().getMessage(),
+							agentOptions.shouldCompressTestwiseCoverageUpload());
+			reportFiles.forEach(File::delete);
 		} catch (IOException e) {
-			File reportFile = agentOptions.createNewFileInOutputDirectory("testwise-coverage", "json");
-			FileSystemUtils.writeFileUTF8(reportFile, json);
-			String errorMessage = "Failed to upload coverage to Teamscale! Report is stored in " + reportFile + "!";
+			String errorMessage = "Failed to upload coverage to Teamscale! Report is stored in " + reportFiles + "!";
 			logger.error(errorMessage, e);
 			throw new IOException(errorMessage, e);
 		}
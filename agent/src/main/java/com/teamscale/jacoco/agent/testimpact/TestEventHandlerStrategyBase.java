@@ -8,12 +8,14 @@ import com.teamscale.jacoco.agent.JacocoRuntimeController;
 import com.teamscale.jacoco.agent.options.AgentOptions;
 import com.teamscale.jacoco.agent.upload.teamscale.TeamscaleConfig;
 import com.teamscale.jacoco.agent.util.LoggingUtils;
+import com.teamscale.report.testwise.jacoco.ExecSessionIndex;
 import com.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
 import com.teamscale.report.testwise.model.TestExecution;
 import com.teamscale.report.testwise.model.TestInfo;
 import org.slf4j.Logger;
 import retrofit2.Response;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
@@ -51,6 +53,25 @@ public abstract class TestEventHandlerStrategyBase {
 		startTimestamp = System.currentTimeMillis();
 	}
 
+	/**
+	 * Records the dump that has just been appended to the given exec file in its {@link ExecSessionIndex}, so that the
+	 * report generator can find the session without reading the whole file. Failures are only logged, since the index
+	 * is optional.
+	 *
+	 * @param offset The length of the exec file before the dump.
+	 */
+	protected void appendToSessionIndex(File execFile, String sessionId, long offset) {
+		long length = execFile.length() - offset;
+		if (length <= 0) {
+			return;
+		}
+		try {
+			ExecSessionIndex.append(execFile, sessionId, offset, length);
+		} catch (IOException e) {
+			logger.warn("Failed to append session {} to the session index of {}", sessionId, execFile, e);
+		}
+	}
+
 	/**
 	 * Called when the test with the given name finished.
 	 *
@@ -4,6 +4,8 @@ import com.teamscale.jacoco.agent.options.AgentOptionParseException;
 import com.teamscale.jacoco.agent.options.AgentOptionsParser;
 import com.teamscale.jacoco.agent.options.ETestwiseCoverageMode;
 
+import java.io.File;
+
 /** Config necessary for TIA. */
 public class TestImpactConfig {
 
@@ -17,6 +19,27 @@ public class TestImpactConfig {
 	 */
 	public String testEnvironmentVariable = null;
 
+	/**
+	 * The file in which the analysis results of the class files are persisted between JVM runs or null if they should
+	 * not be persisted.
+	 */
+	public File probesCacheFile = null;
+
+	/** The number of threads used to analyze the class files. */
+	public int analysisThreads = 1;
+
+	/**
+	 * After how many tests the testwise coverage report of a test run is split into a separate file. In
+	 * {@link ETestwiseCoverageMode#TEAMSCALE_UPLOAD} mode, each file is uploaded with a separate request.
+	 */
+	public int splitAfter = Integer.MAX_VALUE;
+
+	/**
+	 * Whether testwise coverage reports are compressed with gzip while they are uploaded in
+	 * {@link ETestwiseCoverageMode#TEAMSCALE_UPLOAD} mode.
+	 */
+	public boolean compressUpload = false;
+
 	/**
 	 * Handles all TIA-related command line option.
 	 *
@@ -32,10 +55,34 @@ public class TestImpactConfig {
 			case "test-env":
 				options.testEnvironmentVariable = value;
 				return true;
+			case "probes-cache-file":
+				options.probesCacheFile = new File(value);
+				return true;
+			case "analysis-threads":
+				options.analysisThreads = parsePositiveInt(key, value);
+				return true;
+			case "tia-split-after":
+				options.splitAfter = parsePositiveInt(key, value);
+				return true;
+			case "tia-compress-upload":
+				options.compressUpload = Boolean.parseBoolean(value);
+				return true;
 			default:
 				return false;
 		}
 	}
 
+	private static int parsePositiveInt(String key, String value) throws AgentOptionParseException {
+		try {
+			int number = Integer.parseInt(value);
+			if (number > 0) {
+				return number;
+			}
+		} catch (NumberFormatException e) {
+			// handled below
+		}
+		throw new AgentOptionParseException("Invalid value for option `" + key + "`. Must be a positive number: " + value);
+	}
+
 
 }
@@ -31,7 +31,11 @@ public class TestwiseCoverageAgent extends AgentBase {
 		Logger logger = LoggingUtils.getLogger(JaCoCoTestwiseReportGenerator.class);
 		JaCoCoTestwiseReportGenerator reportGenerator = new JaCoCoTestwiseReportGenerator(
 				agentOptions.getClassDirectoriesOrZips(), agentOptions.getLocationIncludeFilter(),
-				agentOptions.getDuplicateClassFileBehavior(), LoggingUtils.wrap(logger));
+				agentOptions.getDuplicateClassFileBehavior(), agentOptions.getProbesCacheFile(),
+				agentOptions.getAnalysisThreads(),
+				LoggingUtils.wrap(logger));
+		// The exec files are deleted right after converting them, which fails on Windows while they are mapped
+		reportGenerator.setMemoryMapExecutionDataFiles(false);
 		return new TestwiseCoverageAgent(agentOptions,
 				new TestExecutionWriter(agentOptions.createNewFileInOutputDirectory("test-execution", "json")),
 				reportGenerator);
@@ -0,0 +1,203 @@
+package com.teamscale.jacoco.agent;
+
+import com.teamscale.jacoco.agent.options.EDumpQueueOverflowPolicy;
+import com.teamscale.jacoco.agent.upload.IUploader;
+import com.teamscale.jacoco.agent.util.InMemoryUploader;
+import com.teamscale.report.jacoco.CoverageFile;
+import com.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.teamscale.jacoco.agent.upload.teamscale.TeamscaleUploader.RETRY_UPLOAD_FILE_SUFFIX;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** Tests the {@link DumpPipeline}. */
+class DumpPipelineTest {
+
+	/** The upload target of the pipelines whose target does not change. */
+	private static final String UPLOAD_TARGET = "project/partition@master:1234/null";
+
+	@Test
+	void mergesNewDumpIntoLatestDumpIfQueueIsFull() {
+		DumpPipeline pipeline = createPipeline(EDumpQueueOverflowPolicy.MERGE);
+		pipeline.enqueue(createDump(1, 100));
+		pipeline.enqueue(createDump(2, 200));
+		pipeline.enqueue(createDump(3, 300));
+
+		assertThat(pipeline.pollPendingDump().store.contains("Class1")).isTrue();
+		Dump mergedDump = pipeline.pollPendingDump();
+		assertThat(mergedDump.store.contains("Class2")).isTrue();
+		assertThat(mergedDump.store.contains("Class3")).isTrue();
+		assertThat(mergedDump.info.getStartTimeStamp()).isEqualTo(200);
+		assertThat(mergedDump.info.getDumpTimeStamp()).isEqualTo(301);
+		assertThat(pipeline.pollPendingDump()).isNull();
+	}
+
+	@Test
+	void dropsOldestDumpIfQueueIsFull() {
+		DumpPipeline pipeline = createPipeline(EDumpQueueOverflowPolicy.DROP_OLDEST);
+		pipeline.enqueue(createDump(1, 100));
+		pipeline.enqueue(createDump(2, 200));
+		pipeline.enqueue(createDump(3, 300));
+
+		assertThat(pipeline.pollPendingDump().store.contains("Class2")).isTrue();
+		assertThat(pipeline.pollPendingDump().store.contains("Class3")).isTrue();
+		assertThat(pipeline.pollPendingDump()).isNull();
+	}
+
+	@Test
+	void convertsAndUploadsDumpsInTheBackground(@TempDir File tempDir) throws Exception {
+		JacocoRuntimeController controller = mock(JacocoRuntimeController.class);
+		when(controller.dumpAndReset()).thenReturn(createDump(1, 100), createDump(2, 200));
+		List<Dump> convertedDumps = new ArrayList<>();
+		InMemoryUploader uploader = new InMemoryUploader();
+		DumpPipeline pipeline = new DumpPipeline(controller, dump -> {
+			convertedDumps.add(dump);
+			return new CoverageFile(new File(tempDir, "jacoco-" + convertedDumps.size() + ".xml"));
+		}, uploader, () -> UPLOAD_TARGET, 2, EDumpQueueOverflowPolicy.MERGE);
+
+		pipeline.dumpInBackground();
+		pipeline.dumpAndWait();
+		pipeline.shutdown(Duration.ofSeconds(10));
+
+		assertThat(convertedDumps).hasSize(2);
+		assertThat(uploader.getUploadedFiles()).hasSize(2);
+	}
+
+	@Test
+	void mergesDumpOfFailedUploadIntoNextDump(@TempDir File tempDir) throws Exception {
+		JacocoRuntimeController controller = mock(JacocoRuntimeController.class);
+		when(controller.dumpAndReset()).thenReturn(createDump(1, 100), createDump(2, 200));
+		List<Dump> convertedDumps = new ArrayList<>();
+		List<CoverageFile> uploadedReports = new ArrayList<>();
+		IUploader uploader = mock(IUploader.class);
+		doAnswer(invocation -> {
+			CoverageFile report = invocation.getArgument(0);
+			if (uploadedReports.isEmpty()) {
+				assertThat(new File(report + RETRY_UPLOAD_FILE_SUFFIX).createNewFile()).isTrue();
+			}
+			uploadedReports.add(report);
+			return null;
+		}).when(uploader).upload(any());
+		DumpPipeline pipeline = new DumpPipeline(controller, dump -> {
+			convertedDumps.add(dump);
+			File report = new File(tempDir, "jacoco-" + convertedDumps.size() + ".xml");
+			assertThat(report.createNewFile()).isTrue();
+			return new CoverageFile(report);
+		}, uploader, () -> UPLOAD_TARGET, 2, EDumpQueueOverflowPolicy.MERGE);
+
+		pipeline.dumpAndWait();
+		pipeline.dumpAndWait();
+		pipeline.shutdown(Duration.ofSeconds(10));
+
+		assertThat(convertedDumps).hasSize(2);
+		assertThat(convertedDumps.get(1).store.contains("Class1")).isTrue();
+		assertThat(convertedDumps.get(1).store.contains("Class2")).isTrue();
+		assertThat(tempDir.list()).containsExactly("jacoco-2.xml");
+	}
+
+	@Test
+	void keepsReportOfFailedUploadIfUploadTargetChanged(@TempDir File tempDir) throws Exception {
+		JacocoRuntimeController controller = mock(JacocoRuntimeController.class);
+		when(controller.dumpAndReset()).thenReturn(createDump(1, 100), createDump(2, 200));
+		List<Dump> convertedDumps = new ArrayList<>();
+		IUploader uploader = mock(IUploader.class);
+		doAnswer(invocation -> {
+			CoverageFile report = invocation.getArgument(0);
+			assertThat(new File(report + RETRY_UPLOAD_FILE_SUFFIX).createNewFile()).isTrue();
+			return null;
+		}).when(uploader).upload(any());
+		AtomicReference<String> uploadTarget = new AtomicReference<>("project/partition@master:1/null");
+		DumpPipeline pipeline = new DumpPipeline(controller, dump -> {
+			convertedDumps.add(dump);
+			File report = new File(tempDir, "jacoco-" + convertedDumps.size() + ".xml");
+			assertThat(report.createNewFile()).isTrue();
+			return new CoverageFile(report);
+		}, uploader, uploadTarget::get, 2, EDumpQueueOverflowPolicy.MERGE);
+
+		pipeline.dumpAndWait();
+		uploadTarget.set("project/partition@master:2/null");
+		pipeline.dumpAndWait();
+		pipeline.shutdown(Duration.ofSeconds(10));
+
+		assertThat(convertedDumps).hasSize(2);
+		assertThat(convertedDumps.get(1).store.contains("Class1")).isFalse();
+		assertThat(convertedDumps.get(1).store.contains("Class2")).isTrue();
+		assertThat(tempDir.list()).containsExactlyInAnyOrder("jacoco-1.xml", "jacoco-1.xml" + RETRY_UPLOAD_FILE_SUFFIX,
+				"jacoco-2.xml", "jacoco-2.xml" + RETRY_UPLOAD_FILE_SUFFIX);
+	}
+
+	@Test
+	void shutdownAbandonsHangingUploadAfterTimeout() throws Exception {
+		JacocoRuntimeController controller = mock(JacocoRuntimeController.class);
+		when(controller.dumpAndReset()).thenReturn(createDump(1, 100));
+		CountDownLatch uploadStarted = new CountDownLatch(1);
+		IUploader uploader = mock(IUploader.class);
+		doAnswer(invocation -> {
+			uploadStarted.countDown();
+			new CountDownLatch(1).await();
+			return null;
+		}).when(uploader).upload(any());
+		DumpPipeline pipeline = new DumpPipeline(controller, dump -> new CoverageFile(new File("jacoco.xml")),
+				uploader, () -> UPLOAD_TARGET, 2, EDumpQueueOverflowPolicy.MERGE);
+
+		pipeline.dumpInBackground();
+		assertThat(uploadStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> pipeline.shutdown(Duration.ofMillis(100)));
+	}
+
+	@Test
+	void shutdownConvertsAllDumpsEvenIfUploadHangs() throws Exception {
+		JacocoRuntimeController controller = mock(JacocoRuntimeController.class);
+		when(controller.dumpAndReset()).thenReturn(createDump(1, 100), createDump(2, 200));
+		CountDownLatch uploadStarted = new CountDownLatch(1);
+		IUploader uploader = mock(IUploader.class);
+		doAnswer(invocation -> {
+			uploadStarted.countDown();
+			new CountDownLatch(1).await();
+			return null;
+		}).when(uploader).upload(any());
+		List<Dump> convertedDumps = new CopyOnWriteArrayList<>();
+		DumpPipeline pipeline = new DumpPipeline(controller, dump -> {
+			convertedDumps.add(dump);
+			return new CoverageFile(new File("jacoco.xml"));
+		}, uploader, () -> UPLOAD_TARGET, 1, EDumpQueueOverflowPolicy.MERGE);
+
+		pipeline.dumpInBackground();
+		assertThat(uploadStarted.await(10, TimeUnit.SECONDS)).isTrue();
+		// the only upload slot is taken by the hanging upload, so this dump waits for its conversion
+		pipeline.dumpInBackground();
+
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> pipeline.shutdown(Duration.ofMillis(100)));
+		assertThat(convertedDumps).hasSize(2);
+	}
+
+	private static DumpPipeline createPipeline(EDumpQueueOverflowPolicy overflowPolicy) {
+		return new DumpPipeline(mock(JacocoRuntimeController.class), null, new InMemoryUploader(),
+				() -> UPLOAD_TARGET, 2, overflowPolicy);
+	}
+
+	private static Dump createDump(long classId, long startTimeStamp) {
+		ExecutionDataStore store = new ExecutionDataStore();
+		store.put(new ExecutionData(classId, "Class" + classId, new boolean[]{true}));
+		return new Dump(new SessionInfo("session", startTimeStamp, startTimeStamp + 1), store);
+	}
+}
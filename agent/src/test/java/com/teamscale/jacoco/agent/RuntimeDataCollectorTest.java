@@ -0,0 +1,57 @@
+package com.teamscale.jacoco.agent;
+
+import com.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.agent.rt.internal_4742761.core.runtime.RuntimeData;
+import org.jacoco.core.data.ExecutionData;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link RuntimeDataCollector}. */
+class RuntimeDataCollectorTest {
+
+	@Test
+	void copiesExecutedClassesAndResetsProbes() {
+		RuntimeData runtimeData = new RuntimeData();
+		runtimeData.setSessionId("session");
+		boolean[] executedProbes = runtimeData.getExecutionData(1L, "com/example/Executed", 3).getProbes();
+		executedProbes[1] = true;
+		runtimeData.getExecutionData(2L, "com/example/NotExecuted", 2);
+
+		Dump dump = RuntimeDataCollector.collect(runtimeData, true);
+
+		assertThat(dump.info.getId()).isEqualTo("session");
+		assertThat(dump.store.getContents()).hasSize(1);
+		ExecutionData executionData = dump.store.get(1L);
+		assertThat(executionData.getName()).isEqualTo("com/example/Executed");
+		assertThat(executionData.getProbes()).containsExactly(false, true, false)
+				.isNotSameAs(executedProbes);
+		assertThat(executedProbes).containsOnly(false);
+	}
+
+	@Test
+	void keepsProbesWithoutReset() {
+		RuntimeData runtimeData = new RuntimeData();
+		boolean[] executedProbes = runtimeData.getExecutionData(1L, "com/example/Executed", 1).getProbes();
+		executedProbes[0] = true;
+
+		RuntimeDataCollector.collect(runtimeData, false);
+
+		assertThat(executedProbes).containsOnly(true);
+	}
+
+	@Test
+	void keepsHitsRecordedAfterCopying() {
+		RuntimeData runtimeData = new RuntimeData();
+		boolean[] executedProbes = runtimeData.getExecutionData(1L, "com/example/Executed", 2).getProbes();
+		executedProbes[0] = true;
+
+		RuntimeDataCollector collector = new RuntimeDataCollector();
+		runtimeData.collect(collector, collector, false);
+		executedProbes[1] = true;
+		collector.resetCopiedProbes();
+
+		assertThat(collector.getDump().store.get(1L).getProbes()).containsExactly(true, false);
+		assertThat(executedProbes).containsExactly(false, true);
+	}
+}
@@ -16,23 +16,31 @@ import com.teamscale.report.testwise.model.TestwiseCoverage;
 import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
 import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
 import okhttp3.HttpUrl;
+import org.conqat.lib.commons.filesystem.FileSystemUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
 import retrofit2.Response;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.ArgumentMatchers.matches;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -56,17 +64,16 @@ public class CoverageToTeamscaleStrategyTest {
 		AgentOptions options = mockOptions();
 		CoverageToTeamscaleStrategy strategy = new CoverageToTeamscaleStrategy(controller, options, reportGenerator);
 
-		TestwiseCoverage testwiseCoverage = getDummyTestwiseCoverage("mytest");
-		when(reportGenerator.convert(any(File.class))).thenReturn(testwiseCoverage);
+		mockConversion(reportGenerator, getDummyTestwiseCoverage("mytest"));
+		List<String> uploadedReports = recordUploadedReports(client);
 
 		// we skip testRunStart and don't provide any available tests
 		strategy.testStart("mytest");
 		strategy.testEnd("mytest", new TestExecution("mytest", 0L, ETestExecutionResult.PASSED));
 		strategy.testRunEnd(false);
 
-		verify(client).uploadReport(eq(EReportFormat.TESTWISE_COVERAGE),
-				matches("\\Q{\"partial\":false,\"tests\":[{\"uniformPath\":\"mytest\",\"sourcePath\":\"mytest\",\"duration\":\\E[^,]*\\Q,\"result\":\"PASSED\",\"paths\":[{\"path\":\"src/main/java\",\"files\":[{\"fileName\":\"Main.java\",\"coveredLines\":\"1-4\"}]}]}]}\\E"),
-				any(), any(), any(), any());
+		assertThat(uploadedReports).hasSize(1);
+		assertThat(uploadedReports.get(0)).matches("\\Q{\"partial\":false,\"tests\":[{\"uniformPath\":\"mytest\",\"sourcePath\":\"mytest\",\"duration\":\\E[^,]*\\Q,\"result\":\"PASSED\",\"paths\":[{\"path\":\"src/main/java\",\"files\":[{\"fileName\":\"Main.java\",\"coveredLines\":\"1-4\"}]}]}]}\\E");
 	}
 
 	@Test
@@ -77,8 +84,8 @@ public class CoverageToTeamscaleStrategyTest {
 		when(client.getImpactedTests(any(), any(), any(), any(), anyBoolean(), anyBoolean(), anyBoolean())).thenReturn(
 				Response.success(clusters));
 
-		TestwiseCoverage testwiseCoverage = getDummyTestwiseCoverage("mytest");
-		when(reportGenerator.convert(any(File.class))).thenReturn(testwiseCoverage);
+		mockConversion(reportGenerator, getDummyTestwiseCoverage("mytest"));
+		List<String> uploadedReports = recordUploadedReports(client);
 
 		AgentOptions options = mockOptions();
 		JacocoRuntimeController controller = mock(JacocoRuntimeController.class);
@@ -93,26 +100,148 @@ public class CoverageToTeamscaleStrategyTest {
 		strategy.testEnd("mytest", new TestExecution("mytest", 0L, ETestExecutionResult.PASSED));
 		strategy.testRunEnd(true);
 
-		verify(client).uploadReport(eq(EReportFormat.TESTWISE_COVERAGE),
-				matches("\\Q{\"partial\":true,\"tests\":[{\"uniformPath\":\"mytest\",\"sourcePath\":\"mytest\",\"content\":\"content\",\"duration\":\\E[^,]*\\Q,\"result\":\"PASSED\",\"paths\":[{\"path\":\"src/main/java\",\"files\":[{\"fileName\":\"Main.java\",\"coveredLines\":\"1-4\"}]}]}]}\\E"),
-				any(), any(), any(), any());
+		assertThat(uploadedReports).hasSize(1);
+		assertThat(uploadedReports.get(0)).matches("\\Q{\"partial\":true,\"tests\":[{\"uniformPath\":\"mytest\",\"sourcePath\":\"mytest\",\"content\":\"content\",\"duration\":\\E[^,]*\\Q,\"result\":\"PASSED\",\"paths\":[{\"path\":\"src/main/java\",\"files\":[{\"fileName\":\"Main.java\",\"coveredLines\":\"1-4\"}]}]}]}\\E");
+	}
+
+	@Test
+	public void shouldUploadSplitReportInOneSession() throws Exception {
+		AgentOptions options = mockOptions(1);
+		CoverageToTeamscaleStrategy strategy = new CoverageToTeamscaleStrategy(controller, options, reportGenerator);
+
+		TestwiseCoverage testwiseCoverage = getDummyTestwiseCoverage("test1");
+		testwiseCoverage.add(getDummyTestwiseCoverage("test2").getTests().iterator().next());
+		mockConversion(reportGenerator, testwiseCoverage);
+		List<String> uploadedReports = recordUploadedReports(client);
+
+		for (String test : new String[]{"test1", "test2"}) {
+			strategy.testStart(test);
+			strategy.testEnd(test, new TestExecution(test, 0L, ETestExecutionResult.PASSED));
+		}
+		strategy.testRunEnd(false);
+
+		verify(client).uploadReportsInSession(eq(EReportFormat.TESTWISE_COVERAGE), any(), any(), any(), any(), any(),
+				eq(false));
+		assertThat(uploadedReports).hasSize(2);
+		assertThat(uploadedReports).anySatisfy(report -> assertThat(report).contains("\"uniformPath\":\"test1\""))
+				.anySatisfy(report -> assertThat(report).contains("\"uniformPath\":\"test2\""))
+				.allSatisfy(report -> assertThat(report).startsWith("{\"partial\":false,\"tests\":[{"));
+	}
+
+	@Test
+	public void shouldWriteParameterizedTestsAsSingleAvailableTest() throws Exception {
+		AgentOptions options = mockOptions();
+		CoverageToTeamscaleStrategy strategy = new CoverageToTeamscaleStrategy(controller, options, reportGenerator);
+
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		testwiseCoverage.add(createTestCoverage("MyTest/test()[1]", 1, 4));
+		testwiseCoverage.add(createTestCoverage("MyTest/test()[2]", 6, 8));
+		mockConversion(reportGenerator, testwiseCoverage);
+		List<String> uploadedReports = recordUploadedReports(client);
+		when(client.getImpactedTests(any(), any(), any(), any(), anyBoolean(), anyBoolean(), anyBoolean())).thenReturn(
+				Response.success(Collections.emptyList()));
+
+		strategy.testRunStart(Collections.singletonList(
+						new ClusteredTestDetails("MyTest/test()", "MyTest/test()", "content", "cluster", "partition")),
+				true, true, true, null);
+		// the invocations of the parameterized test are not reported via testStart, so they are not available tests
+		for (String test : new String[]{"MyTest/test()[1]", "MyTest/test()[2]"}) {
+			strategy.testEnd(test, new TestExecution(test, 0L, ETestExecutionResult.PASSED));
+		}
+		strategy.testRunEnd(false);
+
+		assertThat(uploadedReports).hasSize(1);
+		assertThat(uploadedReports.get(0)).matches("\\Q{\"partial\":false,\"tests\":[{\"uniformPath\":\"MyTest/test()\",\"sourcePath\":\"MyTest/test()\",\"content\":\"content\",\"paths\":[{\"path\":\"src/main/java\",\"files\":[{\"fileName\":\"Main.java\",\"coveredLines\":\"1-4,6-8\"}]}]}]}\\E");
+	}
+
+	@Test
+	public void shouldKeepCoverageIfConversionFails() throws Exception {
+		AgentOptions options = mockOptions();
+		CoverageToTeamscaleStrategy strategy = new CoverageToTeamscaleStrategy(controller, options, reportGenerator);
+
+		TestwiseCoverage testwiseCoverage = getDummyTestwiseCoverage("mytest");
+		doAnswer(invocation -> {
+			throw new IOException("Conversion failed");
+		}).doAnswer(invocation -> {
+			Consumer<TestCoverageBuilder> consumer = invocation.getArgument(1);
+			testwiseCoverage.getTests().forEach(consumer);
+			return null;
+		}).when(reportGenerator).convertAndConsume(any(File.class), any());
+		List<File> uploadedFiles = new ArrayList<>();
+		doAnswer(invocation -> {
+			uploadedFiles.addAll(invocation.getArgument(1));
+			return null;
+		}).when(client).uploadReportsInSession(eq(EReportFormat.TESTWISE_COVERAGE), any(), any(), any(), any(), any(),
+				anyBoolean());
+
+		strategy.testStart("mytest");
+		strategy.testEnd("mytest", new TestExecution("mytest", 0L, ETestExecutionResult.PASSED));
+		assertThatThrownBy(() -> strategy.testRunEnd(false)).isInstanceOf(IOException.class);
+		strategy.testRunEnd(false);
+
+		verify(reportGenerator, times(2)).convertAndConsume(eq(new File(tempDir, "coverage-1.exec")), any());
+		assertThat(uploadedFiles).containsExactly(new File(tempDir, "testwise-coverage-3.json"));
 	}
 
 	/** Returns a dummy testwise coverage object for a test with the given name that covers a few lines of Main.java. */
 	protected static TestwiseCoverage getDummyTestwiseCoverage(String test) {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		testwiseCoverage.add(createTestCoverage(test, 1, 4));
+		return testwiseCoverage;
+	}
+
+	/** Returns the coverage of a test with the given name that covers the given lines of Main.java. */
+	private static TestCoverageBuilder createTestCoverage(String test, int firstLine, int lastLine) {
 		TestCoverageBuilder testCoverageBuilder = new TestCoverageBuilder(test);
 		FileCoverageBuilder fileCoverageBuilder = new FileCoverageBuilder("src/main/java", "Main.java");
-		fileCoverageBuilder.addLineRange(1, 4);
+		fileCoverageBuilder.addLineRange(firstLine, lastLine);
 		testCoverageBuilder.add(fileCoverageBuilder);
-		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
-		testwiseCoverage.add(testCoverageBuilder);
-		return testwiseCoverage;
+		return testCoverageBuilder;
+	}
+
+	/** Lets the report generator convert any exec file to the given testwise coverage. */
+	protected static void mockConversion(JaCoCoTestwiseReportGenerator reportGenerator,
+										 TestwiseCoverage testwiseCoverage) throws IOException {
+		doAnswer(invocation -> {
+			Consumer<TestCoverageBuilder> consumer = invocation.getArgument(1);
+			testwiseCoverage.getTests().forEach(consumer);
+			return null;
+		}).when(reportGenerator).convertAndConsume(any(File.class), any());
+	}
+
+	/**
+	 * Returns the list to which the contents of the testwise coverage reports are added that are uploaded with the given
+	 * client. The contents are read during the upload, as the report files are deleted afterwards.
+	 */
+	protected static List<String> recordUploadedReports(TeamscaleClient client) throws IOException {
+		List<String> uploadedReports = new ArrayList<>();
+		doAnswer(invocation -> {
+			List<File> reportFiles = invocation.getArgument(1);
+			for (File reportFile : reportFiles) {
+				uploadedReports.add(FileSystemUtils.readFileUTF8(reportFile));
+			}
+			return null;
+		}).when(client).uploadReportsInSession(eq(EReportFormat.TESTWISE_COVERAGE), any(), any(), any(), any(), any(),
+				anyBoolean());
+		return uploadedReports;
+	}
+
+	/** Returns a new file in the given directory for each call of the options' file creation methods. */
+	protected static Answer<File> createNewFileIn(File directory) {
+		AtomicInteger fileCounter = new AtomicInteger();
+		return invocation -> new File(directory,
+				invocation.getArgument(0) + "-" + fileCounter.incrementAndGet() + "." + invocation.getArgument(1));
 	}
 
 	private AgentOptions mockOptions() throws IOException {
+		return mockOptions(Integer.MAX_VALUE);
+	}
+
+	private AgentOptions mockOptions(int splitAfter) throws IOException {
 		AgentOptions options = mock(AgentOptions.class);
 		when(options.createTeamscaleClient()).thenReturn(client);
-		when(options.createNewFileInOutputDirectory(any(), any())).thenReturn(new File(tempDir, "test"));
+		when(options.createNewFileInOutputDirectory(any(), any())).thenAnswer(createNewFileIn(tempDir));
+		when(options.getTestwiseCoverageSplitAfter()).thenReturn(splitAfter);
 
 		TeamscaleServer server = new TeamscaleServer();
 		server.commit = new CommitDescriptor("branch", "12345");
@@ -2,7 +2,6 @@ package com.teamscale.jacoco.agent.testimpact;
 
 import com.teamscale.client.ClusteredTestDetails;
 import com.teamscale.client.CommitDescriptor;
-import com.teamscale.client.EReportFormat;
 import com.teamscale.client.PrioritizableTest;
 import com.teamscale.client.PrioritizableTestCluster;
 import com.teamscale.client.TeamscaleClient;
@@ -40,10 +39,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
-import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.ArgumentMatchers.matches;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -78,12 +74,15 @@ public class TestwiseCoverageAgentTest {
 		when(client.getImpactedTests(any(), any(), any(), any(), anyBoolean(), anyBoolean(), anyBoolean()))
 				.thenReturn(Response.success(impactedClusters));
 
-		when(reportGenerator.convert(any(File.class)))
-				.thenReturn(CoverageToTeamscaleStrategyTest.getDummyTestwiseCoverage("test2"));
+		CoverageToTeamscaleStrategyTest.mockConversion(reportGenerator,
+				CoverageToTeamscaleStrategyTest.getDummyTestwiseCoverage("test2"));
+		List<String> uploadedReports = CoverageToTeamscaleStrategyTest.recordUploadedReports(client);
 
 		int port = PORT_COUNTER.incrementAndGet();
 		AgentOptions options = mockOptions(port);
-		when(options.createNewFileInOutputDirectory(any(), any())).thenReturn(new File(tempDir, "test"));
+		when(options.createNewFileInOutputDirectory(any(), any()))
+				.thenAnswer(CoverageToTeamscaleStrategyTest.createNewFileIn(tempDir));
+		when(options.getTestwiseCoverageSplitAfter()).thenReturn(Integer.MAX_VALUE);
 		new TestwiseCoverageAgent(options, null, reportGenerator);
 
 		TiaAgent agent = new TiaAgent(false, HttpUrl.get("http://localhost:" + port));
@@ -98,9 +97,9 @@ public class TestwiseCoverageAgentTest {
 		runningTest.endTest(new TestRun.TestResultWithMessage(ETestExecutionResult.PASSED, "message"));
 
 		testRun.endTestRun(true);
-		verify(client).uploadReport(eq(EReportFormat.TESTWISE_COVERAGE),
-				matches("\\Q{\"partial\":true,\"tests\":[{\"uniformPath\":\"test1\",\"sourcePath\":\"test1\",\"content\":\"content\",\"paths\":[]},{\"uniformPath\":\"test2\",\"sourcePath\":\"test2\",\"content\":\"content\",\"duration\":\\E[^,]*\\Q,\"result\":\"PASSED\",\"message\":\"message\",\"paths\":[{\"path\":\"src/main/java\",\"files\":[{\"fileName\":\"Main.java\",\"coveredLines\":\"1-4\"}]}]}]}\\E"),
-				any(), any(), any(), any());
+		assertThat(uploadedReports).hasSize(1);
+		assertThat(uploadedReports.get(0)).matches(
+				"\\Q{\"partial\":true,\"tests\":[{\"uniformPath\":\"test2\",\"sourcePath\":\"test2\",\"content\":\"content\",\"duration\":\\E[^,]*\\Q,\"result\":\"PASSED\",\"message\":\"message\",\"paths\":[{\"path\":\"src/main/java\",\"files\":[{\"fileName\":\"Main.java\",\"coveredLines\":\"1-4\"}]}]},{\"uniformPath\":\"test1\",\"sourcePath\":\"test1\",\"content\":\"content\",\"paths\":[]}]}\\E");
 	}
 
 	@Test
@@ -3,6 +3,7 @@ plugins {
     com.teamscale.`java-convention`
     com.teamscale.coverage
     com.teamscale.publish
+    alias(libs.plugins.jmh)
 }
 
 publishAs {
@@ -10,6 +11,11 @@ publishAs {
     description.set("Utilities for generating JaCoCo and Testwise Coverage reports")
 }
 
+jmh {
+    // Allows to run only the benchmarks matching -Pjmh.includes=<regex>
+    findProperty("jmh.includes")?.let { includes.add(it.toString()) }
+}
+
 dependencies {
     implementation(project(":teamscale-client"))
 
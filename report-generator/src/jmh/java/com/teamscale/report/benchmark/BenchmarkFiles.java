@@ -0,0 +1,42 @@
+package com.teamscale.report.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/** Creates and deletes the temporary files of benchmarks. */
+public class BenchmarkFiles {
+
+	private BenchmarkFiles() {
+		// Utility class
+	}
+
+	/** Creates a new temporary directory. */
+	public static File createTempDirectory() throws IOException {
+		return Files.createTempDirectory("teamscale-benchmark").toFile();
+	}
+
+	/** Deletes the given file or directory including all of its contents. Does nothing if it does not exist. */
+	public static void deleteRecursively(File file) throws IOException {
+		if (file == null || !file.exists()) {
+			return;
+		}
+		Files.walkFileTree(file.toPath(), new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) throws IOException {
+				Files.delete(path);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path directory, IOException e) throws IOException {
+				Files.delete(directory);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
@@ -0,0 +1,37 @@
+package com.teamscale.report.benchmark;
+
+import com.teamscale.report.util.ILogger;
+
+/** Logger that discards all messages, so that logging does not distort the measurements. */
+public class SilentLogger implements ILogger {
+
+	@Override
+	public void debug(String message) {
+		// discarded
+	}
+
+	@Override
+	public void info(String message) {
+		// discarded
+	}
+
+	@Override
+	public void warn(String message) {
+		// discarded
+	}
+
+	@Override
+	public void warn(String message, Throwable throwable) {
+		// discarded
+	}
+
+	@Override
+	public void error(Throwable throwable) {
+		// discarded
+	}
+
+	@Override
+	public void error(String message, Throwable throwable) {
+		// discarded
+	}
+}
@@ -0,0 +1,188 @@
+package com.teamscale.report.benchmark;
+
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates class files with debug information, so that benchmarks can run against code bases of arbitrary size.
+ * <p>
+ * Each class consists of static methods with a given number of lines. Every third line contains a branch, so that
+ * JaCoCo inserts probes in the middle of the methods and not only at their end.
+ */
+public class SyntheticCodebase {
+
+	/** The number of classes that are put into the same package. */
+	private static final int CLASSES_PER_PACKAGE = 50;
+
+	/** The generated classes. */
+	private final List<SyntheticClass> classes;
+
+	private SyntheticCodebase(List<SyntheticClass> classes) {
+		this.classes = classes;
+	}
+
+	/**
+	 * Generates a code base with the given number of classes, methods per class and lines per method. The seed
+	 * determines the (slightly varying) number of lines of each method.
+	 */
+	public static SyntheticCodebase generate(int classCount, int methodsPerClass, int linesPerMethod, long seed) {
+		Random random = new Random(seed);
+		List<SyntheticClass> classes = new ArrayList<>(classCount);
+		for (int i = 0; i < classCount; i++) {
+			String className = "com/example/synthetic/package" + (i / CLASSES_PER_PACKAGE) + "/Class" + i;
+			classes.add(new SyntheticClass(className,
+					generateClass(className, methodsPerClass, linesPerMethod, random)));
+		}
+		return new SyntheticCodebase(classes);
+	}
+
+	/** Returns the generated classes. */
+	public List<SyntheticClass> getClasses() {
+		return Collections.unmodifiableList(classes);
+	}
+
+	/** Writes the class files into the given directory, using subdirectories for the packages. */
+	public void writeTo(File directory) throws IOException {
+		for (SyntheticClass syntheticClass : classes) {
+			File classFile = new File(directory, syntheticClass.getName() + ".class");
+			Files.createDirectories(classFile.getParentFile().toPath());
+			Files.write(classFile.toPath(), syntheticClass.getBytes());
+		}
+	}
+
+	/** Writes the class files into a jar file. */
+	public void writeJar(File jarFile) throws IOException {
+		try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jarFile))) {
+			for (SyntheticClass syntheticClass : classes) {
+				output.putNextEntry(new ZipEntry(syntheticClass.getName() + ".class"));
+				output.write(syntheticClass.getBytes());
+				output.closeEntry();
+			}
+		}
+	}
+
+	private static byte[] generateClass(String className, int methodCount, int linesPerMethod, Random random) {
+		ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, "java/lang/Object", null);
+		writer.visitSource(className.substring(className.lastIndexOf('/') + 1) + ".java", null);
+
+		int line = 1;
+		for (int i = 0; i < methodCount; i++) {
+			int lineCount = Math.max(1, linesPerMethod / 2 + random.nextInt(linesPerMethod + 1));
+			generateMethod(writer, "method" + i, line, lineCount);
+			line += lineCount + 2;
+		}
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	/** Generates a static method {@code int name(int)} with the given lines. */
+	private static void generateMethod(ClassWriter writer, String name, int firstLine, int lineCount) {
+		MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, name, "(I)I", null, null);
+		method.visitCode();
+		for (int i = 0; i < lineCount; i++) {
+			Label lineStart = new Label();
+			method.visitLabel(lineStart);
+			method.visitLineNumber(firstLine + i, lineStart);
+			if (i % 3 == 2) {
+				Label skip = new Label();
+				method.visitVarInsn(Opcodes.ILOAD, 0);
+				method.visitJumpInsn(Opcodes.IFLE, skip);
+				method.visitIincInsn(0, -1);
+				method.visitLabel(skip);
+			} else {
+				method.visitIincInsn(0, i + 1);
+			}
+		}
+		method.visitVarInsn(Opcodes.ILOAD, 0);
+		method.visitInsn(Opcodes.IRETURN);
+		method.visitMaxs(0, 0);
+		method.visitEnd();
+	}
+
+	/** A generated class. */
+	public static class SyntheticClass {
+
+		/** The VM name of the class (with / as separators). */
+		private final String name;
+
+		/** The class file. */
+		private final byte[] bytes;
+
+		/** The JaCoCo class ID. */
+		private final long id;
+
+		/** The number of probes JaCoCo inserts into the class. */
+		private final int probeCount;
+
+		private SyntheticClass(String name, byte[] bytes) {
+			this.name = name;
+			this.bytes = bytes;
+			this.id = CRC64.classId(bytes);
+			this.probeCount = countProbes(bytes);
+		}
+
+		/** @see #name */
+		public String getName() {
+			return name;
+		}
+
+		/** @see #bytes */
+		public byte[] getBytes() {
+			return bytes;
+		}
+
+		/** @see #id */
+		public long getId() {
+			return id;
+		}
+
+		/** @see #probeCount */
+		public int getProbeCount() {
+			return probeCount;
+		}
+
+		private static int countProbes(byte[] bytes) {
+			ProbeCounter counter = new ProbeCounter();
+			InstrSupport.classReaderFor(bytes).accept(new ClassProbesAdapter(counter, false), 0);
+			return counter.probeCount;
+		}
+	}
+
+	/** Receives the number of probes of a class from JaCoCo's {@link ClassProbesAdapter}. */
+	private static class ProbeCounter extends ClassProbesVisitor {
+
+		/** The number of probes of the visited class. */
+		private int probeCount;
+
+		@Override
+		public MethodProbesVisitor visitMethod(int access, String name, String descriptor, String signature,
+											   String[] exceptions) {
+			// Probes are counted by the adapter
+			return null;
+		}
+
+		@Override
+		public void visitTotalProbeCount(int count) {
+			probeCount = count;
+		}
+	}
+}
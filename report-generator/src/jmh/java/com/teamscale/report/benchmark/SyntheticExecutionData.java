@@ -0,0 +1,75 @@
+package com.teamscale.report.benchmark;
+
+import com.teamscale.report.benchmark.SyntheticCodebase.SyntheticClass;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/** Generates random execution data for a {@link SyntheticCodebase}. */
+public class SyntheticExecutionData {
+
+	/** The code base for which execution data is generated. */
+	private final SyntheticCodebase codebase;
+
+	/** The probability with which a class is executed in a session. */
+	private final double classHitRatio;
+
+	/** The probability with which a probe of an executed class is executed. */
+	private final double probeHitRatio;
+
+	/** The random number generator. */
+	private final Random random;
+
+	public SyntheticExecutionData(SyntheticCodebase codebase, double classHitRatio, double probeHitRatio, long seed) {
+		this.codebase = codebase;
+		this.classHitRatio = classHitRatio;
+		this.probeHitRatio = probeHitRatio;
+		this.random = new Random(seed);
+	}
+
+	/** Returns the name of the test whose coverage is stored in the session with the given index. */
+	public static String getTestName(int sessionIndex) {
+		return "com/example/synthetic/SyntheticTest/test" + sessionIndex + "()";
+	}
+
+	/** Creates the execution data of a single session. */
+	public ExecutionDataStore createStore() {
+		ExecutionDataStore store = new ExecutionDataStore();
+		for (SyntheticClass syntheticClass : codebase.getClasses()) {
+			if (random.nextDouble() < classHitRatio) {
+				store.put(createExecutionData(syntheticClass));
+			}
+		}
+		return store;
+	}
+
+	private ExecutionData createExecutionData(SyntheticClass syntheticClass) {
+		boolean[] probes = new boolean[syntheticClass.getProbeCount()];
+		for (int i = 0; i < probes.length; i++) {
+			probes[i] = random.nextDouble() < probeHitRatio;
+		}
+		return new ExecutionData(syntheticClass.getId(), syntheticClass.getName(), probes);
+	}
+
+	/**
+	 * Writes an exec file with the given number of sessions, which are named like the test names returned by {@link
+	 * #getTestName(int)}.
+	 */
+	public void writeExecFile(File execFile, int sessionCount) throws IOException {
+		try (OutputStream output = new BufferedOutputStream(new FileOutputStream(execFile))) {
+			ExecutionDataWriter writer = new ExecutionDataWriter(output);
+			for (int i = 0; i < sessionCount; i++) {
+				writer.visitSessionInfo(new SessionInfo(getTestName(i), i, i + 1));
+				createStore().accept(writer);
+			}
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.teamscale.report.jacoco;
+
+import com.teamscale.report.EDuplicateClassFileBehavior;
+import com.teamscale.report.benchmark.BenchmarkFiles;
+import com.teamscale.report.benchmark.SilentLogger;
+import com.teamscale.report.benchmark.SyntheticCodebase;
+import com.teamscale.report.benchmark.SyntheticExecutionData;
+import com.teamscale.report.jacoco.dump.Dump;
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import org.jacoco.core.data.SessionInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of a dump to an XML report with {@link JaCoCoXmlReportGenerator#convert(Dump, File)},
+ * including the analysis of all class files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JaCoCoXmlReportGeneratorBenchmark {
+
+	/** The number of classes of the synthetic code base. */
+	@Param({"1000", "10000"})
+	public int classCount;
+
+	/** Whether the class files are packaged in a jar instead of being stored in a directory. */
+	@Param({"false", "true"})
+	public boolean packageAsJar;
+
+	/** Whether the generator caches the class structure between conversions. */
+	@Param({"false", "true"})
+	public boolean cacheClassStructure;
+
+	/** Directory containing all generated files. */
+	private File workingDirectory;
+
+	/** The dump to convert. */
+	private Dump dump;
+
+	/** The generator. */
+	private JaCoCoXmlReportGenerator generator;
+
+	/** Generates the class files and the dump. */
+	@Setup
+	public void generateFiles() throws IOException {
+		workingDirectory = BenchmarkFiles.createTempDirectory();
+		SyntheticCodebase codebase = SyntheticCodebase.generate(classCount, 10, 15, 1);
+		File codeLocation;
+		if (packageAsJar) {
+			codeLocation = new File(workingDirectory, "classes.jar");
+			codebase.writeJar(codeLocation);
+		} else {
+			codeLocation = new File(workingDirectory, "classes");
+			codebase.writeTo(codeLocation);
+		}
+		dump = new Dump(new SessionInfo("session", 0, 1),
+				new SyntheticExecutionData(codebase, 0.3, 0.5, 2).createStore());
+		generator = new JaCoCoXmlReportGenerator(Collections.singletonList(codeLocation),
+				new ClasspathWildcardIncludeFilter(null, null), EDuplicateClassFileBehavior.IGNORE, false,
+				cacheClassStructure, new SilentLogger());
+	}
+
+	/** Deletes the generated files. */
+	@TearDown
+	public void deleteFiles() throws IOException {
+		BenchmarkFiles.deleteRecursively(workingDirectory);
+	}
+
+	/** Converts the dump. */
+	@Benchmark
+	public void convertDump() throws IOException, EmptyReportException {
+		generator.convert(dump, new File(workingDirectory, "coverage.xml")).delete();
+	}
+}
@@ -0,0 +1,100 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.client.TestDetails;
+import com.teamscale.report.EDuplicateClassFileBehavior;
+import com.teamscale.report.benchmark.BenchmarkFiles;
+import com.teamscale.report.benchmark.SilentLogger;
+import com.teamscale.report.benchmark.SyntheticCodebase;
+import com.teamscale.report.benchmark.SyntheticExecutionData;
+import com.teamscale.report.testwise.jacoco.JaCoCoTestwiseReportGenerator;
+import com.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.TestExecution;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import com.teamscale.report.testwise.model.factory.TestInfoFactory;
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Measures writing converted test coverage to a JSON report with {@link TestwiseCoverageReportWriter}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TestwiseCoverageReportWriterBenchmark {
+
+	/** The number of tests in the report. */
+	@Param({"100", "1000"})
+	public int testCount;
+
+	/** Directory containing all generated files. */
+	private File workingDirectory;
+
+	/** The converted coverage of all tests. */
+	private Collection<TestCoverageBuilder> testCoverage;
+
+	/** The details of all tests. */
+	private final List<TestDetails> testDetails = new ArrayList<>();
+
+	/** The executions of all tests. */
+	private final List<TestExecution> testExecutions = new ArrayList<>();
+
+	/** Generates and converts the coverage of the tests. */
+	@Setup
+	public void convertCoverage() throws IOException, CoverageGenerationException {
+		workingDirectory = BenchmarkFiles.createTempDirectory();
+		File classesDirectory = new File(workingDirectory, "classes");
+		SyntheticCodebase codebase = SyntheticCodebase.generate(2000, 10, 15, 1);
+		codebase.writeTo(classesDirectory);
+		File execFile = new File(workingDirectory, "coverage.exec");
+		new SyntheticExecutionData(codebase, 0.05, 0.5, 2).writeExecFile(execFile, testCount);
+
+		JaCoCoTestwiseReportGenerator generator = new JaCoCoTestwiseReportGenerator(
+				Collections.singletonList(classesDirectory), new ClasspathWildcardIncludeFilter(null, null),
+				EDuplicateClassFileBehavior.IGNORE, new SilentLogger());
+		testCoverage = generator.convert(execFile).getTests();
+
+		for (int i = 0; i < testCount; i++) {
+			String uniformPath = SyntheticExecutionData.getTestName(i);
+			testDetails.add(new TestDetails(uniformPath, "src/test/java/SyntheticTest.java", null));
+			testExecutions.add(new TestExecution(uniformPath, 10, ETestExecutionResult.PASSED));
+		}
+	}
+
+	/** Deletes the generated files. */
+	@TearDown
+	public void deleteFiles() throws IOException {
+		BenchmarkFiles.deleteRecursively(workingDirectory);
+	}
+
+	/** Writes the report. */
+	@Benchmark
+	public void writeReport() throws IOException {
+		File reportFile = new File(workingDirectory, "testwise-coverage.json");
+		TestInfoFactory testInfoFactory = new TestInfoFactory(testDetails, testExecutions);
+		try (TestwiseCoverageReportWriter writer = new TestwiseCoverageReportWriter(testInfoFactory, reportFile,
+				Integer.MAX_VALUE)) {
+			testCoverage.forEach(writer);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.teamscale.report.testwise.jacoco;
+
+import com.teamscale.report.EDuplicateClassFileBehavior;
+import com.teamscale.report.benchmark.BenchmarkFiles;
+import com.teamscale.report.benchmark.SilentLogger;
+import com.teamscale.report.benchmark.SyntheticCodebase;
+import com.teamscale.report.benchmark.SyntheticExecutionData;
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of an exec file with one session per test with {@link
+ * JaCoCoTestwiseReportGenerator#convertAndConsume(File, java.util.function.Consumer)}. The class files are analyzed
+ * during the setup, so only reading the exec file and converting the sessions is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JaCoCoTestwiseReportGeneratorBenchmark {
+
+	/** The number of classes of the synthetic code base. */
+	@Param({"2000"})
+	public int classCount;
+
+	/** The number of sessions (i.e. tests) in the exec file. */
+	@Param({"100", "1000"})
+	public int sessionCount;
+
+	/** The probability with which a class is executed in a session. */
+	@Param({"0.05"})
+	public double classHitRatio;
+
+	/** Directory containing the class files and the exec file. */
+	private File workingDirectory;
+
+	/** The exec file. */
+	private File execFile;
+
+	/** The generator. */
+	private JaCoCoTestwiseReportGenerator generator;
+
+	/** Generates the class files and the exec file and analyzes the class files. */
+	@Setup
+	public void generateFiles() throws IOException {
+		workingDirectory = BenchmarkFiles.createTempDirectory();
+		File classesDirectory = new File(workingDirectory, "classes");
+		SyntheticCodebase codebase = SyntheticCodebase.generate(classCount, 10, 15, 1);
+		codebase.writeTo(classesDirectory);
+		execFile = new File(workingDirectory, "coverage.exec");
+		new SyntheticExecutionData(codebase, classHitRatio, 0.5, 2).writeExecFile(execFile, sessionCount);
+
+		generator = new JaCoCoTestwiseReportGenerator(Collections.singletonList(classesDirectory),
+				new ClasspathWildcardIncludeFilter(null, null), EDuplicateClassFileBehavior.IGNORE,
+				new SilentLogger());
+	}
+
+	/** Deletes the generated files. */
+	@TearDown
+	public void deleteFiles() throws IOException {
+		BenchmarkFiles.deleteRecursively(workingDirectory);
+	}
+
+	/** Converts all sessions of the exec file. */
+	@Benchmark
+	public void convertExecFile(Blackhole blackhole) throws IOException {
+		generator.convertAndConsume(execFile, blackhole::consume);
+	}
+}
@@ -0,0 +1,67 @@
+package com.teamscale.report.testwise.jacoco.cache;
+
+import com.teamscale.report.EDuplicateClassFileBehavior;
+import com.teamscale.report.benchmark.SilentLogger;
+import com.teamscale.report.benchmark.SyntheticCodebase;
+import com.teamscale.report.benchmark.SyntheticCodebase.SyntheticClass;
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import com.teamscale.report.util.ILogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** Measures the analysis of class files with {@link AnalyzerCache#analyzeClass(byte[], String)}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzerCacheBenchmark {
+
+	/** The number of classes of the synthetic code base. */
+	@Param({"1000", "5000"})
+	public int classCount;
+
+	/** The number of methods per class. */
+	@Param({"5", "20"})
+	public int methodsPerClass;
+
+	/** Logger that discards all messages. */
+	private final ILogger logger = new SilentLogger();
+
+	/** Include filter that includes all classes. */
+	private final ClasspathWildcardIncludeFilter locationIncludeFilter = new ClasspathWildcardIncludeFilter(null,
+			null);
+
+	/** The analyzed code base. */
+	private SyntheticCodebase codebase;
+
+	/** Generates the code base. */
+	@Setup
+	public void generateCodebase() {
+		codebase = SyntheticCodebase.generate(classCount, methodsPerClass, 15, 1);
+	}
+
+	/** Analyzes all classes into a new, empty cache. */
+	@Benchmark
+	public ProbesCache analyzeClasses() throws IOException {
+		ProbesCache probesCache = new ProbesCache(logger, EDuplicateClassFileBehavior.IGNORE);
+		AnalyzerCache analyzer = new AnalyzerCache(probesCache, locationIncludeFilter, logger);
+		for (SyntheticClass syntheticClass : codebase.getClasses()) {
+			analyzer.analyzeClass(syntheticClass.getBytes(), syntheticClass.getName() + ".class");
+		}
+		return probesCache;
+	}
+}
@@ -0,0 +1,164 @@
+package com.teamscale.report.testwise.jacoco.cache;
+
+import com.teamscale.report.EDuplicateClassFileBehavior;
+import com.teamscale.report.benchmark.SilentLogger;
+import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.SourceFileRegistry;
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import com.teamscale.report.util.ILogger;
+import com.teamscale.report.util.LineSet;
+import com.teamscale.report.util.SortedIntList;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.data.ExecutionData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of {@link ExecutionData} to {@link FileCoverageBuilder}s with {@link ClassCoverageLookup}.
+ * The lookups are built by analyzing all classes of the JaCoCo core library, which have realistic method sizes and
+ * probe counts. Compares the compiled lookup against merging the lines of each executed probe one after the other,
+ * once with {@link LineSet}s and once with {@link SortedIntList}s as it was done before the lines were stored as
+ * bitsets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassCoverageLookupBenchmark {
+
+	/** The probability with which each probe is executed. */
+	@Param({"0.1", "0.5", "0.9"})
+	public double probeHitRatio;
+
+	/** Logger that discards all messages. */
+	private final ILogger logger = new SilentLogger();
+
+	/** Registry for the source files of the converted classes. */
+	private final SourceFileRegistry sourceFileRegistry = new SourceFileRegistry();
+
+	/** The lookups of all analyzed classes. */
+	private final List<ClassCoverageLookup> lookups = new ArrayList<>();
+
+	/** The lines of each probe per class in {@link #lookups}. */
+	private final List<List<LineSet>> probeLineSets = new ArrayList<>();
+
+	/** The lines of each probe per class in {@link #lookups} as {@link SortedIntList}s. */
+	private final List<List<SortedIntList>> probeSortedIntLists = new ArrayList<>();
+
+	/** The execution data per class in {@link #lookups}. */
+	private final List<ExecutionData> executionData = new ArrayList<>();
+
+	/** Analyzes the classes and creates random execution data for them. */
+	@Setup
+	public void analyzeClasses() throws IOException, URISyntaxException {
+		File jacocoCoreJar = new File(Analyzer.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		ProbesCache probesCache = new ProbesCache(logger, EDuplicateClassFileBehavior.IGNORE);
+		AnalyzerCache analyzer = new AnalyzerCache(probesCache, new ClasspathWildcardIncludeFilter(null, null),
+				logger);
+		analyzer.analyzeAll(jacocoCoreJar);
+		analyzer.awaitPendingAnalyses();
+
+		// Round trip through the cache file as this is the only way to access all lookups by class ID
+		File cacheFile = File.createTempFile("probes", ".cache");
+		Map<Long, ClassCoverageLookup> lookupsById;
+		try {
+			probesCache.saveTo(cacheFile);
+			lookupsById = ProbesCacheFile.read(cacheFile);
+		} finally {
+			Files.delete(cacheFile.toPath());
+		}
+
+		Random random = new Random(42);
+		for (Map.Entry<Long, ClassCoverageLookup> entry : lookupsById.entrySet()) {
+			ClassCoverageLookup lookup = entry.getValue();
+			if (lookup.getSourceFileName() == null) {
+				continue;
+			}
+			List<LineSet> lineSets = lookup.getProbes();
+			boolean[] probes = new boolean[lineSets.size()];
+			for (int i = 0; i < probes.length; i++) {
+				probes[i] = random.nextDouble() < probeHitRatio;
+			}
+			lookups.add(lookup);
+			probeLineSets.add(lineSets);
+			probeSortedIntLists.add(toSortedIntLists(lineSets));
+			executionData.add(new ExecutionData(entry.getKey(), lookup.getClassName(), probes));
+		}
+	}
+
+	private static List<SortedIntList> toSortedIntLists(List<LineSet> lineSets) {
+		List<SortedIntList> sortedIntLists = new ArrayList<>();
+		for (LineSet lineSet : lineSets) {
+			if (lineSet == null) {
+				sortedIntLists.add(null);
+				continue;
+			}
+			SortedIntList lines = new SortedIntList();
+			lineSet.forEach(lines::add);
+			sortedIntLists.add(lines);
+		}
+		return sortedIntLists;
+	}
+
+	/** Converts all classes with the compiled {@link ClassCoverageLookup}. */
+	@Benchmark
+	public void compiledLookup(Blackhole blackhole) throws CoverageGenerationException {
+		for (int i = 0; i < lookups.size(); i++) {
+			blackhole.consume(lookups.get(i).getFileCoverage(executionData.get(i), sourceFileRegistry, logger));
+		}
+	}
+
+	/** Converts all classes by merging the {@link LineSet} of each executed probe. */
+	@Benchmark
+	public void lineSetPerProbe(Blackhole blackhole) {
+		for (int i = 0; i < lookups.size(); i++) {
+			List<LineSet> lineSets = probeLineSets.get(i);
+			boolean[] executedProbes = executionData.get(i).getProbes();
+			FileCoverageBuilder fileCoverage = new FileCoverageBuilder("", "");
+			for (int probe = 0; probe < lineSets.size(); probe++) {
+				if (executedProbes[probe] && lineSets.get(probe) != null) {
+					fileCoverage.addLines(lineSets.get(probe));
+				}
+			}
+			blackhole.consume(fileCoverage);
+		}
+	}
+
+	/** Converts all classes by merging the {@link SortedIntList} of each executed probe. */
+	@Benchmark
+	public void sortedIntListPerProbe(Blackhole blackhole) {
+		for (int i = 0; i < lookups.size(); i++) {
+			List<SortedIntList> sortedIntLists = probeSortedIntLists.get(i);
+			boolean[] executedProbes = executionData.get(i).getProbes();
+			SortedIntList coveredLines = new SortedIntList();
+			for (int probe = 0; probe < sortedIntLists.size(); probe++) {
+				if (executedProbes[probe] && sortedIntLists.get(probe) != null) {
+					coveredLines.addAll(sortedIntLists.get(probe));
+				}
+			}
+			blackhole.consume(coveredLines);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package com.teamscale.report.testwise.jacoco.cache;
+
+import com.teamscale.report.EDuplicateClassFileBehavior;
+import com.teamscale.report.benchmark.SilentLogger;
+import com.teamscale.report.benchmark.SyntheticCodebase;
+import com.teamscale.report.benchmark.SyntheticCodebase.SyntheticClass;
+import com.teamscale.report.benchmark.SyntheticExecutionData;
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import com.teamscale.report.util.ILogger;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of the execution data of test sessions to file coverage with {@link
+ * ProbesCache#getCoverage(ExecutionData, ClasspathWildcardIncludeFilter)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProbesCacheBenchmark {
+
+	/** The number of converted sessions. */
+	private static final int SESSION_COUNT = 20;
+
+	/** The number of classes of the synthetic code base. */
+	@Param({"1000", "10000"})
+	public int classCount;
+
+	/** The probability with which a class is executed in a session. */
+	@Param({"0.05", "0.5"})
+	public double classHitRatio;
+
+	/** Logger that discards all messages. */
+	private final ILogger logger = new SilentLogger();
+
+	/** Include filter that includes all classes. */
+	private final ClasspathWildcardIncludeFilter locationIncludeFilter = new ClasspathWildcardIncludeFilter(null,
+			null);
+
+	/** The cache containing all classes of the code base. */
+	private ProbesCache probesCache;
+
+	/** The execution data of all sessions. */
+	private final List<ExecutionDataStore> sessions = new ArrayList<>();
+
+	/** Analyzes the code base and generates the execution data. */
+	@Setup
+	public void analyzeCodebase() throws IOException {
+		SyntheticCodebase codebase = SyntheticCodebase.generate(classCount, 10, 15, 1);
+		probesCache = new ProbesCache(logger, EDuplicateClassFileBehavior.IGNORE);
+		AnalyzerCache analyzer = new AnalyzerCache(probesCache, locationIncludeFilter, logger);
+		for (SyntheticClass syntheticClass : codebase.getClasses()) {
+			analyzer.analyzeClass(syntheticClass.getBytes(), syntheticClass.getName() + ".class");
+		}
+
+		SyntheticExecutionData executionData = new SyntheticExecutionData(codebase, classHitRatio, 0.5, 2);
+		for (int i = 0; i < SESSION_COUNT; i++) {
+			sessions.add(executionData.createStore());
+		}
+	}
+
+	/** Converts the execution data of all sessions. */
+	@Benchmark
+	public void convertSessions(Blackhole blackhole) throws CoverageGenerationException {
+		for (ExecutionDataStore session : sessions) {
+			for (ExecutionData executionData : session.getContents()) {
+				blackhole.consume(probesCache.getCoverage(executionData, locationIncludeFilter));
+			}
+		}
+	}
+}
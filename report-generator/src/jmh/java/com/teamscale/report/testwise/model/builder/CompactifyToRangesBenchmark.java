@@ -0,0 +1,58 @@
+package com.teamscale.report.testwise.model.builder;
+
+import com.teamscale.report.testwise.model.LineRange;
+import com.teamscale.report.util.LineSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Measures {@link FileCoverageBuilder#compactifyToRanges(LineSet)}. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompactifyToRangesBenchmark {
+
+	/** The number of lines of the file. */
+	@Param({"1000", "100000"})
+	public int lineCount;
+
+	/** The probability with which a line is covered. */
+	@Param({"0.2", "0.9"})
+	public double coveredRatio;
+
+	/** The covered lines. */
+	private LineSet coveredLines;
+
+	/** Generates the covered lines. */
+	@Setup
+	public void generateLines() {
+		Random random = new Random(1);
+		coveredLines = new LineSet();
+		for (int line = 1; line <= lineCount; line++) {
+			if (random.nextDouble() < coveredRatio) {
+				coveredLines.add(line);
+			}
+		}
+	}
+
+	/** Converts the covered lines to ranges. */
+	@Benchmark
+	public List<LineRange> compactifyToRanges() {
+		return FileCoverageBuilder.compactifyToRanges(coveredLines);
+	}
+}
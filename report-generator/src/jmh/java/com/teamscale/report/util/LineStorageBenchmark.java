@@ -0,0 +1,123 @@
+package com.teamscale.report.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link SortedIntList} and {@link LineSet} for the operations needed by the testwise coverage conversion:
+ * building the lines of a probe (in descending order, as the control flow is traced backwards) and merging the lines of
+ * many probes into the coverage of a file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineStorageBenchmark {
+
+	/** The number of probes. */
+	private static final int PROBE_COUNT = 1000;
+
+	/** The number of lines per probe. */
+	@Param({"3", "30"})
+	public int linesPerProbe;
+
+	/** The lines of each probe in descending order. */
+	private int[][] probeLines;
+
+	/** The lines of each probe as {@link SortedIntList}. */
+	private SortedIntList[] sortedIntLists;
+
+	/** The lines of each probe as {@link LineSet}. */
+	private LineSet[] lineSets;
+
+	/** Generates the lines of the probes, which are spread over a file with several thousand lines. */
+	@Setup
+	public void generateLines() {
+		Random random = new Random(1);
+		probeLines = new int[PROBE_COUNT][];
+		sortedIntLists = new SortedIntList[PROBE_COUNT];
+		lineSets = new LineSet[PROBE_COUNT];
+		for (int probe = 0; probe < PROBE_COUNT; probe++) {
+			int methodStart = 1 + random.nextInt(5000);
+			int[] lines = new int[linesPerProbe];
+			int line = methodStart + linesPerProbe * 2;
+			for (int i = 0; i < linesPerProbe; i++) {
+				line -= 1 + random.nextInt(2);
+				lines[i] = line;
+			}
+			probeLines[probe] = lines;
+			sortedIntLists[probe] = sortedIntListAdd(lines);
+			lineSets[probe] = lineSetAdd(lines);
+		}
+	}
+
+	/** Builds the lines of all probes with {@link SortedIntList#add(int)}. */
+	@Benchmark
+	public SortedIntList[] sortedIntListAdd() {
+		SortedIntList[] result = new SortedIntList[PROBE_COUNT];
+		for (int probe = 0; probe < PROBE_COUNT; probe++) {
+			result[probe] = sortedIntListAdd(probeLines[probe]);
+		}
+		return result;
+	}
+
+	/** Builds the lines of all probes with {@link LineSet#add(int)}. */
+	@Benchmark
+	public LineSet[] lineSetAdd() {
+		LineSet[] result = new LineSet[PROBE_COUNT];
+		for (int probe = 0; probe < PROBE_COUNT; probe++) {
+			result[probe] = lineSetAdd(probeLines[probe]);
+		}
+		return result;
+	}
+
+	/** Merges the lines of all probes with {@link SortedIntList#addAll(SortedIntList)}. */
+	@Benchmark
+	public SortedIntList sortedIntListAddAll() {
+		SortedIntList result = new SortedIntList();
+		for (SortedIntList lines : sortedIntLists) {
+			result.addAll(lines);
+		}
+		return result;
+	}
+
+	/** Merges the lines of all probes with {@link LineSet#addAll(LineSet)}. */
+	@Benchmark
+	public LineSet lineSetAddAll() {
+		LineSet result = new LineSet();
+		for (LineSet lines : lineSets) {
+			result.addAll(lines);
+		}
+		return result;
+	}
+
+	private static SortedIntList sortedIntListAdd(int[] lines) {
+		SortedIntList result = new SortedIntList();
+		for (int line : lines) {
+			result.add(line);
+		}
+		return result;
+	}
+
+	private static LineSet lineSetAdd(int[] lines) {
+		LineSet result = new LineSet();
+		for (int line : lines) {
+			result.add(line);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,488 @@
+package com.teamscale.report.jacoco;
+
+import com.teamscale.report.util.BashFileSkippingInputStream;
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import com.teamscale.report.util.ILogger;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICoverageVisitor;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.InputStreams;
+import org.jacoco.core.internal.data.CRC64;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Caches the analysis results of all class files between multiple conversions of the {@link JaCoCoXmlReportGenerator}.
+ * <p>
+ * The class files are analyzed once without execution data and the resulting (uncovered) {@link IClassCoverage} is
+ * kept along with the location of each class file. For each dump, only the class files with hits in the dump are read
+ * and analyzed again. Classes without hits reuse the cached coverage. Classes in archives that are nested in an archive
+ * on disk (e.g. WEB-INF/lib/*.jar in a WAR) are re-read by streaming only the nested archive that contains them. The
+ * cache is rebuilt whenever one of the code directories or archives changes (based on modification time and size of
+ * the contained files).
+ */
+/* package */ class ClassStructureCache {
+
+	/** Directories and zip files that contain class files. */
+	private final List<File> codeDirectoriesOrArchives;
+
+	/** Include filter to apply to all locations during class file traversal. */
+	private final ClasspathWildcardIncludeFilter locationIncludeFilter;
+
+	/**
+	 * Whether the coverage of classes without hits is needed. If uncovered classes are removed from the report anyway,
+	 * we only need to remember the locations of the class files.
+	 */
+	private final boolean keepUncoveredClasses;
+
+	/** The logger. */
+	private final ILogger logger;
+
+	/** The state of the code files when the cache was built or null if the cache has not been built yet. */
+	private Map<File, FileState> codeFileStates = null;
+
+	/** All classes found during the last analysis. */
+	private List<CachedClass> cachedClasses = new ArrayList<>();
+
+	ClassStructureCache(List<File> codeDirectoriesOrArchives, ClasspathWildcardIncludeFilter locationIncludeFilter,
+						boolean keepUncoveredClasses, ILogger logger) {
+		this.codeDirectoriesOrArchives = codeDirectoriesOrArchives;
+		this.locationIncludeFilter = locationIncludeFilter;
+		this.keepUncoveredClasses = keepUncoveredClasses;
+		this.logger = logger;
+	}
+
+	/**
+	 * Passes the coverage of all cached classes with the execution data from the given store to the visitor. Rebuilds
+	 * the cache first if the code files have changed.
+	 *
+	 * @return false if one of the classes with hits could not be analyzed from the cache. The visitor may already have
+	 * received coverage in this case and the caller has to fall back to a full analysis.
+	 */
+	/* package */ boolean annotateCoverage(ExecutionDataStore store, ICoverageVisitor visitor) throws IOException {
+		updateIfChanged();
+
+		List<CachedClass> classFilesToAnalyze = new ArrayList<>();
+		Map<File, List<CachedClass>> archiveEntriesToAnalyze = new LinkedHashMap<>();
+		for (CachedClass cachedClass : cachedClasses) {
+			if (!needsAnalysis(cachedClass, store)) {
+				if (cachedClass.uncoveredCoverage != null) {
+					visitUncoveredCoverage(visitor, cachedClass);
+				}
+				continue;
+			}
+			if (cachedClass.archive != null) {
+				archiveEntriesToAnalyze.computeIfAbsent(cachedClass.archive, archive -> new ArrayList<>())
+						.add(cachedClass);
+			} else if (cachedClass.classFile != null) {
+				classFilesToAnalyze.add(cachedClass);
+			} else {
+				logger.debug("Class " + cachedClass.name +
+						" is nested too deeply in archives to be analyzed from the cache.");
+				return false;
+			}
+		}
+
+		FilteringAnalyzer analyzer = new FilteringAnalyzer(store, visitor, locationIncludeFilter, logger);
+		for (CachedClass cachedClass : classFilesToAnalyze) {
+			byte[] buffer;
+			try {
+				buffer = Files.readAllBytes(cachedClass.classFile.toPath());
+			} catch (NoSuchFileException e) {
+				logger.debug("Class file " + cachedClass.classFile + " has been deleted since the cache was built.");
+				return false;
+			}
+			if (!analyzeIfUnchanged(analyzer, cachedClass, buffer, cachedClass.classFile.getPath())) {
+				return false;
+			}
+		}
+		for (Map.Entry<File, List<CachedClass>> archiveEntries : archiveEntriesToAnalyze.entrySet()) {
+			if (!analyzeArchiveEntries(analyzer, archiveEntries.getKey(), archiveEntries.getValue())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the class must be analyzed with the execution data of the store, as the coverage differs from the
+	 * cached, uncovered coverage.
+	 */
+	private static boolean needsAnalysis(CachedClass cachedClass, ExecutionDataStore store) {
+		ExecutionData executionData = store.get(cachedClass.id);
+		if (executionData == null) {
+			// JaCoCo marks classes whose name is contained in the execution data with a different ID as "no match"
+			return store.contains(cachedClass.name);
+		}
+		return executionData.hasHits();
+	}
+
+	/**
+	 * Analyzes the given classes of the archive on disk. Classes that are nested in another archive are grouped by that
+	 * archive, which is then streamed once.
+	 */
+	private boolean analyzeArchiveEntries(FilteringAnalyzer analyzer, File archive,
+										  List<CachedClass> cachedClasses) throws IOException {
+		Map<String, Map<String, CachedClass>> nestedArchiveEntries = new LinkedHashMap<>();
+		try (ZipFile zipFile = new ZipFile(archive)) {
+			for (CachedClass cachedClass : cachedClasses) {
+				if (cachedClass.nestedArchiveEntry != null) {
+					nestedArchiveEntries.computeIfAbsent(cachedClass.nestedArchiveEntry, entry -> new HashMap<>())
+							.put(cachedClass.archiveEntry, cachedClass);
+					continue;
+				}
+				String location = archive.getPath() + "@" + cachedClass.archiveEntry;
+				ZipEntry entry = zipFile.getEntry(cachedClass.archiveEntry);
+				if (entry == null) {
+					logger.debug("Class file " + location + " has been deleted since the cache was built.");
+					return false;
+				}
+				if (!analyzeIfUnchanged(analyzer, cachedClass, analyzer.readArchiveEntry(zipFile, entry, location),
+						location)) {
+					return false;
+				}
+			}
+			for (Map.Entry<String, Map<String, CachedClass>> nestedEntries : nestedArchiveEntries.entrySet()) {
+				if (!analyzeNestedArchiveEntries(analyzer, zipFile, archive.getPath() + "@" + nestedEntries.getKey(),
+						nestedEntries.getKey(), nestedEntries.getValue())) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Streams the archive stored in the given entry of the zip file and analyzes the given classes of it, which are
+	 * mapped by the name of their entry in the nested archive. Stops reading as soon as all classes were found.
+	 */
+	private boolean analyzeNestedArchiveEntries(FilteringAnalyzer analyzer, ZipFile zipFile,
+												String nestedArchiveLocation, String nestedArchiveEntry,
+												Map<String, CachedClass> cachedClasses) throws IOException {
+		ZipEntry entry = zipFile.getEntry(nestedArchiveEntry);
+		if (entry == null) {
+			logger.debug("Archive " + nestedArchiveLocation + " has been deleted since the cache was built.");
+			return false;
+		}
+		try (InputStream input = zipFile.getInputStream(entry);
+			 ZipInputStream nestedArchive = new ZipInputStream(new BashFileSkippingInputStream(input))) {
+			ZipEntry classEntry;
+			while (!cachedClasses.isEmpty() && (classEntry = nestedArchive.getNextEntry()) != null) {
+				CachedClass cachedClass = cachedClasses.remove(classEntry.getName());
+				if (cachedClass == null) {
+					continue;
+				}
+				String location = nestedArchiveLocation + "@" + classEntry.getName();
+				byte[] buffer;
+				try {
+					buffer = InputStreams.readFully(nestedArchive);
+				} catch (IOException e) {
+					throw analyzer.analyzerError(location, e);
+				}
+				if (!analyzeIfUnchanged(analyzer, cachedClass, buffer, location)) {
+					return false;
+				}
+			}
+		}
+		if (!cachedClasses.isEmpty()) {
+			logger.debug("Class files in " + nestedArchiveLocation + " have been deleted since the cache was built.");
+			return false;
+		}
+		return true;
+	}
+
+	/** Analyzes the given class file unless its content changed since the cache was built. */
+	private boolean analyzeIfUnchanged(FilteringAnalyzer analyzer, CachedClass cachedClass, byte[] buffer,
+									   String location) throws IOException {
+		if (CRC64.classId(buffer) != cachedClass.id) {
+			logger.debug("Class file " + location + " has changed since the cache was built.");
+			return false;
+		}
+		analyzer.analyzeClass(buffer, location);
+		return true;
+	}
+
+	/**
+	 * Passes the cached coverage to the visitor. Errors for duplicate classes are reported the same way as by the
+	 * analyzer.
+	 */
+	private static void visitUncoveredCoverage(ICoverageVisitor visitor, CachedClass cachedClass) throws IOException {
+		try {
+			visitor.visitCoverage(cachedClass.uncoveredCoverage);
+		} catch (IllegalStateException e) {
+			throw new IOException("Error while analyzing class " + cachedClass.name, e);
+		}
+	}
+
+	/** Rebuilds the cache if any of the code files has been added, removed or modified since the last build. */
+	private void updateIfChanged() throws IOException {
+		Map<File, FileState> currentCodeFileStates = new HashMap<>();
+		for (File file : codeDirectoriesOrArchives) {
+			collectFileStates(file, currentCodeFileStates);
+		}
+		if (currentCodeFileStates.equals(codeFileStates)) {
+			return;
+		}
+
+		logger.debug("Analyzing the structure of all class files");
+		ClassRecorder recorder = new ClassRecorder(keepUncoveredClasses);
+		RecordingAnalyzer analyzer = new RecordingAnalyzer(recorder);
+		for (File file : codeDirectoriesOrArchives) {
+			analyzer.analyzeAll(file);
+		}
+		cachedClasses = recorder.classes;
+		codeFileStates = currentCodeFileStates;
+	}
+
+	/** Collects the modification times and sizes of the given file and of all files contained in the directory. */
+	private static void collectFileStates(File file, Map<File, FileState> fileStates) throws IOException {
+		if (!file.exists()) {
+			return;
+		}
+		BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		fileStates.put(file, new FileState(attributes));
+		if (attributes.isDirectory()) {
+			File[] files = file.listFiles();
+			if (files == null) {
+				return;
+			}
+			for (File child : files) {
+				collectFileStates(child, fileStates);
+			}
+		}
+	}
+
+	/**
+	 * Analyzer that tracks the location of the currently analyzed class file in the {@link ClassRecorder}. Classes
+	 * are analyzed without execution data.
+	 */
+	private class RecordingAnalyzer extends FilteringAnalyzer {
+
+		/** The recorder that receives the coverage of the analyzed classes. */
+		private final ClassRecorder recorder;
+
+		/** The file that is currently analyzed. */
+		private File currentFile;
+
+		/** The archive that is currently analyzed via random access or null. */
+		private File currentArchive;
+
+		/**
+		 * The location of the archive that is currently streamed from an entry of the {@link #currentArchive} or
+		 * null.
+		 */
+		private String currentNestedArchiveLocation;
+
+		private RecordingAnalyzer(ClassRecorder recorder) {
+			super(new ExecutionDataStore(), recorder, locationIncludeFilter, logger);
+			this.recorder = recorder;
+		}
+
+		@Override
+		protected int analyzeFile(File file) throws IOException {
+			currentFile = file;
+			try {
+				return super.analyzeFile(file);
+			} finally {
+				currentFile = null;
+			}
+		}
+
+		@Override
+		protected Integer analyzeArchive(File archive) throws IOException {
+			currentArchive = archive;
+			try {
+				return super.analyzeArchive(archive);
+			} finally {
+				currentArchive = null;
+			}
+		}
+
+		@Override
+		protected void analyzeArchiveEntries(ZipFile zipFile, String archiveLocation,
+											 List<ZipEntry> classEntries) throws IOException {
+			for (ZipEntry entry : classEntries) {
+				String location = archiveLocation + "@" + entry.getName();
+				recorder.currentArchive = currentArchive;
+				recorder.currentArchiveEntry = entry.getName();
+				try {
+					analyzeClass(readArchiveEntry(zipFile, entry, location), location);
+				} finally {
+					recorder.currentArchive = null;
+					recorder.currentArchiveEntry = null;
+				}
+			}
+		}
+
+		@Override
+		public int analyzeAll(InputStream input, String location) throws IOException {
+			if (currentArchive == null || currentNestedArchiveLocation != null) {
+				return super.analyzeAll(input, location);
+			}
+			currentNestedArchiveLocation = location;
+			try {
+				return super.analyzeAll(input, location);
+			} finally {
+				currentNestedArchiveLocation = null;
+			}
+		}
+
+		@Override
+		public void analyzeClass(byte[] buffer, String location) throws IOException {
+			if (currentArchive == null && currentFile != null && currentFile.getPath().equals(location)) {
+				recorder.currentClassFile = currentFile;
+			} else if (currentNestedArchiveLocation != null &&
+					location.startsWith(currentNestedArchiveLocation + "@")) {
+				String entryName = location.substring(currentNestedArchiveLocation.length() + 1);
+				// classes in archives nested more deeply are recorded without location
+				if (!entryName.contains("@")) {
+					recorder.currentArchive = currentArchive;
+					recorder.currentNestedArchiveEntry = currentNestedArchiveLocation
+							.substring(currentArchive.getPath().length() + 1);
+					recorder.currentArchiveEntry = entryName;
+				}
+			}
+			try {
+				super.analyzeClass(buffer, location);
+			} finally {
+				recorder.currentClassFile = null;
+				if (currentNestedArchiveLocation != null) {
+					recorder.currentArchive = null;
+					recorder.currentNestedArchiveEntry = null;
+					recorder.currentArchiveEntry = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records the coverage of all visited classes along with the location of their class file. Classes in archives
+	 * that are nested more than one level deep are recorded without location.
+	 */
+	private static class ClassRecorder implements ICoverageVisitor {
+
+		/** The recorded classes. */
+		private final List<CachedClass> classes = new ArrayList<>();
+
+		/** Whether the coverage of the classes should be kept. */
+		private final boolean keepCoverage;
+
+		/** The class file that is currently analyzed (if it is a file on its own) or null. */
+		private File currentClassFile;
+
+		/** The archive on disk that contains the currently analyzed class file or null. */
+		private File currentArchive;
+
+		/**
+		 * The entry of the {@link #currentArchive} that contains the nested archive with the currently analyzed class
+		 * file or null.
+		 */
+		private String currentNestedArchiveEntry;
+
+		/** The name of the archive entry that is currently analyzed or null. */
+		private String currentArchiveEntry;
+
+		private ClassRecorder(boolean keepCoverage) {
+			this.keepCoverage = keepCoverage;
+		}
+
+		@Override
+		public void visitCoverage(IClassCoverage coverage) {
+			IClassCoverage uncoveredCoverage = null;
+			if (keepCoverage) {
+				uncoveredCoverage = coverage;
+			}
+			classes.add(new CachedClass(coverage.getId(), coverage.getName(), uncoveredCoverage, currentClassFile,
+					currentArchive, currentNestedArchiveEntry, currentArchiveEntry));
+		}
+	}
+
+	/** A class found during the analysis. */
+	private static class CachedClass {
+
+		/** The class ID. */
+		private final long id;
+
+		/** The VM name of the class. */
+		private final String name;
+
+		/** The coverage of the class without any hits or null if uncovered classes are not needed. */
+		private final IClassCoverage uncoveredCoverage;
+
+		/** The class file if the class is stored in a file of its own, otherwise null. */
+		private final File classFile;
+
+		/** The archive on disk that contains the class file or null. */
+		private final File archive;
+
+		/**
+		 * The name of the entry in the {@link #archive} that contains the nested archive with the class file or null if
+		 * the class file is stored in the {@link #archive} directly.
+		 */
+		private final String nestedArchiveEntry;
+
+		/**
+		 * The name of the class file entry in the {@link #archive} (or in the nested archive if {@link
+		 * #nestedArchiveEntry} is set) or null.
+		 */
+		private final String archiveEntry;
+
+		private CachedClass(long id, String name, IClassCoverage uncoveredCoverage, File classFile, File archive,
+							String nestedArchiveEntry, String archiveEntry) {
+			this.id = id;
+			this.name = name;
+			this.uncoveredCoverage = uncoveredCoverage;
+			this.classFile = classFile;
+			this.archive = archive;
+			this.nestedArchiveEntry = nestedArchiveEntry;
+			this.archiveEntry = archiveEntry;
+		}
+	}
+
+	/** The modification time and size of a file. */
+	private static class FileState {
+
+		/** The modification time in milliseconds. */
+		private final long lastModified;
+
+		/** The size in bytes. */
+		private final long size;
+
+		private FileState(BasicFileAttributes attributes) {
+			this.lastModified = attributes.lastModifiedTime().toMillis();
+			this.size = attributes.size();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			FileState fileState = (FileState) o;
+			return lastModified == fileState.lastModified && size == fileState.size;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(lastModified, size);
+		}
+	}
+}
@@ -10,16 +10,31 @@ import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
 import com.teamscale.report.util.ILogger;
 import org.jacoco.core.analysis.Analyzer;
 import org.jacoco.core.analysis.ICoverageVisitor;
+import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.InputStreams;
+import org.jacoco.core.internal.data.CRC64;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.function.Predicate;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 /**
  * {@link Analyzer} that filters the analyzed class files based on a {@link Predicate}.
+ * <p>
+ * Archives on disk are scanned via their central directory, so that class files not matching the filter are never
+ * inflated. All other entries are streamed and analyzed based on their content like by JaCoCo's {@link Analyzer}, so
+ * nested zip, gzip and pack200 archives are found regardless of their name. Archives nested in other archives and
+ * archives that can't be opened as {@link ZipFile} are streamed.
  */
 /* package */ public class FilteringAnalyzer extends OpenAnalyzer {
 
@@ -27,13 +42,129 @@ import java.util.zip.ZipInputStream;
 	private final ClasspathWildcardIncludeFilter locationIncludeFilter;
 	private final ILogger logger;
 
+	/** The execution data the classes are analyzed with. */
+	private final ExecutionDataStore executionData;
+
+	/** Whether classes without hits in the {@link #executionData} are skipped instead of being analyzed. */
+	private final boolean skipClassesWithoutHits;
+
 	public FilteringAnalyzer(ExecutionDataStore executionData, ICoverageVisitor coverageVisitor,
 							 ClasspathWildcardIncludeFilter locationIncludeFilter, ILogger logger) {
+		this(executionData, coverageVisitor, locationIncludeFilter, false, logger);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param skipClassesWithoutHits Whether to skip the analysis of classes without hits in the execution data, e.g.
+	 *                               because uncovered classes are removed from the report anyway. Such classes are not
+	 *                               passed to the coverage visitor at all.
+	 */
+	public FilteringAnalyzer(ExecutionDataStore executionData, ICoverageVisitor coverageVisitor,
+							 ClasspathWildcardIncludeFilter locationIncludeFilter, boolean skipClassesWithoutHits,
+							 ILogger logger) {
 		super(executionData, coverageVisitor);
+		this.executionData = executionData;
 		this.locationIncludeFilter = locationIncludeFilter;
+		this.skipClassesWithoutHits = skipClassesWithoutHits;
 		this.logger = logger;
 	}
 
+	/** {@inheritDoc} */
+	@Override
+	public int analyzeAll(File file) throws IOException {
+		if (file.isDirectory()) {
+			return super.analyzeAll(file);
+		}
+		return analyzeFile(file);
+	}
+
+	/** Analyzes all class files contained in the given file, which must not be a directory. */
+	protected int analyzeFile(File file) throws IOException {
+		if (isArchive(file.getName())) {
+			Integer count = analyzeArchive(file);
+			if (count != null) {
+				return count;
+			}
+		}
+		try (InputStream input = new FileInputStream(file)) {
+			return analyzeAll(input, file.getPath());
+		}
+	}
+
+	/**
+	 * Analyzes the given archive via random access. Class files are only read if they are matched by the include
+	 * filter. Other entries are analyzed based on their content. Returns the number of found class files or null if the
+	 * file could not be opened as a zip file.
+	 */
+	protected Integer analyzeArchive(File archive) throws IOException {
+		ZipFile zipFile;
+		try {
+			zipFile = new ZipFile(archive);
+		} catch (ZipException e) {
+			logger.debug("Falling back to streaming " + archive + ": " + e.getMessage());
+			return null;
+		}
+		try {
+			String archiveLocation = archive.getPath();
+			List<ZipEntry> includedClassEntries = new ArrayList<>();
+			int count = 0;
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (entry.isDirectory()) {
+					continue;
+				}
+				String location = archiveLocation + "@" + entry.getName();
+				if (entry.getName().endsWith(".class")) {
+					count++;
+					if (locationIncludeFilter.isIncluded(location)) {
+						includedClassEntries.add(entry);
+					} else {
+						logger.debug("Excluding class file " + location);
+					}
+				} else {
+					// nested archives (including gzip and pack200) are detected by their content
+					try (InputStream input = zipFile.getInputStream(entry)) {
+						count += analyzeAll(input, location);
+					}
+				}
+			}
+			analyzeArchiveEntries(zipFile, archiveLocation, includedClassEntries);
+			return count;
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	/**
+	 * Analyzes the given class file entries of the archive. The zip file is closed once this method returns, so all
+	 * entries must have been read by then.
+	 */
+	protected void analyzeArchiveEntries(ZipFile zipFile, String archiveLocation,
+										 List<ZipEntry> classEntries) throws IOException {
+		for (ZipEntry entry : classEntries) {
+			String location = archiveLocation + "@" + entry.getName();
+			analyzeClass(readArchiveEntry(zipFile, entry, location), location);
+		}
+	}
+
+	/** Reads the content of the given entry of the zip file. */
+	protected byte[] readArchiveEntry(ZipFile zipFile, ZipEntry entry, String location) throws IOException {
+		try (InputStream input = zipFile.getInputStream(entry)) {
+			return InputStreams.readFully(input);
+		} catch (IOException e) {
+			throw analyzerError(location, e);
+		}
+	}
+
+	/** Returns whether the file name denotes a Jar/War/Ear/Zip archive. */
+	private static boolean isArchive(String fileName) {
+		String lowerCaseFileName = fileName.toLowerCase();
+		return lowerCaseFileName.endsWith(".jar") || lowerCaseFileName.endsWith(".war") ||
+				lowerCaseFileName.endsWith(".ear") || lowerCaseFileName.endsWith(".zip");
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public int analyzeAll(InputStream input, String location) throws IOException {
@@ -50,6 +181,9 @@ import java.util.zip.ZipInputStream;
 	@Override
 	public void analyzeClass(final byte[] buffer, final String location)
 			throws IOException {
+		if (skipClassesWithoutHits && !hasHits(buffer)) {
+			return;
+		}
 		try {
 			analyzeClass(buffer);
 		} catch (final RuntimeException cause) {
@@ -61,6 +195,12 @@ import java.util.zip.ZipInputStream;
 		}
 	}
 
+	/** Returns whether the execution data contains hits for the given class file. */
+	private boolean hasHits(byte[] buffer) {
+		ExecutionData data = executionData.get(CRC64.classId(buffer));
+		return data != null && data.hasHits();
+	}
+
 	/**
 	 * Checks if the error indicates that the class file might be newer than what is currently supported by
 	 * JaCoCo. The concrete error message seems to depend on the used JVM, so we only check for "Unsupported" which seems
@@ -4,7 +4,6 @@ import com.teamscale.report.EDuplicateClassFileBehavior;
 import com.teamscale.report.jacoco.dump.Dump;
 import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
 import com.teamscale.report.util.ILogger;
-import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.SessionInfo;
@@ -37,6 +36,9 @@ public class JaCoCoXmlReportGenerator {
 	/** Whether to remove uncovered classes from the report. */
 	private final boolean ignoreUncoveredClasses;
 
+	/** Caches the analysis results of the class files between conversions or null if caching is disabled. */
+	private final ClassStructureCache classStructureCache;
+
 	/** Part of the error message logged when validating the coverage report fails. */
 	private static final String MOST_LIKELY_CAUSE_MESSAGE = "Most likely you did not configure the agent correctly." +
 			" Please check that the includes and excludes options are set correctly so the relevant code is included." +
@@ -48,11 +50,32 @@ public class JaCoCoXmlReportGenerator {
 									ClasspathWildcardIncludeFilter locationIncludeFilter,
 									EDuplicateClassFileBehavior duplicateClassFileBehavior,
 									boolean ignoreUncoveredClasses, ILogger logger) {
+		this(codeDirectoriesOrArchives, locationIncludeFilter, duplicateClassFileBehavior, ignoreUncoveredClasses,
+				false, logger);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cacheClassStructure Whether to keep the analysis results of the class files between calls of {@link
+	 *                            #convert(Dump, File)}. Subsequent conversions then only need to analyze the classes
+	 *                            with hits in the dump, at the cost of keeping the structure of all classes in memory.
+	 */
+	public JaCoCoXmlReportGenerator(List<File> codeDirectoriesOrArchives,
+									ClasspathWildcardIncludeFilter locationIncludeFilter,
+									EDuplicateClassFileBehavior duplicateClassFileBehavior,
+									boolean ignoreUncoveredClasses, boolean cacheClassStructure, ILogger logger) {
 		this.codeDirectoriesOrArchives = codeDirectoriesOrArchives;
 		this.duplicateClassFileBehavior = duplicateClassFileBehavior;
 		this.locationIncludeFilter = locationIncludeFilter;
 		this.ignoreUncoveredClasses = ignoreUncoveredClasses;
 		this.logger = logger;
+		if (cacheClassStructure) {
+			this.classStructureCache = new ClassStructureCache(codeDirectoriesOrArchives, locationIncludeFilter,
+					!ignoreUncoveredClasses, logger);
+		} else {
+			this.classStructureCache = null;
+		}
 	}
 
 
@@ -101,13 +124,25 @@ public class JaCoCoXmlReportGenerator {
 
 	/**
 	 * Analyzes the structure of the class files in {@link #codeDirectoriesOrArchives} and builds an in-memory coverage
-	 * report with the coverage in the given store.
+	 * report with the coverage in the given store. If uncovered classes are ignored, only the classes with hits in the
+	 * store are analyzed, so the effort is proportional to the executed code rather than to the whole code base.
 	 */
 	private IBundleCoverage analyzeStructureAndAnnotateCoverage(ExecutionDataStore store) throws IOException {
-		CoverageBuilder coverageBuilder = new TeamscaleCoverageBuilder(this.logger,
+		if (classStructureCache != null) {
+			TeamscaleCoverageBuilder coverageBuilder = new TeamscaleCoverageBuilder(this.logger,
+					duplicateClassFileBehavior, ignoreUncoveredClasses);
+			if (classStructureCache.annotateCoverage(store, coverageBuilder)) {
+				return coverageBuilder.getBundle("dummybundle");
+			}
+			logger.debug("Not all classes with hits could be analyzed from the cache. Falling back to analyzing all" +
+					" class files.");
+		}
+
+		TeamscaleCoverageBuilder coverageBuilder = new TeamscaleCoverageBuilder(this.logger,
 				duplicateClassFileBehavior, ignoreUncoveredClasses);
 
-		FilteringAnalyzer analyzer = new FilteringAnalyzer(store, coverageBuilder, locationIncludeFilter, logger);
+		FilteringAnalyzer analyzer = new FilteringAnalyzer(store, coverageBuilder, locationIncludeFilter,
+				ignoreUncoveredClasses, logger);
 
 		for (File file : codeDirectoriesOrArchives) {
 			analyzer.analyzeAll(file);
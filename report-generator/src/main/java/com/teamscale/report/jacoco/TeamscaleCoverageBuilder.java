@@ -11,16 +11,25 @@ import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageVisitor;
 import org.jacoco.core.internal.analysis.BundleCoverageImpl;
+import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
- * Modified {@link CoverageBuilder} can ignore non-identical duplicate classes or classes without coverage. In addition,
- * coverage returned via {@link #getBundle(String)} will only return source file coverage because Teamscale does not
- * need class coverage anyway. This reduces XML size by approximately half.
+ * Replacement for JaCoCo's {@link CoverageBuilder} that can ignore non-identical duplicate classes or classes without
+ * coverage. In addition, coverage returned via {@link #getBundle(String)} will only return source file coverage because
+ * Teamscale does not need class coverage anyway. This reduces XML size by approximately half.
+ * <p>
+ * In contrast to {@link CoverageBuilder}, the coverage of each class is merged into the coverage of its source file
+ * immediately and the class coverage (including all its methods) is discarded afterwards. Only the ID of each class is
+ * kept to detect duplicates. This keeps the memory needed for a report proportional to the number of source files and
+ * lines instead of the number of classes, methods and their line counters.
  */
-/* package */class TeamscaleCoverageBuilder extends CoverageBuilder {
+/* package */class TeamscaleCoverageBuilder implements ICoverageVisitor {
 
 	/** The logger. */
 	private final ILogger logger;
@@ -31,6 +40,12 @@ import java.util.Collections;
 	/** Whether to ignore uncovered classes (i.e. leave them out of the report). */
 	private final boolean ignoreUncoveredClasses;
 
+	/** The IDs of all visited classes by class name. */
+	private final Map<String, Long> classIds = new HashMap<>();
+
+	/** The coverage of all source files by package and source file name. */
+	private final Map<String, SourceFileCoverageImpl> sourceFiles = new HashMap<>();
+
 	TeamscaleCoverageBuilder(ILogger logger, EDuplicateClassFileBehavior duplicateClassFileBehavior,
 							 boolean removeUncoveredClasses) {
 		this.logger = logger;
@@ -39,9 +54,9 @@ import java.util.Collections;
 	}
 
 	/** Just returns source file coverage, because Teamscale does not need class coverage. */
-	@Override
 	public IBundleCoverage getBundle(final String name) {
-		return new BundleCoverageImpl(name, Collections.emptyList(), getSourceFiles());
+		return new BundleCoverageImpl(name, Collections.emptyList(),
+				Collections.unmodifiableCollection(sourceFiles.values()));
 	}
 
 	/** {@inheritDoc} */
@@ -51,26 +66,43 @@ import java.util.Collections;
 			return;
 		}
 
-		try {
-			super.visitCoverage(coverage);
-		} catch (IllegalStateException e) {
-			switch (duplicateClassFileBehavior) {
-				case IGNORE:
-					return;
-				case WARN:
-					// we deliberately do not log the exception in this case as it does not provide any additional
-					// valuable information but confuses users into thinking there's a serious problem with the agent
-					// as they only see that there are stack traces in the log
-					logger.warn("Ignoring duplicate, non-identical class file for class " + coverage
-							.getName() + " compiled from source file " + coverage.getSourceFileName() + "."
-							+ " This happens when a class with the same fully-qualified name is loaded twice but the two loaded class files are not identical."
-							+ " A common reason for this is that the same library or shared code is included twice in your application but in two different versions."
-							+ " The produced coverage for this class may not be accurate or may even be unusable."
-							+ " To fix this problem, please resolve the conflict between both class files in your application.");
-					return;
-				default:
-					throw e;
-			}
+		Long duplicateClassId = classIds.put(coverage.getName(), coverage.getId());
+		if (duplicateClassId == null) {
+			addToSourceFile(coverage);
+		} else if (duplicateClassId != coverage.getId()) {
+			handleNonIdenticalDuplicate(coverage);
+		}
+	}
+
+	/** Merges the coverage of the class into the coverage of its source file. */
+	private void addToSourceFile(IClassCoverage coverage) {
+		String sourceFileName = coverage.getSourceFileName();
+		if (sourceFileName == null) {
+			return;
+		}
+		String packageName = coverage.getPackageName();
+		sourceFiles.computeIfAbsent(packageName + '/' + sourceFileName,
+				key -> new SourceFileCoverageImpl(sourceFileName, packageName)).increment(coverage);
+	}
+
+	/** Ignores, logs or rejects the given class, which has the same name as an already visited but different class. */
+	private void handleNonIdenticalDuplicate(IClassCoverage coverage) {
+		switch (duplicateClassFileBehavior) {
+			case IGNORE:
+				return;
+			case WARN:
+				// we deliberately do not log the exception in this case as it does not provide any additional
+				// valuable information but confuses users into thinking there's a serious problem with the agent
+				// as they only see that there are stack traces in the log
+				logger.warn("Ignoring duplicate, non-identical class file for class " + coverage
+						.getName() + " compiled from source file " + coverage.getSourceFileName() + "."
+						+ " This happens when a class with the same fully-qualified name is loaded twice but the two loaded class files are not identical."
+						+ " A common reason for this is that the same library or shared code is included twice in your application but in two different versions."
+						+ " The produced coverage for this class may not be accurate or may even be unusable."
+						+ " To fix this problem, please resolve the conflict between both class files in your application.");
+				return;
+			default:
+				throw new IllegalStateException("Can't add different class with same name: " + coverage.getName());
 		}
 	}
 }
@@ -0,0 +1,156 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.report.testwise.model.LineRange;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Constants and encoding helpers of the compact binary testwise coverage format that is written by the
+ * {@link CompactTestwiseCoverageReportWriter} and read by the {@link CompactTestwiseCoverageReportReader}.
+ * <p>
+ * A report starts with a magic number and a format version, followed by one record per test and an end marker. Paths,
+ * file names and test results are stored in a string table that is built up while writing: the first occurrence of a
+ * string is written literally, every further occurrence only as its index in the table. The coverage of a test is
+ * content-addressed: identical coverage, e.g. of parameterized tests, is only written for the first test as a
+ * length-prefixed block and referenced by its index from all further tests. Covered lines are written as ranges whose
+ * start is delta-encoded against the end of the previous range. All integers are written as variable length integers.
+ * The whole report may be compressed with gzip, which the reader detects automatically.
+ */
+/* package */ class CompactTestwiseCoverageFormat {
+
+	/** Magic number at the beginning of each compact testwise coverage report ("TSTW"). */
+	/* package */ static final int MAGIC_NUMBER = 0x54535457;
+
+	/** Version of the file format. Must be incremented whenever the format changes. */
+	/* package */ static final int FORMAT_VERSION = 1;
+
+	/** Marks the end of the report. */
+	/* package */ static final int END_OF_REPORT = 0;
+
+	/** Marks the beginning of a test. */
+	/* package */ static final int TEST_RECORD = 1;
+
+	/** Reference to a coverage that has not been written yet and follows as length-prefixed block. */
+	/* package */ static final int NEW_COVERAGE_REFERENCE = 0;
+
+	/** Offset between the index of a coverage and its reference. */
+	/* package */ static final int FIRST_COVERAGE_REFERENCE = 1;
+
+	/** Reference to a string table entry that stands for null. */
+	/* package */ static final int NULL_REFERENCE = 0;
+
+	/** Reference to a string table entry that has not been written yet and follows literally. */
+	/* package */ static final int NEW_ENTRY_REFERENCE = 1;
+
+	/** Offset between the index of a string table entry and its reference. */
+	/* package */ static final int FIRST_ENTRY_REFERENCE = 2;
+
+	private CompactTestwiseCoverageFormat() {
+		// Utility class
+	}
+
+	/** Writes the given string as length (plus one, so that zero stands for null) and UTF-8 bytes. */
+	/* package */
+	static void writeString(DataOutputStream output, String value) throws IOException {
+		if (value == null) {
+			writeVarInt(output, 0);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(output, bytes.length + 1);
+		output.write(bytes);
+	}
+
+	/** Reads a value written by {@link #writeString(DataOutputStream, String)}. */
+	/* package */
+	static String readString(DataInputStream input) throws IOException {
+		int length = readVarInt(input) - 1;
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes the covered lines given as comma-separated ranges like "1-5,7" as number of ranges followed by the
+	 * distance of each range start to the end of the previous range and the length of the range.
+	 */
+	/* package */
+	static void writeCoveredLines(DataOutputStream output, String coveredLines) throws IOException {
+		List<LineRange> ranges = parseLineRanges(coveredLines);
+		writeVarInt(output, ranges.size());
+		int previousEnd = 0;
+		for (LineRange range : ranges) {
+			writeVarInt(output, zigZagEncode(range.getStart() - previousEnd));
+			writeVarInt(output, zigZagEncode(range.getEnd() - range.getStart()));
+			previousEnd = range.getEnd();
+		}
+	}
+
+	/** Reads a value written by {@link #writeCoveredLines(DataOutputStream, String)}. */
+	/* package */
+	static String readCoveredLines(DataInputStream input) throws IOException {
+		int rangeCount = readVarInt(input);
+		StringBuilder coveredLines = new StringBuilder();
+		int previousEnd = 0;
+		for (int i = 0; i < rangeCount; i++) {
+			int start = previousEnd + zigZagDecode(readVarInt(input));
+			int end = start + zigZagDecode(readVarInt(input));
+			if (i > 0) {
+				coveredLines.append(',');
+			}
+			coveredLines.append(new LineRange(start, end).toReportString());
+			previousEnd = end;
+		}
+		return coveredLines.toString();
+	}
+
+	/** Parses the covered lines given as comma-separated ranges. */
+	private static List<LineRange> parseLineRanges(String coveredLines) throws IOException {
+		try {
+			return LineRange.parseReportString(coveredLines);
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid covered lines " + coveredLines, e);
+		}
+	}
+
+	/** Maps signed to unsigned integers so that small negative values are written with few bytes. */
+	private static int zigZagEncode(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	/** Reverts {@link #zigZagEncode(int)}. */
+	private static int zigZagDecode(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/** Writes the given value with 7 bits per byte and the highest bit marking whether more bytes follow. */
+	/* package */
+	static void writeVarInt(DataOutputStream output, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			output.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+
+	/** Reads a value written by {@link #writeVarInt(DataOutputStream, int)}. */
+	/* package */
+	static int readVarInt(DataInputStream input) throws IOException {
+		int value = 0;
+		int shift = 0;
+		int currentByte;
+		do {
+			currentByte = input.readUnsignedByte();
+			value |= (currentByte & 0x7F) << shift;
+			shift += 7;
+		} while ((currentByte & 0x80) != 0);
+		return value;
+	}
+}
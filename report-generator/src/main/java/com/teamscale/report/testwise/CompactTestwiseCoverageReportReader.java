@@ -0,0 +1,181 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.FileCoverage;
+import com.teamscale.report.testwise.model.PathCoverage;
+import com.teamscale.report.testwise.model.TestInfo;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.END_OF_REPORT;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.FIRST_COVERAGE_REFERENCE;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.FIRST_ENTRY_REFERENCE;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.FORMAT_VERSION;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.MAGIC_NUMBER;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.NEW_COVERAGE_REFERENCE;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.NEW_ENTRY_REFERENCE;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.NULL_REFERENCE;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.TEST_RECORD;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.readCoveredLines;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.readString;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.readVarInt;
+
+/**
+ * Reads a testwise coverage report written by the {@link CompactTestwiseCoverageReportWriter} one {@link TestInfo}
+ * after the other. Passing the tests to a {@link TestwiseCoverageReportWriter} converts the report back to JSON.
+ * <p>
+ * As tests may reference the coverage of earlier tests, the reader keeps each distinct coverage in its encoded form.
+ */
+public class CompactTestwiseCoverageReportReader implements Closeable {
+
+	/** Size of the buffer used for decompressing the report. */
+	private static final int DECOMPRESSION_BUFFER_SIZE = 64 * 1024;
+
+	/** The file from which the report is read. */
+	private final File file;
+
+	/** The stream from which the report is read. */
+	private final DataInputStream input;
+
+	/** The strings that have been read from the string table so far. */
+	private final List<String> stringTable = new ArrayList<>();
+
+	/** The encoded coverages that have been read so far. */
+	private final List<byte[]> coverages = new ArrayList<>();
+
+	/** Whether the end of the report has been reached. */
+	private boolean isAtEnd = false;
+
+	/** Constructor. Detects whether the report is compressed with gzip. */
+	public CompactTestwiseCoverageReportReader(File file) throws IOException {
+		this.file = file;
+		InputStream inputStream = new BufferedInputStream(Files.newInputStream(file.toPath()));
+		try {
+			if (isGzipCompressed(inputStream)) {
+				inputStream = new BufferedInputStream(new GZIPInputStream(inputStream, DECOMPRESSION_BUFFER_SIZE));
+			}
+			this.input = new DataInputStream(inputStream);
+			if (input.readInt() != MAGIC_NUMBER || input.readInt() != FORMAT_VERSION) {
+				throw new IOException(
+						"File " + file + " is not a compact testwise coverage report of a supported version.");
+			}
+		} catch (IOException e) {
+			inputStream.close();
+			throw e;
+		}
+	}
+
+	/** Returns whether the stream starts with the gzip magic number without consuming it. */
+	private static boolean isGzipCompressed(InputStream inputStream) throws IOException {
+		inputStream.mark(2);
+		int firstByte = inputStream.read();
+		int secondByte = inputStream.read();
+		inputStream.reset();
+		return firstByte == (GZIPInputStream.GZIP_MAGIC & 0xFF) && secondByte == (GZIPInputStream.GZIP_MAGIC >>> 8);
+	}
+
+	/** Returns the next test of the report or null if all tests have been read. */
+	public TestInfo read() throws IOException {
+		if (isAtEnd) {
+			return null;
+		}
+		int recordType = readVarInt(input);
+		if (recordType == END_OF_REPORT) {
+			isAtEnd = true;
+			return null;
+		}
+		if (recordType != TEST_RECORD) {
+			throw new IOException("Unknown record type " + recordType + " in " + file);
+		}
+
+		String uniformPath = readString(input);
+		String sourcePath = readString(input);
+		String content = readString(input);
+		Double duration = null;
+		if (input.readBoolean()) {
+			duration = input.readDouble();
+		}
+		String result = readStringTableEntry(input, true);
+		String message = readString(input);
+		TestInfo testInfo = new TestInfo(uniformPath, sourcePath, content, duration,
+				result == null ? null : ETestExecutionResult.valueOf(result), message);
+
+		int coverageReference = readVarInt(input);
+		if (coverageReference == NEW_COVERAGE_REFERENCE) {
+			byte[] coverage = new byte[readVarInt(input)];
+			input.readFully(coverage);
+			coverages.add(coverage);
+			testInfo.paths.addAll(readCoverage(coverage, true));
+		} else {
+			int index = coverageReference - FIRST_COVERAGE_REFERENCE;
+			if (index >= coverages.size()) {
+				throw new IOException("Invalid coverage reference " + coverageReference + " in " + file);
+			}
+			testInfo.paths.addAll(readCoverage(coverages.get(index), false));
+		}
+		return testInfo;
+	}
+
+	/**
+	 * Decodes the given coverage.
+	 *
+	 * @param isFirstOccurrence Whether the coverage is decoded for the first time, in which case the strings it
+	 *                          introduces are added to the string table.
+	 */
+	private List<PathCoverage> readCoverage(byte[] coverage, boolean isFirstOccurrence) throws IOException {
+		DataInputStream coverageInput = new DataInputStream(new ByteArrayInputStream(coverage));
+		int pathCount = readVarInt(coverageInput);
+		List<PathCoverage> paths = new ArrayList<>(pathCount);
+		for (int i = 0; i < pathCount; i++) {
+			String path = readStringTableEntry(coverageInput, isFirstOccurrence);
+			int fileCount = readVarInt(coverageInput);
+			List<FileCoverage> files = new ArrayList<>(fileCount);
+			for (int j = 0; j < fileCount; j++) {
+				files.add(new FileCoverage(readStringTableEntry(coverageInput, isFirstOccurrence),
+						readCoveredLines(coverageInput)));
+			}
+			paths.add(new PathCoverage(path, files));
+		}
+		return paths;
+	}
+
+	/**
+	 * Reads a reference to the string table and the string itself if it occurs for the first time.
+	 *
+	 * @param addNewEntries Whether strings that occur for the first time are added to the table. This is false when
+	 *                      decoding coverage again, whose strings have already been added.
+	 */
+	private String readStringTableEntry(DataInputStream input, boolean addNewEntries) throws IOException {
+		int reference = readVarInt(input);
+		if (reference == NULL_REFERENCE) {
+			return null;
+		}
+		if (reference == NEW_ENTRY_REFERENCE) {
+			String value = readString(input);
+			if (addNewEntries) {
+				stringTable.add(value);
+			}
+			return value;
+		}
+		int index = reference - FIRST_ENTRY_REFERENCE;
+		if (index >= stringTable.size()) {
+			throw new IOException("Invalid string table reference " + reference + " in " + file);
+		}
+		return stringTable.get(index);
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+}
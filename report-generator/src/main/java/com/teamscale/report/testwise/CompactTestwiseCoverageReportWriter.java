@@ -0,0 +1,181 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.report.testwise.model.FileCoverage;
+import com.teamscale.report.testwise.model.PathCoverage;
+import com.teamscale.report.testwise.model.TestInfo;
+import com.teamscale.report.testwise.model.builder.CoverageDigest;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import com.teamscale.report.testwise.model.factory.TestInfoFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.END_OF_REPORT;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.FIRST_COVERAGE_REFERENCE;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.FIRST_ENTRY_REFERENCE;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.FORMAT_VERSION;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.MAGIC_NUMBER;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.NEW_COVERAGE_REFERENCE;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.NEW_ENTRY_REFERENCE;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.NULL_REFERENCE;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.TEST_RECORD;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.writeCoveredLines;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.writeString;
+import static com.teamscale.report.testwise.CompactTestwiseCoverageFormat.writeVarInt;
+
+/**
+ * Writes a testwise coverage report in the compact binary format described in {@link CompactTestwiseCoverageFormat}.
+ * The report is considerably smaller and faster to write than the JSON written by
+ * {@link TestwiseCoverageReportWriter}, but must be converted to JSON with the {@link
+ * CompactTestwiseCoverageReportReader} before it can be uploaded to Teamscale. In contrast to the JSON writer, all
+ * tests are written to a single file.
+ * <p>
+ * Identical coverage of multiple tests is only built and written once. Tests are identified by the
+ * {@link CoverageDigest} of their coverage, so the writer does not need to keep the coverage itself in memory.
+ */
+public class CompactTestwiseCoverageReportWriter implements ITestwiseCoverageReportWriter {
+
+	/** Size of the buffer used for compressing the report. */
+	private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
+
+	/** Factory for converting {@link TestCoverageBuilder} objects to {@link TestInfo}s. */
+	private final TestInfoFactory testInfoFactory;
+
+	/** The stream to which the report is written. */
+	private final DataOutputStream output;
+
+	/** The indices of the strings that have already been written to the string table. */
+	private final Map<String, Integer> stringTable = new HashMap<>();
+
+	/** The indices of the coverages that have already been written by their digest. */
+	private final Map<CoverageDigest, Integer> coverageIndices = new HashMap<>();
+
+	/** Buffer to which new coverage is encoded, so that it can be written with its length. */
+	private final ByteArrayOutputStream coverageBuffer = new ByteArrayOutputStream();
+
+	/** Stream that writes to {@link #coverageBuffer}. */
+	private final DataOutputStream coverageOutput = new DataOutputStream(coverageBuffer);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param outputFile The file to which the report is written.
+	 * @param compress   Whether the report is compressed with gzip.
+	 */
+	public CompactTestwiseCoverageReportWriter(TestInfoFactory testInfoFactory, File outputFile,
+											   boolean compress) throws IOException {
+		this.testInfoFactory = testInfoFactory;
+		OutputStream outputStream = Files.newOutputStream(outputFile.toPath());
+		if (compress) {
+			outputStream = new GZIPOutputStream(outputStream, COMPRESSION_BUFFER_SIZE);
+		}
+		this.output = new DataOutputStream(new BufferedOutputStream(outputStream));
+		output.writeInt(MAGIC_NUMBER);
+		output.writeInt(FORMAT_VERSION);
+	}
+
+	@Override
+	public void accept(TestCoverageBuilder testCoverageBuilder) {
+		CoverageDigest coverageDigest = testCoverageBuilder.getCoverageDigest();
+		try {
+			if (coverageIndices.containsKey(coverageDigest)) {
+				writeTest(testInfoFactory.createWithoutCoverageFor(testCoverageBuilder), coverageDigest);
+			} else {
+				writeTest(testInfoFactory.createFor(testCoverageBuilder), coverageDigest);
+			}
+		} catch (IOException e) {
+			// Need to be wrapped in RuntimeException as Consumer does not allow to throw a checked Exception
+			throw new RuntimeException("Writing test info to report failed.", e);
+		}
+	}
+
+	@Override
+	public void write(TestInfo testInfo) throws IOException {
+		CoverageDigest coverageDigest;
+		try {
+			coverageDigest = CoverageDigest.of(testInfo.paths);
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid covered lines in test " + testInfo.uniformPath, e);
+		}
+		writeTest(testInfo, coverageDigest);
+	}
+
+	/**
+	 * Writes the given test. Its coverage is only written if no coverage with the same digest has been written yet.
+	 * Otherwise, the coverage of the test info is ignored.
+	 */
+	private void writeTest(TestInfo testInfo, CoverageDigest coverageDigest) throws IOException {
+		writeVarInt(output, TEST_RECORD);
+		writeString(output, testInfo.uniformPath);
+		writeString(output, testInfo.sourcePath);
+		writeString(output, testInfo.content);
+		output.writeBoolean(testInfo.duration != null);
+		if (testInfo.duration != null) {
+			output.writeDouble(testInfo.duration);
+		}
+		writeStringTableEntry(output, testInfo.result == null ? null : testInfo.result.name());
+		writeString(output, testInfo.message);
+
+		Integer coverageIndex = coverageIndices.get(coverageDigest);
+		if (coverageIndex != null) {
+			writeVarInt(output, coverageIndex + FIRST_COVERAGE_REFERENCE);
+			return;
+		}
+		coverageIndices.put(coverageDigest, coverageIndices.size());
+		coverageBuffer.reset();
+		writeCoverage(testInfo.paths);
+		writeVarInt(output, NEW_COVERAGE_REFERENCE);
+		writeVarInt(output, coverageBuffer.size());
+		coverageBuffer.writeTo(output);
+	}
+
+	/** Encodes the given coverage to the {@link #coverageBuffer}. */
+	private void writeCoverage(List<PathCoverage> paths) throws IOException {
+		writeVarInt(coverageOutput, paths.size());
+		for (PathCoverage pathCoverage : paths) {
+			writeStringTableEntry(coverageOutput, pathCoverage.getPath());
+			writeVarInt(coverageOutput, pathCoverage.getFiles().size());
+			for (FileCoverage fileCoverage : pathCoverage.getFiles()) {
+				writeStringTableEntry(coverageOutput, fileCoverage.fileName);
+				writeCoveredLines(coverageOutput, fileCoverage.coveredLines);
+			}
+		}
+	}
+
+	/** Writes a reference to the given string and adds the string to the table if it is not contained yet. */
+	private void writeStringTableEntry(DataOutputStream output, String value) throws IOException {
+		if (value == null) {
+			writeVarInt(output, NULL_REFERENCE);
+			return;
+		}
+		Integer index = stringTable.get(value);
+		if (index != null) {
+			writeVarInt(output, index + FIRST_ENTRY_REFERENCE);
+			return;
+		}
+		stringTable.put(value, stringTable.size());
+		writeVarInt(output, NEW_ENTRY_REFERENCE);
+		writeString(output, value);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			for (TestInfo testInfo : testInfoFactory.createTestInfosWithoutCoverage()) {
+				write(testInfo);
+			}
+			writeVarInt(output, END_OF_REPORT);
+		} finally {
+			output.close();
+		}
+	}
+}
@@ -13,7 +13,10 @@ public enum ETestArtifactFormat {
 	JACOCO("Jacoco", "", "exec"),
 
 	/** Google closure coverage files with additional uniformPath entries. */
-	CLOSURE("Closure Coverage", "closure-coverage", "json");
+	CLOSURE("Closure Coverage", "closure-coverage", "json"),
+
+	/** Testwise coverage in the compact binary format ({@link CompactTestwiseCoverageReportWriter}). */
+	COMPACT_TESTWISE_COVERAGE("Compact Testwise Coverage", "", "tcov");
 
 	/** A readable name for the report type. */
 	public final String readableName;
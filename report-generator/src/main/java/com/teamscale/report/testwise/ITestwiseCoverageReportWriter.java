@@ -0,0 +1,21 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.report.testwise.model.TestInfo;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes a {@link com.teamscale.report.testwise.model.TestwiseCoverageReport} one test after the other, so that the
+ * tests do not need to be kept in memory during the conversion.
+ */
+public interface ITestwiseCoverageReportWriter extends Consumer<TestCoverageBuilder>, AutoCloseable {
+
+	/** Writes the given test as is, e.g. because it was read from another report. */
+	void write(TestInfo testInfo) throws IOException;
+
+	/** Writes the tests that did not produce any coverage and finishes the report. */
+	@Override
+	void close() throws IOException;
+}
@@ -8,17 +8,36 @@ import com.teamscale.report.testwise.model.TestInfo;
 import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
 import com.teamscale.report.testwise.model.factory.TestInfoFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
-import java.util.function.Consumer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Writes out a {@link com.teamscale.report.testwise.model.TestwiseCoverageReport} one {@link TestInfo} after the other
  * so that we do not need to keep them all in memory during the conversion.
+ * <p>
+ * With more than one writer thread, the tests of each split file are collected on the calling thread and the file is
+ * serialized on a worker thread, so multiple files are written concurrently. The tests end up in the same files and in
+ * the same order as when writing sequentially. At most one collected file per writer thread is pending at a time,
+ * which bounds the memory to roughly {@code writerThreads * splitAfter} tests.
  */
-public class TestwiseCoverageReportWriter implements Consumer<TestCoverageBuilder>, AutoCloseable {
+public class TestwiseCoverageReportWriter implements ITestwiseCoverageReportWriter {
+
+	/** Size of the buffer used for compressing the report files. */
+	private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
 
 	/** Factory for converting {@link TestCoverageBuilder} objects to {@link TestInfo}s. */
 	private final TestInfoFactory testInfoFactory;
@@ -27,20 +46,88 @@ public class TestwiseCoverageReportWriter implements Consumer<TestCoverageBuilde
 	/** After how many written tests a new file should be started. */
 	private final int splitAfter;
 
+	/** Whether the report files are compressed with gzip. */
+	private final boolean compress;
+
+	/** Whether the report is partial, i.e. does not contain all tests of the partition. */
+	private final boolean partial;
+
+	/** Whether the JSON is pretty printed. */
+	private final boolean prettyPrint;
+
+	/** The threads writing the report files or null if the files are written on the calling thread. */
+	private final ExecutorService workers;
+
+	/** The maximum number of report files that are collected or being written at the same time. */
+	private final int maxPendingFiles;
+
+	/** The report files that are being written by the {@link #workers} in the order in which they were submitted. */
+	private final Deque<Future<?>> pendingFiles = new ArrayDeque<>();
+
 	/** Writer instance to where the {@link com.teamscale.report.testwise.model.TestwiseCoverageReport} is written to. */
 	private JsonGenerator jsonGenerator;
 
+	/** The tests of the current file if the file is written by the {@link #workers}. */
+	private List<TestInfo> currentFileTests;
+
 	/** Number of tests written to the file. */
 	private int testsWritten = 0;
 
 	/** Number of test files that have been written. */
 	private int testFileCounter = 0;
 
+	/** The report files that have been started so far. */
+	private final List<File> reportFiles = new ArrayList<>();
+
 	public TestwiseCoverageReportWriter(TestInfoFactory testInfoFactory, File outputFile,
 										int splitAfter) throws IOException {
+		this(testInfoFactory, outputFile, splitAfter, 1, false);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param writerThreads The number of threads that write the split report files concurrently. With a single
+	 *                      thread, the files are written on the calling thread.
+	 * @param compress      Whether the report files are compressed with gzip, in which case they end with
+	 *                      {@code .json.gz}.
+	 */
+	public TestwiseCoverageReportWriter(TestInfoFactory testInfoFactory, File outputFile, int splitAfter,
+										int writerThreads, boolean compress) throws IOException {
+		this(testInfoFactory, outputFile, splitAfter, writerThreads, compress, false, true);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param writerThreads The number of threads that write the split report files concurrently. With a single
+	 *                      thread, the files are written on the calling thread.
+	 * @param compress      Whether the report files are compressed with gzip, in which case they end with
+	 *                      {@code .json.gz}.
+	 * @param partial       The value of the {@link com.teamscale.report.testwise.model.TestwiseCoverageReport#partial}
+	 *                      flag of the report.
+	 * @param prettyPrint   Whether the JSON is pretty printed.
+	 */
+	public TestwiseCoverageReportWriter(TestInfoFactory testInfoFactory, File outputFile, int splitAfter,
+										int writerThreads, boolean compress, boolean partial,
+										boolean prettyPrint) throws IOException {
 		this.testInfoFactory = testInfoFactory;
 		this.outputFile = outputFile;
 		this.splitAfter = splitAfter;
+		this.compress = compress;
+		this.partial = partial;
+		this.prettyPrint = prettyPrint;
+		this.maxPendingFiles = writerThreads;
+		if (writerThreads > 1) {
+			AtomicInteger threadCount = new AtomicInteger();
+			this.workers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+				Thread thread = new Thread(runnable, "Testwise coverage report writer " + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			this.workers = null;
+		}
 
 		startReport();
 	}
@@ -49,51 +136,142 @@ public class TestwiseCoverageReportWriter implements Consumer<TestCoverageBuilde
 	public void accept(TestCoverageBuilder testCoverageBuilder) {
 		TestInfo testInfo = testInfoFactory.createFor(testCoverageBuilder);
 		try {
-			writeTestInfo(testInfo);
+			write(testInfo);
 		} catch (IOException e) {
 			// Need to be wrapped in RuntimeException as Consumer does not allow to throw a checked Exception
 			throw new RuntimeException("Writing test info to report failed.", e);
 		}
 	}
 
+	/**
+	 * Returns the report files in the order in which they have been started. There is always at least one file, which
+	 * contains an empty report if no test has been written. The files are complete once the writer has been closed.
+	 */
+	public List<File> getReportFiles() {
+		return reportFiles;
+	}
+
 	@Override
 	public void close() throws IOException {
-		for (TestInfo testInfo : testInfoFactory.createTestInfosWithoutCoverage()) {
-			writeTestInfo(testInfo);
+		try {
+			for (TestInfo testInfo : testInfoFactory.createTestInfosWithoutCoverage()) {
+				write(testInfo);
+			}
+			endReport();
+			while (!pendingFiles.isEmpty()) {
+				awaitFile(pendingFiles.poll());
+			}
+		} finally {
+			if (workers != null) {
+				workers.shutdownNow();
+			}
 		}
-		endReport();
 	}
 
 	private void startReport() throws IOException {
 		testFileCounter++;
-		OutputStream outputStream = Files.newOutputStream(getOutputFile(testFileCounter).toPath());
-		jsonGenerator = JsonUtils.createFactory().createGenerator(outputStream);
-		jsonGenerator.setPrettyPrinter(new DefaultPrettyPrinter());
-		jsonGenerator.writeStartObject();
-		jsonGenerator.writeFieldName("tests");
-		jsonGenerator.writeStartArray();
+		reportFiles.add(getOutputFile(testFileCounter));
+		if (workers != null) {
+			currentFileTests = new ArrayList<>(Math.min(splitAfter, 1024));
+			return;
+		}
+		jsonGenerator = startReport(getOutputFile(testFileCounter));
+	}
+
+	/** Opens the given report file and writes everything up to the first test. */
+	private JsonGenerator startReport(File file) throws IOException {
+		OutputStream outputStream = Files.newOutputStream(file.toPath());
+		if (compress) {
+			outputStream = new BufferedOutputStream(new GZIPOutputStream(outputStream, COMPRESSION_BUFFER_SIZE));
+		}
+		JsonGenerator generator = JsonUtils.createFactory().createGenerator(outputStream);
+		if (prettyPrint) {
+			generator.setPrettyPrinter(new DefaultPrettyPrinter());
+		}
+		generator.writeStartObject();
+		generator.writeBooleanField("partial", partial);
+		generator.writeFieldName("tests");
+		generator.writeStartArray();
+		return generator;
 	}
 
 	private File getOutputFile(int testFileCounter) {
 		String name = this.outputFile.getName();
 		name = StringUtils.stripSuffix(name, ".json");
 		name = name + "-" + testFileCounter + ".json";
+		if (compress) {
+			name += ".gz";
+		}
 		return new File(this.outputFile.getParent(), name);
 	}
 
-	private void writeTestInfo(TestInfo testInfo) throws IOException {
+	@Override
+	public void write(TestInfo testInfo) throws IOException {
 		if (testsWritten >= splitAfter) {
 			endReport();
 			testsWritten = 0;
 			startReport();
 		}
-		jsonGenerator.writeObject(testInfo);
+		if (workers != null) {
+			currentFileTests.add(testInfo);
+		} else {
+			jsonGenerator.writeObject(testInfo);
+		}
 		testsWritten++;
 	}
 
 	private void endReport() throws IOException {
-		jsonGenerator.writeEndArray();
-		jsonGenerator.writeEndObject();
-		jsonGenerator.close();
+		if (workers != null) {
+			submitFile(getOutputFile(testFileCounter), currentFileTests);
+			currentFileTests = null;
+			return;
+		}
+		endReport(jsonGenerator);
+	}
+
+	/** Writes everything after the last test to the report file and closes it. */
+	private static void endReport(JsonGenerator generator) throws IOException {
+		generator.writeEndArray();
+		generator.writeEndObject();
+		generator.close();
+	}
+
+	/**
+	 * Schedules writing the given tests to the given file on a worker thread. Blocks if too many files are pending and
+	 * rethrows the errors of files that have been written in the meantime.
+	 */
+	private void submitFile(File file, List<TestInfo> tests) throws IOException {
+		pendingFiles.add(workers.submit(() -> {
+			JsonGenerator generator = startReport(file);
+			for (TestInfo testInfo : tests) {
+				generator.writeObject(testInfo);
+			}
+			endReport(generator);
+			return null;
+		}));
+		while (pendingFiles.size() >= maxPendingFiles || (!pendingFiles.isEmpty() && pendingFiles.peek().isDone())) {
+			awaitFile(pendingFiles.poll());
+		}
+	}
+
+	/** Waits until the given file has been written and rethrows the error that occurred while writing it. */
+	private static void awaitFile(Future<?> file) throws IOException {
+		try {
+			file.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing the testwise coverage report");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IOException("Writing the testwise coverage report failed.", e.getCause());
+		}
 	}
 }
@@ -14,6 +14,7 @@ import org.jacoco.core.data.ExecutionDataStore;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -26,34 +27,66 @@ class CachingExecutionDataReader {
 	private final Collection<File> classesDirectories;
 	private final ClasspathWildcardIncludeFilter locationIncludeFilter;
 	private final EDuplicateClassFileBehavior duplicateClassFileBehavior;
+
+	/** File in which the probes cache is persisted between runs. May be null. */
+	private final File probesCacheFile;
+
+	/** The pool in which class files are analyzed or null if they should be analyzed sequentially. */
+	private final ForkJoinPool analysisPool;
+
 	private ProbesCache probesCache;
 
+	/**
+	 * The analyzer that fills the {@link #probesCache}. It is kept between calls of {@link #analyzeClassDirs()}, so
+	 * that only new or modified files are analyzed again.
+	 */
+	private AnalyzerCache analyzer;
+
 	public CachingExecutionDataReader(ILogger logger, Collection<File> classesDirectories,
 									  ClasspathWildcardIncludeFilter locationIncludeFilter,
 									  EDuplicateClassFileBehavior duplicateClassFileBehavior) {
+		this(logger, classesDirectories, locationIncludeFilter, duplicateClassFileBehavior, null, 1);
+	}
+
+	public CachingExecutionDataReader(ILogger logger, Collection<File> classesDirectories,
+									  ClasspathWildcardIncludeFilter locationIncludeFilter,
+									  EDuplicateClassFileBehavior duplicateClassFileBehavior,
+									  File probesCacheFile, int analysisThreads) {
 		this.logger = logger;
 		this.classesDirectories = classesDirectories;
 		this.locationIncludeFilter = locationIncludeFilter;
 		this.duplicateClassFileBehavior = duplicateClassFileBehavior;
+		this.probesCacheFile = probesCacheFile;
+		if (analysisThreads > 1) {
+			this.analysisPool = new ForkJoinPool(analysisThreads);
+		} else {
+			this.analysisPool = null;
+		}
 	}
 
 	/**
-	 * Analyzes the class/jar/war/... files and creates a lookup of which probes belong to which method.
+	 * Analyzes the class/jar/war/... files and creates a lookup of which probes belong to which method. Repeated calls
+	 * only analyze files that have been added or modified since the previous call.
 	 */
 	public void analyzeClassDirs() {
 		if (probesCache == null) {
 			probesCache = new ProbesCache(logger, duplicateClassFileBehavior);
+			loadPersistedProbesCache();
+			analyzer = new AnalyzerCache(probesCache, locationIncludeFilter, analysisPool, logger);
 		}
 		if (classesDirectories.isEmpty()) {
 			logger.warn("No class directories found for caching.");
 			return;
 		}
-		AnalyzerCache analyzer = new AnalyzerCache(probesCache, locationIncludeFilter, logger);
 		int classCount = 0;
 		for (File classDir : classesDirectories) {
 			if (classDir.exists()) {
 				try {
-					classCount += analyzer.analyzeAll(classDir);
+					try {
+						classCount += analyzer.analyzeAll(classDir);
+					} finally {
+						analyzer.awaitPendingAnalyses();
+					}
 				} catch (IOException e) {
 					logger.error("Failed to analyze class files in " + classDir + "! " +
 							"Maybe the folder contains incompatible class files. " +
@@ -69,6 +102,32 @@ class CachingExecutionDataReader {
 			logger.error(
 					"None of the " + classCount + " class files found in the given directories match the configured include/exclude patterns! " + directoryList);
 		}
+		savePersistedProbesCache();
+	}
+
+	/** Loads the persisted probes cache file if one has been configured and already exists. */
+	private void loadPersistedProbesCache() {
+		if (probesCacheFile == null || !probesCacheFile.exists()) {
+			return;
+		}
+		try {
+			probesCache.loadFrom(probesCacheFile);
+		} catch (IOException e) {
+			logger.warn("Failed to read the probes cache file " + probesCacheFile + "! " +
+					"All class files will be analyzed again.", e);
+		}
+	}
+
+	/** Writes the probes cache to the configured file if classes have been analyzed since it was loaded. */
+	private void savePersistedProbesCache() {
+		if (probesCacheFile == null || !probesCache.isModified()) {
+			return;
+		}
+		try {
+			probesCache.saveTo(probesCacheFile);
+		} catch (IOException e) {
+			logger.warn("Failed to write the probes cache file " + probesCacheFile + "!", e);
+		}
 	}
 
 	/**
@@ -103,18 +162,30 @@ class CachingExecutionDataReader {
 
 		@Override
 		public void accept(Dump dump) {
+			TestCoverageBuilder testCoverage = convert(dump);
+			if (testCoverage != null) {
+				nextConsumer.accept(testCoverage);
+			}
+		}
+
+		/**
+		 * Converts the given dump without passing it to the nextConsumer. Returns null if the dump does not belong to
+		 * a test or its coverage could not be generated. This method may be called from multiple threads at the same
+		 * time.
+		 */
+		public TestCoverageBuilder convert(Dump dump) {
 			String testId = dump.info.getId();
 			if (testId.isEmpty()) {
 				// Ignore intermediate coverage that does not belong to any specific test
 				logger.debug("Found a session with empty name! This could indicate that coverage is dumped also for " +
 						"coverage in between tests or that the given test name was empty!");
-				return;
+				return null;
 			}
 			try {
-				TestCoverageBuilder testCoverage = buildCoverage(testId, dump.store, locationIncludeFilter);
-				nextConsumer.accept(testCoverage);
+				return buildCoverage(testId, dump.store, locationIncludeFilter);
 			} catch (CoverageGenerationException e) {
 				logger.error("Failed to generate coverage for test " + testId + "! Skipping to the next test.", e);
+				return null;
 			}
 		}
 
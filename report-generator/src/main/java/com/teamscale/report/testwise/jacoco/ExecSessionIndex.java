@@ -0,0 +1,150 @@
+package com.teamscale.report.testwise.jacoco;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Index of the sessions of a JaCoCo *.exec file, which is stored in a sidecar file next to the exec file. The agent
+ * appends one entry per dump, so that the report generator can read single sessions or split the file between
+ * multiple threads without scanning it first.
+ * <p>
+ * The file starts with a magic number and a format version followed by one entry per dump consisting of the session ID,
+ * the offset of the dump in the exec file and its length in bytes. A truncated last entry, e.g. because the JVM was
+ * killed while writing it, is ignored.
+ */
+public class ExecSessionIndex {
+
+	/** Magic number at the beginning of each session index file ("TSSI"). */
+	private static final int MAGIC_NUMBER = 0x54535349;
+
+	/** Version of the file format. Must be incremented whenever the format changes. */
+	private static final int FORMAT_VERSION = 1;
+
+	/** File extension that is appended to the name of the exec file to get the name of the index file. */
+	private static final String INDEX_FILE_EXTENSION = ".index";
+
+	/** The entries sorted by their offset. */
+	private final List<Entry> entries;
+
+	private ExecSessionIndex(List<Entry> entries) {
+		this.entries = entries;
+	}
+
+	/** Returns the index file that belongs to the given exec file. */
+	public static File getIndexFile(File execFile) {
+		return new File(execFile.getPath() + INDEX_FILE_EXTENSION);
+	}
+
+	/**
+	 * Appends an entry for a dump that has just been appended to the given exec file.
+	 *
+	 * @param execFile  The exec file to which the dump was written.
+	 * @param sessionId The session ID of the dump.
+	 * @param offset    The length of the exec file before the dump was written.
+	 * @param length    The number of bytes the dump added to the exec file.
+	 */
+	public static void append(File execFile, String sessionId, long offset, long length) throws IOException {
+		File indexFile = getIndexFile(execFile);
+		boolean isNewFile = !indexFile.exists() || indexFile.length() == 0;
+		try (DataOutputStream output = new DataOutputStream(new FileOutputStream(indexFile, true))) {
+			if (isNewFile) {
+				output.writeInt(MAGIC_NUMBER);
+				output.writeInt(FORMAT_VERSION);
+			}
+			output.writeUTF(sessionId);
+			output.writeLong(offset);
+			output.writeLong(length);
+		}
+	}
+
+	/** Reads the index of the given exec file. Returns null if the exec file has no index. */
+	public static ExecSessionIndex read(File execFile) throws IOException {
+		File indexFile = getIndexFile(execFile);
+		if (!indexFile.exists()) {
+			return null;
+		}
+		List<Entry> entries = new ArrayList<>();
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			if (input.readInt() != MAGIC_NUMBER || input.readInt() != FORMAT_VERSION) {
+				throw new IOException("File " + indexFile + " is not a session index file of a supported version.");
+			}
+			while (true) {
+				try {
+					entries.add(new Entry(input.readUTF(), input.readLong(), input.readLong()));
+				} catch (EOFException e) {
+					break;
+				}
+			}
+		}
+		entries.sort(Comparator.comparingLong(entry -> entry.offset));
+		return new ExecSessionIndex(entries);
+	}
+
+	/** Returns the indexed sessions sorted by their offset. */
+	public List<Entry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * Returns ranges that cover the whole exec file with the given size. Parts of the file that are not indexed, e.g.
+	 * the dump JaCoCo writes when the JVM shuts down, are returned as ranges without session ID, which may contain
+	 * any number of sessions.
+	 *
+	 * @throws IOException if the index does not fit the file, i.e. its entries overlap or exceed the file.
+	 */
+	/* package */ List<Entry> getRangesCovering(long fileSize) throws IOException {
+		List<Entry> ranges = new ArrayList<>();
+		long position = 0;
+		for (Entry entry : entries) {
+			if (entry.offset < position || entry.length <= 0 || entry.getEndOffset() > fileSize) {
+				throw new IOException("The session index does not match the exec file. Entry for session " +
+						entry.sessionId + " at offset " + entry.offset + " overlaps with another entry or exceeds " +
+						"the file size of " + fileSize + " bytes.");
+			}
+			if (entry.offset > position) {
+				ranges.add(new Entry(null, position, entry.offset - position));
+			}
+			ranges.add(entry);
+			position = entry.getEndOffset();
+		}
+		if (position < fileSize) {
+			ranges.add(new Entry(null, position, fileSize - position));
+		}
+		return ranges;
+	}
+
+	/** The position of a dump in the exec file. */
+	public static class Entry {
+
+		/** The session ID of the dump or null if the range is not indexed and may contain multiple sessions. */
+		public final String sessionId;
+
+		/** The offset of the first byte of the dump in the exec file. */
+		public final long offset;
+
+		/** The length of the dump in bytes. */
+		public final long length;
+
+		/** Constructor. */
+		public Entry(String sessionId, long offset, long length) {
+			this.sessionId = sessionId;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		/** Returns the offset of the first byte after the dump. */
+		public long getEndOffset() {
+			return offset + length;
+		}
+	}
+}
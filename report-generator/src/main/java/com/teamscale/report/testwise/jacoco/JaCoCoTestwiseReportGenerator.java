@@ -7,22 +7,20 @@ import com.teamscale.report.testwise.model.TestwiseCoverage;
 import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
 import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
 import com.teamscale.report.util.ILogger;
-import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataReader;
-import org.jacoco.core.data.ExecutionDataStore;
-import org.jacoco.core.data.IExecutionDataVisitor;
-import org.jacoco.core.data.ISessionInfoVisitor;
-import org.jacoco.core.data.SessionInfo;
 
-import java.io.BufferedInputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 /**
  * Creates an XML report for an execution data store. The report is grouped by session.
@@ -37,6 +35,12 @@ public class JaCoCoTestwiseReportGenerator {
 	/** The filter for the analyzed class files. */
 	private final ClasspathWildcardIncludeFilter locationIncludeFilter;
 
+	/** The logger. */
+	private final ILogger logger;
+
+	/** Whether the *.exec files are memory-mapped while converting them. */
+	private boolean memoryMapExecutionDataFiles = true;
+
 	/**
 	 * Create a new generator with a collection of class directories.
 	 *
@@ -48,25 +52,70 @@ public class JaCoCoTestwiseReportGenerator {
 										 ClasspathWildcardIncludeFilter locationIncludeFilter,
 										 EDuplicateClassFileBehavior duplicateClassFileBehavior,
 										 ILogger logger) {
+		this(codeDirectoriesOrArchives, locationIncludeFilter, duplicateClassFileBehavior, null, logger);
+	}
+
+	/**
+	 * Create a new generator with a collection of class directories that persists the analysis results of the class
+	 * files in the given probes cache file. Classes that are already contained in the probes cache file are not
+	 * analyzed again.
+	 *
+	 * @param codeDirectoriesOrArchives Root directory that contains the projects class files.
+	 * @param locationIncludeFilter     Filter for class files
+	 * @param probesCacheFile           File in which the probe lookups are persisted or null to disable persistence
+	 * @param logger                    The logger
+	 */
+	public JaCoCoTestwiseReportGenerator(Collection<File> codeDirectoriesOrArchives,
+										 ClasspathWildcardIncludeFilter locationIncludeFilter,
+										 EDuplicateClassFileBehavior duplicateClassFileBehavior,
+										 File probesCacheFile, ILogger logger) {
+		this(codeDirectoriesOrArchives, locationIncludeFilter, duplicateClassFileBehavior, probesCacheFile, 1, logger);
+	}
+
+	/**
+	 * Create a new generator with a collection of class directories that analyzes the class files with the given
+	 * number of threads.
+	 *
+	 * @param codeDirectoriesOrArchives Root directory that contains the projects class files.
+	 * @param locationIncludeFilter     Filter for class files
+	 * @param probesCacheFile           File in which the probe lookups are persisted or null to disable persistence
+	 * @param analysisThreads           Number of threads used to analyze class files. 1 analyzes all class files on
+	 *                                  the calling thread.
+	 * @param logger                    The logger
+	 */
+	public JaCoCoTestwiseReportGenerator(Collection<File> codeDirectoriesOrArchives,
+										 ClasspathWildcardIncludeFilter locationIncludeFilter,
+										 EDuplicateClassFileBehavior duplicateClassFileBehavior,
+										 File probesCacheFile, int analysisThreads, ILogger logger) {
 		this.locationIncludeFilter = locationIncludeFilter;
+		this.logger = logger;
 		this.executionDataReader = new CachingExecutionDataReader(logger, codeDirectoriesOrArchives,
-				locationIncludeFilter, duplicateClassFileBehavior);
+				locationIncludeFilter, duplicateClassFileBehavior, probesCacheFile, analysisThreads);
 		updateClassDirCache();
 	}
 
 	/**
-	 * Updates the probe cache of the {@link ExecutionDataReader}.
+	 * Updates the probe cache of the {@link ExecutionDataReader}. Only class files that have been added or modified
+	 * since the last update are analyzed.
 	 */
 	public void updateClassDirCache() {
 		executionDataReader.analyzeClassDirs();
 	}
 
+	/**
+	 * Sets whether the *.exec files are memory-mapped while converting them, which is the default. A mapped file can
+	 * only be deleted on Windows once the mapping has been garbage-collected, so callers that delete the files right
+	 * after converting them should disable this. The files are then read into a heap buffer and released as soon as
+	 * the conversion has finished.
+	 */
+	public void setMemoryMapExecutionDataFiles(boolean memoryMapExecutionDataFiles) {
+		this.memoryMapExecutionDataFiles = memoryMapExecutionDataFiles;
+	}
+
 	/** Converts the given dumps to a report. */
 	public TestwiseCoverage convert(File executionDataFile) throws IOException, CoverageGenerationException {
 		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
-		CachingExecutionDataReader.DumpConsumer dumpConsumer = executionDataReader
-				.buildCoverageConsumer(locationIncludeFilter, testwiseCoverage::add);
-		readAndConsumeDumps(executionDataFile, dumpConsumer);
+		convertAndConsume(executionDataFile, testwiseCoverage::add);
 		return testwiseCoverage;
 	}
 
@@ -86,57 +135,185 @@ public class JaCoCoTestwiseReportGenerator {
 	/** Converts the given dumps to a report. */
 	public void convertAndConsume(File executionDataFile,
 								  Consumer<TestCoverageBuilder> consumer) throws IOException {
+		convertAndConsume(executionDataFile, sessionId -> true, consumer, 1, true);
+	}
+
+	/**
+	 * Converts the given dumps to a report with the given number of threads. The file is read on the calling thread,
+	 * which also passes the converted tests to the consumer, so the consumer does not need to be thread-safe.
+	 *
+	 * @param conversionThreads    Number of threads that convert the dumps. 1 converts all dumps on the calling
+	 *                             thread.
+	 * @param preserveSessionOrder Whether the tests are passed to the consumer in the order of their sessions in the
+	 *                             file. Otherwise, each test is passed on as soon as it has been converted.
+	 */
+	public void convertAndConsume(File executionDataFile, Consumer<TestCoverageBuilder> consumer,
+								  int conversionThreads, boolean preserveSessionOrder) throws IOException {
+		convertAndConsume(executionDataFile, sessionId -> true, consumer, conversionThreads, preserveSessionOrder);
+	}
+
+	/**
+	 * Converts the dumps whose session ID matches the given filter to a report with the given number of threads.
+	 * Sessions with an empty ID, which contain the coverage in between tests, are always skipped. The execution data
+	 * of skipped sessions is not decoded.
+	 * <p>
+	 * If the agent wrote an {@link ExecSessionIndex} next to the file, sessions that do not match the filter are not
+	 * read at all and the worker threads read the indexed sessions themselves instead of waiting for the calling
+	 * thread to read them.
+	 *
+	 * @see #convertAndConsume(File, Consumer, int, boolean)
+	 */
+	public void convertAndConsume(File executionDataFile, Predicate<String> sessionIdFilter,
+								  Consumer<TestCoverageBuilder> consumer, int conversionThreads,
+								  boolean preserveSessionOrder) throws IOException {
 		CachingExecutionDataReader.DumpConsumer dumpConsumer = executionDataReader
 				.buildCoverageConsumer(locationIncludeFilter, consumer);
-		readAndConsumeDumps(executionDataFile, dumpConsumer);
-	}
-
-	/** Reads the dumps from the given *.exec file. */
-	private void readAndConsumeDumps(File executionDataFile, Consumer<Dump> dumpConsumer) throws IOException {
-		try (InputStream input = new BufferedInputStream(new FileInputStream(executionDataFile))) {
-			ExecutionDataReader executionDataReader = new ExecutionDataReader(input);
-			DumpCallback dumpCallback = new DumpCallback(dumpConsumer);
-			executionDataReader.setExecutionDataVisitor(dumpCallback);
-			executionDataReader.setSessionInfoVisitor(dumpCallback);
-			executionDataReader.read();
-			// Ensure that the last read dump is also consumed
-			dumpCallback.processDump();
+		Predicate<String> testSessionFilter = excludingEmptySessionIds(sessionIdFilter);
+		if (conversionThreads <= 1) {
+			readAndConsumeDumps(executionDataFile, testSessionFilter, dumpConsumer);
+			return;
+		}
+
+		ProbeArrayPool probeArrayPool = new ProbeArrayPool();
+		try (MappedExecutionDataReader reader = new MappedExecutionDataReader(executionDataFile, probeArrayPool,
+				memoryMapExecutionDataFiles);
+			 WorkerReaders workerReaders = new WorkerReaders(executionDataFile, probeArrayPool,
+					 memoryMapExecutionDataFiles, conversionThreads);
+			 ParallelDumpConverter converter = new ParallelDumpConverter(
+					 dump -> convertAndRelease(dumpConsumer, testSessionFilter, probeArrayPool, dump), consumer,
+					 conversionThreads, preserveSessionOrder)) {
+			reader.setSessionIdFilter(testSessionFilter);
+			List<ExecSessionIndex.Entry> ranges = readSessionRanges(executionDataFile, reader.getFileSize());
+			if (ranges == null) {
+				reader.read(converter);
+			} else {
+				for (ExecSessionIndex.Entry range : ranges) {
+					if (range.sessionId == null) {
+						reader.readRange(range.offset, range.getEndOffset(), converter);
+					} else if (testSessionFilter.test(range.sessionId)) {
+						converter.acceptLazily(() -> workerReaders.readSession(range));
+					}
+				}
+			}
+			converter.finish();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
 		}
 	}
 
-	/** Collects execution information per session and passes it to the consumer . */
-	private static class DumpCallback implements IExecutionDataVisitor, ISessionInfoVisitor {
+	/**
+	 * Returns a session ID filter that accepts the IDs that completely match the given regular expression or all IDs
+	 * if the pattern is null or empty.
+	 */
+	public static Predicate<String> matchingSessionIds(String sessionIdPattern) {
+		if (sessionIdPattern == null || sessionIdPattern.isEmpty()) {
+			return sessionId -> true;
+		}
+		Pattern pattern = Pattern.compile(sessionIdPattern);
+		return sessionId -> pattern.matcher(sessionId).matches();
+	}
 
-		/** The dump that is currently being read. */
-		private Dump currentDump = null;
+	/** Returns a filter that accepts the session IDs accepted by the given filter except for the empty ID. */
+	private static Predicate<String> excludingEmptySessionIds(Predicate<String> sessionIdFilter) {
+		return sessionId -> !sessionId.isEmpty() && sessionIdFilter.test(sessionId);
+	}
 
-		/** The store to which coverage is currently written to. */
-		private ExecutionDataStore store;
+	/**
+	 * Converts the given dump if its session ID matches the filter and returns its probe arrays to the pool
+	 * afterwards. The filter is checked again, since the session IDs of an index could differ from the ones in the
+	 * file.
+	 */
+	private static TestCoverageBuilder convertAndRelease(CachingExecutionDataReader.DumpConsumer dumpConsumer,
+														 Predicate<String> sessionIdFilter,
+														 ProbeArrayPool probeArrayPool, Dump dump) {
+		try {
+			if (!sessionIdFilter.test(dump.info.getId())) {
+				return null;
+			}
+			return dumpConsumer.convert(dump);
+		} finally {
+			probeArrayPool.release(dump);
+		}
+	}
 
-		/** The consumer to pass {@link Dump}s to. */
-		private final Consumer<Dump> dumpConsumer;
+	/** Reads the dumps whose session ID matches the given filter from the given *.exec file. */
+	private void readAndConsumeDumps(File executionDataFile, Predicate<String> sessionIdFilter,
+									 Consumer<Dump> dumpConsumer) throws IOException {
+		try (MappedExecutionDataReader reader = new MappedExecutionDataReader(executionDataFile,
+				new ProbeArrayPool(), memoryMapExecutionDataFiles)) {
+			reader.setSessionIdFilter(sessionIdFilter);
+			Consumer<Dump> releasingConsumer = reader.releasingAfter(dumpConsumer);
+			List<ExecSessionIndex.Entry> ranges = readSessionRanges(executionDataFile, reader.getFileSize());
+			if (ranges == null) {
+				reader.read(releasingConsumer);
+				return;
+			}
+			for (ExecSessionIndex.Entry range : ranges) {
+				if (range.sessionId == null || sessionIdFilter.test(range.sessionId)) {
+					reader.readRange(range.offset, range.getEndOffset(), releasingConsumer);
+				}
+			}
+		}
+	}
 
-		private DumpCallback(Consumer<Dump> dumpConsumer) {
-			this.dumpConsumer = dumpConsumer;
+	/**
+	 * Returns the ranges of the {@link ExecSessionIndex} of the given file or null if the file has no index or the
+	 * index does not match the file.
+	 */
+	private List<ExecSessionIndex.Entry> readSessionRanges(File executionDataFile, long fileSize) {
+		try {
+			ExecSessionIndex index = ExecSessionIndex.read(executionDataFile);
+			if (index == null) {
+				return null;
+			}
+			return index.getRangesCovering(fileSize);
+		} catch (IOException e) {
+			logger.warn("Failed to read the session index of " + executionDataFile + ". The file is read " +
+					"completely instead.", e);
+			return null;
 		}
+	}
 
-		@Override
-		public void visitSessionInfo(SessionInfo info) {
-			processDump();
-			store = new ExecutionDataStore();
-			currentDump = new Dump(info, store);
+	/** Readers that allow the worker threads to read indexed sessions in parallel. */
+	private static class WorkerReaders implements Closeable {
+
+		/** All readers. */
+		private final List<MappedExecutionDataReader> readers = new ArrayList<>();
+
+		/** The readers that are currently not used by any thread. */
+		private final BlockingQueue<MappedExecutionDataReader> idleReaders;
+
+		private WorkerReaders(File executionDataFile, ProbeArrayPool probeArrayPool, boolean memoryMapped,
+							  int threads) throws IOException {
+			this.idleReaders = new ArrayBlockingQueue<>(threads);
+			try {
+				for (int i = 0; i < threads; i++) {
+					MappedExecutionDataReader reader = new MappedExecutionDataReader(executionDataFile,
+							probeArrayPool, memoryMapped);
+					readers.add(reader);
+					idleReaders.add(reader);
+				}
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
 		}
 
-		@Override
-		public void visitClassExecution(ExecutionData data) {
-			store.put(data);
+		/** Reads the session of the given index entry with one of the idle readers. */
+		private Dump readSession(ExecSessionIndex.Entry entry) throws IOException, InterruptedException {
+			MappedExecutionDataReader reader = idleReaders.take();
+			try {
+				return reader.readSession(entry.offset, entry.getEndOffset());
+			} finally {
+				idleReaders.add(reader);
+			}
 		}
 
-		private void processDump() {
-			if (currentDump != null) {
-				dumpConsumer.accept(currentDump);
-				currentDump = null;
+		@Override
+		public void close() throws IOException {
+			for (MappedExecutionDataReader reader : readers) {
+				reader.close();
 			}
 		}
 	}
-}
\ No newline at end of file
+}
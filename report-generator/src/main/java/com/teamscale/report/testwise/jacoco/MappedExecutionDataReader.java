@@ -0,0 +1,439 @@
+package com.teamscale.report.testwise.jacoco;
+
+import com.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IncompatibleExecDataVersionException;
+import org.jacoco.core.data.SessionInfo;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Reads the sessions of a JaCoCo *.exec file from a memory-mapped buffer. In contrast to JaCoCo's
+ * {@link org.jacoco.core.data.ExecutionDataReader} it
+ * <ul>
+ *     <li>decodes the blocks directly from the mapped file without copying them through a stream,</li>
+ *     <li>reuses the probe arrays of dumps that have been passed to {@link #release(Dump)},</li>
+ *     <li>decodes the name of each class only once,</li>
+ *     <li>skips the execution data of sessions that do not match the {@link #setSessionIdFilter(Predicate) session
+ *     filter} without decoding it and</li>
+ *     <li>can start reading at any session boundary as returned by {@link #indexSessions()}.</li>
+ * </ul>
+ * Files larger than 2 GB are mapped in windows, which are moved along while reading.
+ * <p>
+ * A mapped file is only unmapped once the mapping has been garbage-collected, and until then it cannot be deleted on
+ * Windows. Readers of files that are deleted right after reading them should therefore not map the file, but read the
+ * windows into a reused heap buffer instead.
+ * <p>
+ * {@link #release(Dump)} may be called from any thread. All other methods must be called from a single thread.
+ */
+/* package */ class MappedExecutionDataReader implements Closeable {
+
+	/** The default size of the mapped window. */
+	private static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+	/** The default size of the window if the file is not mapped but read into a heap buffer. */
+	private static final int DEFAULT_READ_WINDOW_SIZE = 1 << 20;
+
+	/** The channel of the read file. */
+	private final FileChannel channel;
+
+	/** The size of the read file. */
+	private final long fileSize;
+
+	/** The minimum size of a mapped window. */
+	private final int windowSize;
+
+	/** Whether the windows are memory-mapped or read into {@link #readBuffer}. */
+	private final boolean memoryMapped;
+
+	/** The currently mapped window of the file. */
+	private ByteBuffer buffer;
+
+	/** The heap buffer into which the windows are read if the file is not memory-mapped. */
+	private ByteBuffer readBuffer;
+
+	/** The position of the first byte of {@link #buffer} in the file. */
+	private long windowStart;
+
+	/** The names of all classes read so far by class ID. */
+	private final Map<Long, String> classNames = new HashMap<>();
+
+	/** Filter for the IDs of the sessions that are passed to the consumers. */
+	private Predicate<String> sessionIdFilter = sessionId -> true;
+
+	/** The pool from which the probe arrays of the read dumps are taken. */
+	private final ProbeArrayPool probeArrayPool;
+
+	/** Opens the given file. */
+	/* package */ MappedExecutionDataReader(File file) throws IOException {
+		this(file, new ProbeArrayPool());
+	}
+
+	/** Opens the given file and takes the probe arrays from the given pool, which may be shared with other readers. */
+	/* package */ MappedExecutionDataReader(File file, ProbeArrayPool probeArrayPool) throws IOException {
+		this(file, probeArrayPool, true);
+	}
+
+	/**
+	 * Opens the given file and takes the probe arrays from the given pool. If the file is not memory-mapped, it is
+	 * released as soon as the reader is closed.
+	 */
+	/* package */ MappedExecutionDataReader(File file, ProbeArrayPool probeArrayPool,
+										   boolean memoryMapped) throws IOException {
+		this(file, probeArrayPool, memoryMapped, memoryMapped ? DEFAULT_WINDOW_SIZE : DEFAULT_READ_WINDOW_SIZE);
+	}
+
+	/** Opens the given file and maps or reads windows of at least the given size. Visible for testing. */
+	/* package */ MappedExecutionDataReader(File file, ProbeArrayPool probeArrayPool, boolean memoryMapped,
+										   int windowSize) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.fileSize = channel.size();
+		this.probeArrayPool = probeArrayPool;
+		this.memoryMapped = memoryMapped;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Sets the filter for the sessions passed to the consumers. The execution data of sessions whose ID does not match
+	 * is skipped without decoding it.
+	 */
+	public void setSessionIdFilter(Predicate<String> sessionIdFilter) {
+		this.sessionIdFilter = sessionIdFilter;
+	}
+
+	/** Returns the size of the read file. */
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	/** Reads all sessions of the file and passes them to the given consumer. */
+	public void read(Consumer<Dump> consumer) throws IOException {
+		readFrom(0, consumer);
+	}
+
+	/**
+	 * Reads all sessions starting at the given offset, which must be 0 or one of the offsets returned by
+	 * {@link #indexSessions()}, and passes them to the given consumer.
+	 */
+	public void readFrom(long offset, Consumer<Dump> consumer) throws IOException {
+		readRange(offset, fileSize, consumer);
+	}
+
+	/**
+	 * Reads all sessions between the given offsets and passes them to the given consumer. The start offset must be 0 or
+	 * the start of a session or header block and the end offset the end of a session.
+	 */
+	public void readRange(long offset, long endOffset, Consumer<Dump> consumer) throws IOException {
+		seek(offset);
+		if (offset == 0 && endOffset > 0) {
+			ensureAvailable(1);
+			if (buffer.get(buffer.position()) != ExecutionDataWriter.BLOCK_HEADER) {
+				throw new IOException("Invalid execution data file.");
+			}
+		}
+
+		// Null if no session has been read yet or the current session is skipped
+		Dump currentDump = null;
+		boolean hasReadSessionInfo = false;
+		while (getPosition() < endOffset) {
+			ensureAvailable(1);
+			byte blockType = buffer.get();
+			switch (blockType) {
+				case ExecutionDataWriter.BLOCK_HEADER:
+					readHeader();
+					break;
+				case ExecutionDataWriter.BLOCK_SESSIONINFO:
+					if (currentDump != null) {
+						consumer.accept(currentDump);
+					}
+					SessionInfo sessionInfo = readSessionInfo();
+					hasReadSessionInfo = true;
+					if (sessionIdFilter.test(sessionInfo.getId())) {
+						currentDump = new Dump(sessionInfo, new ExecutionDataStore());
+					} else {
+						currentDump = null;
+					}
+					break;
+				case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
+					if (!hasReadSessionInfo) {
+						throw new IOException("Found execution data before the first session info at offset " +
+								(getPosition() - 1) + ".");
+					}
+					if (currentDump == null) {
+						skipExecutionData();
+					} else {
+						putExecutionData(currentDump.store, readExecutionData());
+					}
+					break;
+				default:
+					throw new IOException(String.format("Unknown block type %x.", blockType));
+			}
+		}
+		if (getPosition() != endOffset) {
+			throw new IOException("The range to read ends at offset " + endOffset +
+					", which is not the end of a session.");
+		}
+		if (currentDump != null) {
+			consumer.accept(currentDump);
+		}
+	}
+
+	/**
+	 * Reads the single session between the given offsets, e.g. an entry of an {@link ExecSessionIndex}.
+	 *
+	 * @throws IOException if the range does not contain exactly one session.
+	 */
+	public Dump readSession(long offset, long endOffset) throws IOException {
+		List<Dump> dumps = new ArrayList<>(1);
+		readRange(offset, endOffset, dumps::add);
+		if (dumps.size() != 1) {
+			throw new IOException("Expected a single session between offsets " + offset + " and " + endOffset +
+					" but found " + dumps.size() + ".");
+		}
+		return dumps.get(0);
+	}
+
+	/**
+	 * Returns the offsets of all session info blocks in the file. Only the lengths of the execution data blocks are
+	 * decoded, so this is considerably faster than reading the sessions.
+	 */
+	public List<Long> indexSessions() throws IOException {
+		List<Long> sessionOffsets = new ArrayList<>();
+		seek(0);
+		while (getPosition() < fileSize) {
+			long blockOffset = getPosition();
+			ensureAvailable(1);
+			byte blockType = buffer.get();
+			switch (blockType) {
+				case ExecutionDataWriter.BLOCK_HEADER:
+					readHeader();
+					break;
+				case ExecutionDataWriter.BLOCK_SESSIONINFO:
+					sessionOffsets.add(blockOffset);
+					skipUtf();
+					skip(2 * Long.BYTES);
+					break;
+				case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
+					skipExecutionData();
+					break;
+				default:
+					throw new IOException(String.format("Unknown block type %x.", blockType));
+			}
+		}
+		return sessionOffsets;
+	}
+
+	/**
+	 * Returns the probe arrays of the given dump to the pool, so they can be reused for the dumps that are read next.
+	 * The dump must not be used afterwards.
+	 */
+	public void release(Dump dump) {
+		probeArrayPool.release(dump);
+	}
+
+	/**
+	 * Wraps the given consumer so that the probe arrays of each dump are released as soon as the consumer has
+	 * processed it. The consumer must not keep references to the dumps.
+	 */
+	public Consumer<Dump> releasingAfter(Consumer<Dump> consumer) {
+		return dump -> {
+			consumer.accept(dump);
+			release(dump);
+		};
+	}
+
+	/** Adds the execution data to the store and releases its probe array if it was merged into an existing entry. */
+	private void putExecutionData(ExecutionDataStore store, ExecutionData executionData) {
+		ExecutionData existingExecutionData = store.get(executionData.getId());
+		store.put(executionData);
+		if (existingExecutionData != null) {
+			probeArrayPool.release(executionData.getProbes());
+		}
+	}
+
+	private void readHeader() throws IOException {
+		ensureAvailable(2 * Character.BYTES);
+		if (buffer.getChar() != ExecutionDataWriter.MAGIC_NUMBER) {
+			throw new IOException("Invalid execution data file.");
+		}
+		char version = buffer.getChar();
+		if (version != ExecutionDataWriter.FORMAT_VERSION) {
+			throw new IncompatibleExecDataVersionException(version);
+		}
+	}
+
+	private SessionInfo readSessionInfo() throws IOException {
+		String id = readUtf();
+		ensureAvailable(2 * Long.BYTES);
+		long start = buffer.getLong();
+		long dump = buffer.getLong();
+		return new SessionInfo(id, start, dump);
+	}
+
+	private ExecutionData readExecutionData() throws IOException {
+		ensureAvailable(Long.BYTES);
+		long id = buffer.getLong();
+		String name = classNames.get(id);
+		if (name == null) {
+			name = readUtf();
+			classNames.put(id, name);
+		} else {
+			skipUtf();
+		}
+		return new ExecutionData(id, name, readProbes());
+	}
+
+	/** Skips an execution data block without decoding the class name or the probes. */
+	private void skipExecutionData() throws IOException {
+		skip(Long.BYTES);
+		skipUtf();
+		skip((readVarInt() + 7) / 8);
+	}
+
+	/** Reads a boolean array in the format of {@link org.jacoco.core.internal.data.CompactDataOutput}. */
+	private boolean[] readProbes() throws IOException {
+		int length = readVarInt();
+		boolean[] probes = probeArrayPool.acquire(length);
+		ensureAvailable((length + 7) / 8);
+		int bits = 0;
+		for (int i = 0; i < length; i++) {
+			if ((i & 7) == 0) {
+				bits = buffer.get();
+			}
+			probes[i] = (bits & 1) != 0;
+			bits >>>= 1;
+		}
+		return probes;
+	}
+
+	/** Reads a variable length integer in the format of {@link org.jacoco.core.internal.data.CompactDataOutput}. */
+	private int readVarInt() throws IOException {
+		int value = 0;
+		int shift = 0;
+		while (true) {
+			ensureAvailable(1);
+			int b = buffer.get() & 0xFF;
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+			shift += 7;
+		}
+	}
+
+	/** Reads a string in the modified UTF-8 format of {@link java.io.DataInput#readUTF()}. */
+	private String readUtf() throws IOException {
+		ensureAvailable(Short.BYTES);
+		int length = buffer.getChar();
+		ensureAvailable(length);
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		for (byte b : bytes) {
+			if (b <= 0) {
+				return decodeModifiedUtf(bytes);
+			}
+		}
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	/** Decodes strings with non-ASCII characters, which only occur in very few class names or test IDs. */
+	private static String decodeModifiedUtf(byte[] bytes) throws IOException {
+		byte[] bytesWithLength = new byte[bytes.length + Short.BYTES];
+		bytesWithLength[0] = (byte) (bytes.length >>> 8);
+		bytesWithLength[1] = (byte) bytes.length;
+		System.arraycopy(bytes, 0, bytesWithLength, Short.BYTES, bytes.length);
+		return new DataInputStream(new ByteArrayInputStream(bytesWithLength)).readUTF();
+	}
+
+	private void skipUtf() throws IOException {
+		ensureAvailable(Short.BYTES);
+		skip(buffer.getChar());
+	}
+
+	private void skip(int byteCount) throws IOException {
+		ensureAvailable(byteCount);
+		buffer.position(buffer.position() + byteCount);
+	}
+
+	/** Returns the current position in the file. */
+	private long getPosition() {
+		if (buffer == null) {
+			return 0;
+		}
+		return windowStart + buffer.position();
+	}
+
+	/** Continues reading at the given position in the file. */
+	private void seek(long position) throws IOException {
+		if (buffer != null && position >= windowStart && position <= windowStart + buffer.limit()) {
+			buffer.position((int) (position - windowStart));
+			return;
+		}
+		map(position, 0);
+	}
+
+	/**
+	 * Ensures that the given number of bytes can be read from {@link #buffer} by mapping a new window at the current
+	 * position if necessary.
+	 */
+	private void ensureAvailable(int byteCount) throws IOException {
+		if (buffer.remaining() >= byteCount) {
+			return;
+		}
+		long position = getPosition();
+		if (fileSize - position < byteCount) {
+			throw new EOFException("Unexpected end of execution data file at offset " + position + ".");
+		}
+		map(position, byteCount);
+	}
+
+	/** Maps a window that starts at the given position and contains at least the given number of bytes. */
+	private void map(long position, int minimumSize) throws IOException {
+		long size = Math.min(Math.max(windowSize, minimumSize), fileSize - position);
+		if (memoryMapped) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+		} else {
+			buffer = read(position, (int) size);
+		}
+		windowStart = position;
+	}
+
+	/** Reads the given number of bytes starting at the given position into {@link #readBuffer} and returns it. */
+	private ByteBuffer read(long position, int size) throws IOException {
+		if (readBuffer == null || readBuffer.capacity() < size) {
+			readBuffer = ByteBuffer.allocate(size);
+		}
+		readBuffer.clear();
+		readBuffer.limit(size);
+		while (readBuffer.hasRemaining()) {
+			if (channel.read(readBuffer, position + readBuffer.position()) < 0) {
+				throw new EOFException("Unexpected end of execution data file at offset " +
+						(position + readBuffer.position()) + ".");
+			}
+		}
+		readBuffer.flip();
+		return readBuffer;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
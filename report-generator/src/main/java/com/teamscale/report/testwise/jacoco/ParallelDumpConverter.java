@@ -0,0 +1,196 @@
+package com.teamscale.report.testwise.jacoco;
+
+import com.teamscale.report.jacoco.dump.Dump;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Converts {@link Dump}s to {@link TestCoverageBuilder}s on a pool of worker threads while the calling thread keeps
+ * reading the execution data file.
+ * <p>
+ * The converted tests are passed to the sink on the calling thread, so the sink does not need to be thread-safe. At
+ * most {@link #maxPendingDumps} dumps are converted or waiting for conversion at the same time. Once this limit is
+ * reached, {@link #accept(Dump)} blocks until a conversion has finished, which keeps the memory bounded even if the
+ * file is read faster than the dumps can be converted.
+ */
+/* package */ class ParallelDumpConverter implements Consumer<Dump>, AutoCloseable {
+
+	/** Number of dumps per worker thread that may be pending at the same time. */
+	private static final int PENDING_DUMPS_PER_THREAD = 2;
+
+	/** Converts a dump to a test coverage or returns null if the dump should be skipped. */
+	private final Function<Dump, TestCoverageBuilder> converter;
+
+	/** Receives the converted tests. */
+	private final Consumer<TestCoverageBuilder> sink;
+
+	/** Whether the tests are passed to the sink in the order in which their dumps were read. */
+	private final boolean preserveOrder;
+
+	/** The maximum number of pending conversions. */
+	private final int maxPendingDumps;
+
+	/** The worker threads. */
+	private final ExecutorService workers;
+
+	/** Collects the conversions in the order in which they finish. Only used if the order is not preserved. */
+	private final CompletionService<TestCoverageBuilder> completionService;
+
+	/** The pending conversions in the order in which they were submitted. Only used if the order is preserved. */
+	private final Deque<Future<TestCoverageBuilder>> submittedConversions = new ArrayDeque<>();
+
+	/** The number of conversions that have not been passed to the sink yet. */
+	private int pendingConversions = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param converter     Converts a single dump. Must be thread-safe.
+	 * @param sink          Receives the converted tests on the thread that calls {@link #accept(Dump)} and
+	 *                      {@link #finish()}.
+	 * @param threads       The number of worker threads.
+	 * @param preserveOrder Whether the tests are passed to the sink in the order of their dumps. Otherwise, they are
+	 *                      passed on as soon as they are converted.
+	 */
+	/* package */ ParallelDumpConverter(Function<Dump, TestCoverageBuilder> converter,
+										Consumer<TestCoverageBuilder> sink, int threads, boolean preserveOrder) {
+		this.converter = converter;
+		this.sink = sink;
+		this.preserveOrder = preserveOrder;
+		this.maxPendingDumps = threads * PENDING_DUMPS_PER_THREAD;
+		AtomicInteger threadCount = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "Testwise coverage conversion " + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.completionService = new ExecutorCompletionService<>(workers);
+	}
+
+	/**
+	 * Schedules the conversion of the given dump and passes all tests whose conversion has finished in the meantime to
+	 * the sink. Blocks if too many dumps are pending.
+	 */
+	@Override
+	public void accept(Dump dump) {
+		submit(() -> converter.apply(dump));
+	}
+
+	/**
+	 * Schedules reading a dump with the given reader and converting it on a worker thread. This allows to read dumps
+	 * in parallel if their position in the file is known upfront. Blocks if too many dumps are pending.
+	 */
+	public void acceptLazily(Callable<Dump> dumpReader) {
+		submit(() -> converter.apply(dumpReader.call()));
+	}
+
+	/**
+	 * Schedules the given conversion and passes all tests whose conversion has finished in the meantime to the sink.
+	 */
+	private void submit(Callable<TestCoverageBuilder> conversion) {
+		if (preserveOrder) {
+			submittedConversions.add(workers.submit(conversion));
+		} else {
+			completionService.submit(conversion);
+		}
+		pendingConversions++;
+
+		while (pendingConversions >= maxPendingDumps) {
+			passToSink(nextCompletedConversion(true));
+		}
+		Future<TestCoverageBuilder> completedConversion = nextCompletedConversion(false);
+		while (completedConversion != null) {
+			passToSink(completedConversion);
+			completedConversion = nextCompletedConversion(false);
+		}
+	}
+
+	/** Waits until all pending dumps have been converted and passed to the sink. */
+	public void finish() {
+		while (pendingConversions > 0) {
+			passToSink(nextCompletedConversion(true));
+		}
+	}
+
+	/**
+	 * Returns the next conversion that can be passed to the sink. If wait is false, null is returned if no such
+	 * conversion has finished yet.
+	 */
+	private Future<TestCoverageBuilder> nextCompletedConversion(boolean wait) {
+		if (pendingConversions == 0) {
+			return null;
+		}
+		Future<TestCoverageBuilder> conversion;
+		if (preserveOrder) {
+			conversion = submittedConversions.peek();
+			if (!wait && !conversion.isDone()) {
+				return null;
+			}
+			submittedConversions.poll();
+		} else if (wait) {
+			try {
+				conversion = completionService.take();
+			} catch (InterruptedException e) {
+				throw interrupted();
+			}
+		} else {
+			conversion = completionService.poll();
+			if (conversion == null) {
+				return null;
+			}
+		}
+		pendingConversions--;
+		return conversion;
+	}
+
+	/** Passes the result of the given finished conversion to the sink. */
+	private void passToSink(Future<TestCoverageBuilder> conversion) {
+		TestCoverageBuilder testCoverage;
+		try {
+			testCoverage = conversion.get();
+		} catch (InterruptedException e) {
+			throw interrupted();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			if (e.getCause() instanceof IOException) {
+				throw new UncheckedIOException((IOException) e.getCause());
+			}
+			throw new IllegalStateException("Failed to convert a dump", e.getCause());
+		}
+		if (testCoverage != null) {
+			sink.accept(testCoverage);
+		}
+	}
+
+	/** Restores the interrupted flag of the current thread and returns an exception to abort the conversion. */
+	private static UncheckedIOException interrupted() {
+		Thread.currentThread().interrupt();
+		return new UncheckedIOException(new InterruptedIOException("Interrupted while converting the dumps"));
+	}
+
+	/** Stops the worker threads. Pending conversions are cancelled. */
+	@Override
+	public void close() {
+		workers.shutdownNow();
+	}
+}
@@ -0,0 +1,41 @@
+package com.teamscale.report.testwise.jacoco;
+
+import com.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.core.data.ExecutionData;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pool of probe arrays of already converted dumps, which allows the {@link MappedExecutionDataReader} to reuse them
+ * for the next dumps instead of allocating new arrays for every class in every session. The pool may be shared by
+ * multiple readers and is thread-safe.
+ */
+/* package */ class ProbeArrayPool {
+
+	/** Released probe arrays by their length. */
+	private final Map<Integer, Deque<boolean[]>> probeArrays = new HashMap<>();
+
+	/** Returns a released probe array of the given length or a new one if there is none. */
+	public synchronized boolean[] acquire(int length) {
+		Deque<boolean[]> arrays = probeArrays.get(length);
+		if (arrays != null && !arrays.isEmpty()) {
+			return arrays.pop();
+		}
+		return new boolean[length];
+	}
+
+	/** Returns the given probe array to the pool. */
+	public synchronized void release(boolean[] probes) {
+		probeArrays.computeIfAbsent(probes.length, length -> new ArrayDeque<>()).push(probes);
+	}
+
+	/** Returns all probe arrays of the given dump to the pool. The dump must not be used afterwards. */
+	public synchronized void release(Dump dump) {
+		for (ExecutionData executionData : dump.store.getContents()) {
+			release(executionData.getProbes());
+		}
+	}
+}
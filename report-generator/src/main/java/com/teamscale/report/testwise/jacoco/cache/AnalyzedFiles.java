@@ -0,0 +1,134 @@
+package com.teamscale.report.testwise.jacoco.cache;
+
+import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of the files and directories that have already been analyzed by an {@link AnalyzerCache}, so that
+ * repeated analyses of the same class directories only need to read files that appeared or changed since the last
+ * analysis.
+ * <p>
+ * Files are identified by their modification time and size. Directories are only listed again if their modification
+ * time changed, which is the case whenever files are added, removed or renamed. Because file systems store
+ * modification times with a limited granularity, entries that have been recorded shortly after their last modification
+ * are not trusted and are checked again on the next analysis.
+ */
+/* package */ class AnalyzedFiles {
+
+	/** The granularity of file modification times that we expect from the file system (e.g. 2 seconds for FAT). */
+	private static final long MODIFICATION_TIME_GRANULARITY_MILLIS = 2000;
+
+	/** Fingerprints of all files that have been analyzed successfully. */
+	private final Map<File, FileFingerprint> analyzedFiles = new HashMap<>();
+
+	/** Fingerprints of the files whose analysis has not been confirmed via {@link #commitPending()} yet. */
+	private final Map<File, FileFingerprint> pendingFiles = new HashMap<>();
+
+	/** The last known contents of all listed directories. */
+	private final Map<File, DirectoryListing> directoryListings = new HashMap<>();
+
+	/**
+	 * Returns the number of class files that were found when the given file was last analyzed or null if the file has
+	 * not been analyzed yet or has changed since.
+	 */
+	/* package */ Integer getClassCountIfUnchanged(File file, BasicFileAttributes attributes) {
+		FileFingerprint fingerprint = analyzedFiles.get(file);
+		if (fingerprint == null || !fingerprint.matches(attributes)) {
+			return null;
+		}
+		return fingerprint.classCount;
+	}
+
+	/** Remembers that the given file has been analyzed. Takes effect with the next {@link #commitPending()}. */
+	/* package */ void markAnalyzed(File file, BasicFileAttributes attributes, long recordedAt, int classCount) {
+		if (isRecentlyModified(attributes.lastModifiedTime().toMillis(), recordedAt)) {
+			return;
+		}
+		pendingFiles.put(file, new FileFingerprint(attributes, classCount));
+	}
+
+	/** Confirms that all files marked since the last call have been analyzed successfully. */
+	/* package */ void commitPending() {
+		analyzedFiles.putAll(pendingFiles);
+		pendingFiles.clear();
+	}
+
+	/** Forgets all files marked since the last call, so that they are analyzed again next time. */
+	/* package */ void discardPending() {
+		pendingFiles.clear();
+	}
+
+	/**
+	 * Returns the files contained in the given directory. The directory is only listed again if it has been modified
+	 * since the last call.
+	 */
+	/* package */ File[] listDirectory(File directory, BasicFileAttributes attributes) {
+		long lastModified = attributes.lastModifiedTime().toMillis();
+		DirectoryListing listing = directoryListings.get(directory);
+		if (listing != null && listing.lastModified == lastModified) {
+			return listing.files;
+		}
+
+		long listedAt = System.currentTimeMillis();
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return new File[0];
+		}
+		if (isRecentlyModified(lastModified, listedAt)) {
+			directoryListings.remove(directory);
+		} else {
+			directoryListings.put(directory, new DirectoryListing(lastModified, files));
+		}
+		return files;
+	}
+
+	/**
+	 * Returns whether the modification at the given time may have happened so shortly before the given recording time
+	 * that a subsequent modification would not change the modification time.
+	 */
+	/* package */
+	static boolean isRecentlyModified(long lastModified, long recordedAt) {
+		return recordedAt - lastModified < MODIFICATION_TIME_GRANULARITY_MILLIS;
+	}
+
+	/** Identifies the state of a file at the time it was analyzed. */
+	private static class FileFingerprint {
+
+		/** The modification time of the file in milliseconds. */
+		private final long lastModified;
+
+		/** The size of the file in bytes. */
+		private final long size;
+
+		/** The number of class files found in the file. */
+		private final int classCount;
+
+		private FileFingerprint(BasicFileAttributes attributes, int classCount) {
+			this.lastModified = attributes.lastModifiedTime().toMillis();
+			this.size = attributes.size();
+			this.classCount = classCount;
+		}
+
+		/** Returns whether the given attributes still describe the same file. */
+		private boolean matches(BasicFileAttributes attributes) {
+			return lastModified == attributes.lastModifiedTime().toMillis() && size == attributes.size();
+		}
+	}
+
+	/** The contents of a directory at the time it was listed. */
+	private static class DirectoryListing {
+
+		/** The modification time of the directory in milliseconds. */
+		private final long lastModified;
+
+		/** The files contained in the directory. */
+		private final File[] files;
+
+		private DirectoryListing(long lastModified, File[] files) {
+			this.lastModified = lastModified;
+			this.files = files;
+		}
+	}
+}
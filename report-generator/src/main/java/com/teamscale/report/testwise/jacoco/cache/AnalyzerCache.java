@@ -13,10 +13,23 @@ import org.jacoco.core.internal.instr.InstrSupport;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * An {@link AnalyzerCache} instance processes a set of Java class/jar/war/... files and builds a {@link
@@ -24,21 +37,141 @@ import java.nio.file.Paths;
  * <p>
  * For every class that gets found {@link #analyzeClass(byte[])} is called. A class is identified by its class ID which
  * is a CRC64 checksum of the classfile. We process each class with {@link CachingClassAnalyzer} to fill a {@link
- * ClassCoverageLookup}.
+ * ClassCoverageLookup}. Classes whose lookup has been loaded from a persisted probes cache file are not analyzed again.
+ * <p>
+ * An instance may be used for repeated analyses of the same directories. Files that have not changed since the last
+ * analysis are then skipped without reading them. See {@link AnalyzedFiles}.
+ * <p>
+ * If an analysis pool is given, the bytecode analysis is executed in the pool. Class files in archives on disk are
+ * also inflated in the pool, all other class files are read by the calling thread. Callers must then call {@link #awaitPendingAnalyses()} before using the {@link ProbesCache}.
  */
 public class AnalyzerCache extends FilteringAnalyzer {
 
 	/** The probes cache. */
 	private final ProbesCache probesCache;
 
+	/** String pool per analysis thread, as {@link StringPool} is not thread-safe. */
+	private final ThreadLocal<StringPool> stringPool = ThreadLocal.withInitial(StringPool::new);
+
+	/** The pool in which classes are analyzed or null if classes should be analyzed by the calling thread. */
+	private final ForkJoinPool analysisPool;
+
+	/** The analyses that have been submitted to the {@link #analysisPool} but have not been awaited yet. */
+	private final List<Future<?>> pendingAnalyses = new ArrayList<>();
+
+	/**
+	 * IDs of the classes of the {@link #pendingAnalyses}. Prevents that identical class files are analyzed twice in
+	 * parallel.
+	 */
+	private final Set<Long> classIdsInAnalysis = ConcurrentHashMap.newKeySet();
+
+	/** Jar IDs and class counts that are added to the {@link #probesCache} once the pending analyses succeeded. */
+	private final Map<Long, Integer> pendingJarIds = new HashMap<>();
+
+	/** The files that have already been analyzed by this analyzer. */
+	private final AnalyzedFiles analyzedFiles = new AnalyzedFiles();
 
-	private final StringPool stringPool = new StringPool();
+	/** Computes and caches the IDs of the analyzed jars. */
+	private final JarFingerprints jarFingerprints = new JarFingerprints();
 
 	/** Creates a new analyzer filling the given cache. */
 	public AnalyzerCache(ProbesCache probesCache, ClasspathWildcardIncludeFilter locationIncludeFilter,
 						 ILogger logger) {
+		this(probesCache, locationIncludeFilter, null, logger);
+	}
+
+	/**
+	 * Creates a new analyzer filling the given cache, which analyzes the classes in the given pool. The pool may be
+	 * null to analyze classes on the calling thread.
+	 */
+	public AnalyzerCache(ProbesCache probesCache, ClasspathWildcardIncludeFilter locationIncludeFilter,
+						 ForkJoinPool analysisPool, ILogger logger) {
 		super(null, null, locationIncludeFilter, logger);
 		this.probesCache = probesCache;
+		this.analysisPool = analysisPool;
+	}
+
+	/**
+	 * Analyzes all class files contained in the given file or folder, but skips files that have not changed since the
+	 * last call and only lists directories again that have been modified.
+	 */
+	@Override
+	public int analyzeAll(File file) throws IOException {
+		long recordedAt = System.currentTimeMillis();
+		BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		if (attributes.isDirectory()) {
+			int count = 0;
+			for (File child : analyzedFiles.listDirectory(file, attributes)) {
+				count += analyzeAll(child);
+			}
+			return count;
+		}
+
+		Integer unchangedClassCount = analyzedFiles.getClassCountIfUnchanged(file, attributes);
+		if (unchangedClassCount != null) {
+			return unchangedClassCount;
+		}
+		int count = analyzeFile(file);
+		analyzedFiles.markAnalyzed(file, attributes, recordedAt, count);
+		return count;
+	}
+
+	/**
+	 * Submits the analysis of the class to the {@link #analysisPool} if one is configured. Otherwise, the class is
+	 * analyzed immediately.
+	 */
+	@Override
+	public void analyzeClass(final byte[] buffer, final String location) throws IOException {
+		if (analysisPool == null) {
+			super.analyzeClass(buffer, location);
+			return;
+		}
+		pendingAnalyses.add(analysisPool.submit(() -> analyzeClassIfNew(buffer, location)));
+	}
+
+	/**
+	 * Reads and analyzes the class file entries in the {@link #analysisPool} if one is configured. Otherwise, they are
+	 * read and analyzed sequentially.
+	 */
+	@Override
+	protected void analyzeArchiveEntries(ZipFile zipFile, String archiveLocation,
+										 List<ZipEntry> classEntries) throws IOException {
+		if (analysisPool == null) {
+			super.analyzeArchiveEntries(zipFile, archiveLocation, classEntries);
+			return;
+		}
+		List<Future<?>> archiveAnalyses = new ArrayList<>();
+		for (ZipEntry entry : classEntries) {
+			String location = archiveLocation + "@" + entry.getName();
+			archiveAnalyses.add(analysisPool.submit(
+					() -> analyzeClassIfNew(readArchiveEntry(zipFile, entry, location), location)));
+		}
+		// The zip file is closed once we return, so we have to wait until all entries have been read. Errors are
+		// reported by awaitPendingAnalyses.
+		for (Future<?> archiveAnalysis : archiveAnalyses) {
+			try {
+				archiveAnalysis.get();
+			} catch (ExecutionException e) {
+				// reported by awaitPendingAnalyses
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while analyzing " + archiveLocation);
+			}
+		}
+		pendingAnalyses.addAll(archiveAnalyses);
+	}
+
+	/**
+	 * Analyzes the given class unless a class with the same ID has already been analyzed or is being analyzed by
+	 * another thread.
+	 */
+	private Void analyzeClassIfNew(byte[] buffer, String location) throws IOException {
+		long classId = CRC64.classId(buffer);
+		if (isAlreadyAnalyzed(classId) || !classIdsInAnalysis.add(classId)) {
+			return null;
+		}
+		super.analyzeClass(buffer, location);
+		return null;
 	}
 
 	/**
@@ -48,7 +181,7 @@ public class AnalyzerCache extends FilteringAnalyzer {
 	@Override
 	protected void analyzeClass(final byte[] source) {
 		long classId = CRC64.classId(source);
-		if (probesCache.containsClassId(classId)) {
+		if (isAlreadyAnalyzed(classId)) {
 			return;
 		}
 		final ClassReader reader = InstrSupport.classReaderFor(source);
@@ -60,23 +193,103 @@ public class AnalyzerCache extends FilteringAnalyzer {
 				classId, false);
 
 		CachingClassAnalyzer classAnalyzer = new CachingClassAnalyzer(classCoverageLookup, dummyClassCoverage,
-				stringPool);
+				stringPool.get());
 		final ClassVisitor visitor = new ClassProbesAdapter(classAnalyzer, false);
 		reader.accept(visitor, 0);
 	}
 
+	/** Returns whether the class is already contained in the cache or could be restored from the persisted cache. */
+	private boolean isAlreadyAnalyzed(long classId) {
+		return probesCache.containsClassId(classId) || probesCache.restorePersistedClass(classId);
+	}
+
 	/**
-	 * Adds caching for jar files to the analyze jar functionality.
+	 * Adds caching for jar files to the analyze jar functionality. Jars nested in other archives are not cached.
 	 */
 	@Override
 	protected int analyzeJar(final InputStream input, final String location) throws IOException {
-		long jarId = CRC64.classId(Files.readAllBytes(Paths.get(location)));
+		return analyzeWithJarCache(location, () -> super.analyzeJar(input, location));
+	}
+
+	/** Adds caching for jar files to the random-access analysis of archives. */
+	@Override
+	protected Integer analyzeArchive(File archive) throws IOException {
+		return analyzeWithJarCache(archive.getPath(), () -> super.analyzeArchive(archive));
+	}
+
+	/**
+	 * Runs the given analysis of the jar at the given location unless the same jar has already been analyzed. Returns
+	 * the number of class files in the jar or null if the analysis returned null.
+	 */
+	private Integer analyzeWithJarCache(String location, JarAnalysis analysis) throws IOException {
+		Long jarId = jarFingerprints.getJarId(location);
+		if (jarId == null) {
+			return analysis.run();
+		}
 		int probesCountForJarId = probesCache.countForJarId(jarId);
 		if (probesCountForJarId != 0) {
 			return probesCountForJarId;
 		}
-		int count = super.analyzeJar(input, location);
-		probesCache.addJarId(jarId, count);
+		Integer count = analysis.run();
+		if (count == null) {
+			return null;
+		}
+		if (analysisPool == null) {
+			probesCache.addJarId(jarId, count);
+		} else {
+			pendingJarIds.put(jarId, count);
+		}
 		return count;
 	}
+
+	/**
+	 * Waits until all classes that have been submitted to the analysis pool have been analyzed. Rethrows the first
+	 * error that occurred during the analysis. Must be called after each {@link #analyzeAll(File)}, as files are only
+	 * skipped in later analyses once their analysis has been confirmed by this method.
+	 */
+	public void awaitPendingAnalyses() throws IOException {
+		Throwable firstError = null;
+		for (Future<?> pendingAnalysis : pendingAnalyses) {
+			try {
+				pendingAnalysis.get();
+			} catch (ExecutionException e) {
+				if (firstError == null) {
+					firstError = e.getCause();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				if (firstError == null) {
+					firstError = new InterruptedIOException("Interrupted while waiting for the class file analysis.");
+				}
+			}
+		}
+		pendingAnalyses.clear();
+		classIdsInAnalysis.clear();
+
+		if (firstError == null) {
+			pendingJarIds.forEach(probesCache::addJarId);
+			analyzedFiles.commitPending();
+		} else {
+			analyzedFiles.discardPending();
+		}
+		pendingJarIds.clear();
+
+		if (firstError instanceof IOException) {
+			throw (IOException) firstError;
+		} else if (firstError instanceof RuntimeException) {
+			throw (RuntimeException) firstError;
+		} else if (firstError instanceof Error) {
+			throw (Error) firstError;
+		} else if (firstError != null) {
+			throw new IOException("Failed to analyze class files", firstError);
+		}
+	}
+
+	/** The analysis of a single jar file. */
+	@FunctionalInterface
+	private interface JarAnalysis {
+
+		/** Analyzes the jar and returns the number of found class files. */
+		Integer run() throws IOException;
+	}
 }
@@ -2,11 +2,14 @@ package com.teamscale.report.testwise.jacoco.cache;
 
 import com.teamscale.client.StringUtils;
 import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.SourceFile;
+import com.teamscale.report.testwise.model.builder.SourceFileRegistry;
 import com.teamscale.report.util.ILogger;
-import com.teamscale.report.util.SortedIntList;
+import com.teamscale.report.util.LineSet;
 import org.jacoco.core.data.ExecutionData;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -15,10 +18,13 @@ import java.util.List;
  * <ul>
  * <li> Create an instance of this class for every analyzed java class.
  * <li> Set the file name of the java source file from which the class has been created.
- * <li> Then call {@link #addProbe(int, SortedIntList)} for all probes and lines that belong to that probe.
- * <li> Afterwards call {@link #getFileCoverage(ExecutionData, ILogger)} to transform probes ({@link
+ * <li> Then call {@link #addProbe(int, LineSet)} for all probes and lines that belong to that probe.
+ * <li> Afterwards call {@link #getFileCoverage(ExecutionData, SourceFileRegistry, ILogger)} to transform probes ({@link
  * ExecutionData}) for this class into covered lines ({@link FileCoverageBuilder}).
  * </ul>
+ * <p>
+ * On the first conversion, the lines of all probes are compiled into a single flat array of bitset words (see {@link
+ * CompiledProbes}), so that each further conversion is a tight loop of word-wise ORs without per-probe objects.
  */
 public class ClassCoverageLookup {
 
@@ -29,9 +35,16 @@ public class ClassCoverageLookup {
 	private String sourceFileName;
 
 	/**
-	 * Mapping from probe IDs to sets of covered lines. The index in this list corresponds to the probe ID.
+	 * Mapping from probe IDs to sets of covered lines. The index in this list corresponds to the probe ID. Null once
+	 * the probes have been compiled into {@link #compiledProbes}.
 	 */
-	private final List<SortedIntList> probes = new ArrayList<>();
+	private List<LineSet> probes = new ArrayList<>();
+
+	/** The compiled form of {@link #probes} or null if the probes have not been compiled yet. */
+	private volatile CompiledProbes compiledProbes;
+
+	/** The source file of the class as registered on the first conversion or null if it has not been converted yet. */
+	private volatile SourceFile sourceFile;
 
 	/**
 	 * Constructor.
@@ -47,17 +60,61 @@ public class ClassCoverageLookup {
 		this.sourceFileName = sourceFileName;
 	}
 
+	/** Returns the fully qualified name of the class (with / as separators). */
+	/* package */ String getClassName() {
+		return className;
+	}
+
+	/** Returns the file name of the java source file or null if the class has no debug information. */
+	/* package */ String getSourceFileName() {
+		return sourceFileName;
+	}
+
+	/** Returns the lines per probe ID. Entries are null for probes that do not belong to any method. */
+	/* package */ List<LineSet> getProbes() {
+		CompiledProbes compiled = compiledProbes;
+		if (compiled != null) {
+			return compiled.toLineSets();
+		}
+		return probes;
+	}
+
 	/** Adjusts the size of the probes list to the total probes count. */
 	public void setTotalProbeCount(int count) {
+		ensureNotCompiled();
 		ensureArraySize(count - 1);
 	}
 
 	/** Adds the probe with the given id to the method. */
-	public void addProbe(int probeId, SortedIntList lines) {
+	public void addProbe(int probeId, LineSet lines) {
+		ensureNotCompiled();
 		ensureArraySize(probeId);
 		probes.set(probeId, lines);
 	}
 
+	/** Restores the {@link #probes} list if the probes have already been compiled. */
+	private synchronized void ensureNotCompiled() {
+		if (compiledProbes != null) {
+			probes = compiledProbes.toLineSets();
+			compiledProbes = null;
+		}
+	}
+
+	/** Returns the compiled probes and compiles them first if necessary. */
+	private CompiledProbes getCompiledProbes() {
+		CompiledProbes compiled = compiledProbes;
+		if (compiled != null) {
+			return compiled;
+		}
+		synchronized (this) {
+			if (compiledProbes == null) {
+				compiledProbes = new CompiledProbes(probes);
+				probes = null;
+			}
+			return compiledProbes;
+		}
+	}
+
 	/**
 	 * Ensures that the probes list is big enough to allow access to the given index. Intermediate list entries are
 	 * filled with null.
@@ -72,14 +129,16 @@ public class ClassCoverageLookup {
 	 * Generates {@link FileCoverageBuilder} from an {@link ExecutionData}. {@link ExecutionData} holds coverage of
 	 * exactly one class (whereby inner classes are a separate class). This method returns a {@link FileCoverageBuilder}
 	 * object which is later merged with the {@link FileCoverageBuilder} of other classes that reside in the same file.
+	 * The source file is obtained from the given registry once and reused for all further conversions.
 	 */
-	public FileCoverageBuilder getFileCoverage(ExecutionData executionData,
+	public FileCoverageBuilder getFileCoverage(ExecutionData executionData, SourceFileRegistry sourceFileRegistry,
 											   ILogger logger) throws CoverageGenerationException {
 		boolean[] executedProbes = executionData.getProbes();
+		CompiledProbes compiled = getCompiledProbes();
 
-		if (checkProbeInvariant(executedProbes)) {
+		if (compiled.getProbeCount() > executedProbes.length) {
 			throw new CoverageGenerationException("Probe lookup does not match with actual probe size for " +
-					sourceFileName + " " + className + " (" + probes.size() + " vs " + executedProbes.length + ")! " +
+					sourceFileName + " " + className + " (" + compiled.getProbeCount() + " vs " + executedProbes.length + ")! " +
 					"This is a bug in the profiler tooling. Please report it back to CQSE.");
 		}
 		if (sourceFileName == null) {
@@ -89,44 +148,147 @@ public class ClassCoverageLookup {
 			return null;
 		}
 
-		// we model the default package as the empty string
-		String packageName = "";
-		if (className.contains("/")) {
-			packageName = StringUtils.removeLastPart(className, '/');
-		}
-		final FileCoverageBuilder fileCoverage = new FileCoverageBuilder(packageName, sourceFileName);
-		fillFileCoverage(fileCoverage, executedProbes, logger);
+		final FileCoverageBuilder fileCoverage = new FileCoverageBuilder(getSourceFile(sourceFileRegistry));
+		fillFileCoverage(fileCoverage, compiled, executedProbes, logger);
 
 		return fileCoverage;
 	}
 
-	private void fillFileCoverage(FileCoverageBuilder fileCoverage, boolean[] executedProbes, ILogger logger) {
-		for (int i = 0; i < probes.size(); i++) {
-			SortedIntList coveredLines = probes.get(i);
+	/** Returns the source file of the class from the given registry. */
+	private SourceFile getSourceFile(SourceFileRegistry sourceFileRegistry) {
+		SourceFile file = sourceFile;
+		if (file == null) {
+			// we model the default package as the empty string
+			String packageName = "";
+			if (className.contains("/")) {
+				packageName = StringUtils.removeLastPart(className, '/');
+			}
+			file = sourceFileRegistry.get(packageName, sourceFileName);
+			sourceFile = file;
+		}
+		return file;
+	}
+
+	private void fillFileCoverage(FileCoverageBuilder fileCoverage, CompiledProbes compiled, boolean[] executedProbes,
+								  ILogger logger) {
+		long[] coveredWords = new long[compiled.wordSpan];
+		boolean hasCoveredLines = false;
+		for (int i = 0; i < compiled.getProbeCount(); i++) {
 			if (!executedProbes[i]) {
 				continue;
 			}
-			// coveredLines is null if the probe is outside of a method
+			int wordsStart = compiled.wordOffsets[i];
+			int wordsEnd = compiled.wordOffsets[i + 1];
+			if (wordsStart != wordsEnd) {
+				int target = compiled.firstWordIndices[i] - compiled.firstWordIndex;
+				for (int word = wordsStart; word < wordsEnd; word++) {
+					coveredWords[target++] |= compiled.words[word];
+				}
+				hasCoveredLines = true;
+				continue;
+			}
+			// the probe has no lines if it is outside of a method
 			// Happens e.g. for methods generated by Lombok
-			if (coveredLines == null) {
+			if (compiled.firstWordIndices[i] == CompiledProbes.NO_METHOD) {
 				logger.info(sourceFileName + " " + className + " did contain a covered probe " + i + "(of " +
 						executedProbes.length + ") that could not be " +
 						"matched to any method. This could be a bug in the profiler tooling. Please report it back " +
 						"to CQSE.");
 				continue;
 			}
-			if (coveredLines.isEmpty()) {
-				logger.debug(
-						sourceFileName + " " + className + " did contain a method with no line information. " +
-								"Does the class contain debug information?");
-				continue;
-			}
-			fileCoverage.addLines(coveredLines);
+			logger.debug(
+					sourceFileName + " " + className + " did contain a method with no line information. " +
+							"Does the class contain debug information?");
+		}
+		if (hasCoveredLines) {
+			fileCoverage.addLines(LineSet.ofWords(compiled.firstWordIndex, coveredWords));
 		}
 	}
 
-	/** Checks that the executed probes is not smaller than the cached probes. */
-	private boolean checkProbeInvariant(boolean[] executedProbes) {
-		return probes.size() > executedProbes.length;
+	/**
+	 * The lines of all probes of a class in a flat form. The bitset words of all probes' {@link LineSet}s are stored one
+	 * after the other in a single array, so that the covered lines of a class can be computed by ORing the words of the
+	 * executed probes into a single array that spans all lines of the class.
+	 */
+	private static class CompiledProbes {
+
+		/** Marker in {@link #firstWordIndices} for probes that do not belong to any method. */
+		private static final int NO_METHOD = -1;
+
+		/** The bitset words of all probes. */
+		private final long[] words;
+
+		/**
+		 * The words of probe {@code i} are stored in {@link #words} from index {@code wordOffsets[i]} (inclusive) to
+		 * {@code wordOffsets[i + 1]} (exclusive).
+		 */
+		private final int[] wordOffsets;
+
+		/**
+		 * The absolute word index (see {@link LineSet#getFirstWordIndex()}) of the first word of each probe or {@link
+		 * #NO_METHOD}.
+		 */
+		private final int[] firstWordIndices;
+
+		/** The smallest absolute word index of all probes. */
+		private final int firstWordIndex;
+
+		/** The number of words between the smallest and the largest word index of all probes. */
+		private final int wordSpan;
+
+		private CompiledProbes(List<LineSet> probes) {
+			int probeCount = probes.size();
+			wordOffsets = new int[probeCount + 1];
+			firstWordIndices = new int[probeCount];
+			int wordCount = 0;
+			int minWordIndex = Integer.MAX_VALUE;
+			int maxWordIndex = Integer.MIN_VALUE;
+			for (int i = 0; i < probeCount; i++) {
+				LineSet lines = probes.get(i);
+				wordOffsets[i] = wordCount;
+				if (lines == null) {
+					firstWordIndices[i] = NO_METHOD;
+				} else if (!lines.isEmpty()) {
+					firstWordIndices[i] = lines.getFirstWordIndex();
+					wordCount += lines.getWordCount();
+					minWordIndex = Math.min(minWordIndex, lines.getFirstWordIndex());
+					maxWordIndex = Math.max(maxWordIndex, lines.getFirstWordIndex() + lines.getWordCount() - 1);
+				}
+			}
+			wordOffsets[probeCount] = wordCount;
+
+			words = new long[wordCount];
+			for (int i = 0; i < probeCount; i++) {
+				if (wordOffsets[i] != wordOffsets[i + 1]) {
+					probes.get(i).copyWordsTo(words, wordOffsets[i]);
+				}
+			}
+			if (wordCount == 0) {
+				firstWordIndex = 0;
+				wordSpan = 0;
+			} else {
+				firstWordIndex = minWordIndex;
+				wordSpan = maxWordIndex - minWordIndex + 1;
+			}
+		}
+
+		/** Returns the number of probes of the class. */
+		private int getProbeCount() {
+			return firstWordIndices.length;
+		}
+
+		/** Converts the probes back to one {@link LineSet} per probe. */
+		private List<LineSet> toLineSets() {
+			List<LineSet> probes = new ArrayList<>(getProbeCount());
+			for (int i = 0; i < getProbeCount(); i++) {
+				if (firstWordIndices[i] == NO_METHOD) {
+					probes.add(null);
+				} else {
+					probes.add(LineSet.ofWords(firstWordIndices[i],
+							Arrays.copyOfRange(words, wordOffsets[i], wordOffsets[i + 1])));
+				}
+			}
+			return probes;
+		}
 	}
 }
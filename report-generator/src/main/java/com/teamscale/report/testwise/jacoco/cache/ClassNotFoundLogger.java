@@ -7,7 +7,7 @@ import java.util.Set;
 
 /**
  * Coordinates logging of missing class files to ensure the warnings are only emitted once and not for every individual
- * test.
+ * test. Classes may be logged from multiple threads at the same time.
  */
 /* package */ class ClassNotFoundLogger {
 
@@ -26,14 +26,14 @@ import java.util.Set;
 	}
 
 	/** Saves the given class to be logged later on. Ensures that the class is only logged once. */
-	/* package */ void log(String fullyQualifiedClassName) {
+	/* package */ synchronized void log(String fullyQualifiedClassName) {
 		if (!alreadyLoggedClasses.contains(fullyQualifiedClassName)) {
 			classesToBeLogged.add(fullyQualifiedClassName);
 		}
 	}
 
 	/** Writes a summary of the missing class files to the logger. */
-	/* package */ void flush() {
+	/* package */ synchronized void flush() {
 		if (classesToBeLogged.isEmpty()) {
 			return;
 		}
@@ -0,0 +1,125 @@
+package com.teamscale.report.testwise.jacoco.cache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Computes IDs for jar files, which allow to skip the analysis of jars that have already been analyzed.
+ * <p>
+ * The ID is derived from the central directory of the jar (names, CRCs and sizes of all entries), which can be read
+ * via random access without inflating or loading the jar. IDs are cached by path, size and modification time of the
+ * jar. Like in {@link AnalyzedFiles}, IDs of jars that were modified shortly before the ID was computed are not cached,
+ * as a subsequent modification might not change the modification time. Jars that are nested in other archives don't
+ * have a path on disk and therefore don't get an ID.
+ */
+/* package */ class JarFingerprints {
+
+	/** The cached IDs by path of the jar. */
+	private final Map<Path, CachedJarId> jarIds = new HashMap<>();
+
+	/**
+	 * Returns the ID of the jar at the given location or null if the location does not denote a regular file or the
+	 * file is not a valid zip file.
+	 */
+	/* package */ Long getJarId(String location) throws IOException {
+		Path path;
+		BasicFileAttributes attributes;
+		long recordedAt = System.currentTimeMillis();
+		try {
+			path = Paths.get(location);
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (InvalidPathException | NoSuchFileException e) {
+			// location of a jar nested in another archive
+			return null;
+		}
+		if (!attributes.isRegularFile()) {
+			return null;
+		}
+
+		CachedJarId cachedJarId = jarIds.get(path);
+		if (cachedJarId != null && cachedJarId.matches(attributes)) {
+			return cachedJarId.jarId;
+		}
+		Long jarId = computeJarId(path);
+		if (jarId == null || AnalyzedFiles.isRecentlyModified(attributes.lastModifiedTime().toMillis(), recordedAt)) {
+			jarIds.remove(path);
+		} else {
+			jarIds.put(path, new CachedJarId(attributes, jarId));
+		}
+		return jarId;
+	}
+
+	/** Computes the ID from the central directory of the jar or returns null if it can't be read. */
+	private static Long computeJarId(Path path) throws IOException {
+		MessageDigest digest = createDigest();
+		try (ZipFile zipFile = new ZipFile(path.toFile())) {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+				updateWithLong(digest, entry.getCrc());
+				updateWithLong(digest, entry.getSize());
+			}
+		} catch (ZipException e) {
+			return null;
+		}
+		byte[] hash = digest.digest();
+		long jarId = 0;
+		for (int i = 0; i < Long.BYTES; i++) {
+			jarId = (jarId << 8) | (hash[i] & 0xFF);
+		}
+		return jarId;
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError("SHA-1 must be supported by every Java platform", e);
+		}
+	}
+
+	private static void updateWithLong(MessageDigest digest, long value) {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			digest.update((byte) (value >>> shift));
+		}
+	}
+
+	/** A jar ID along with the state of the jar file at the time the ID was computed. */
+	private static class CachedJarId {
+
+		/** The modification time of the jar in milliseconds. */
+		private final long lastModified;
+
+		/** The size of the jar in bytes. */
+		private final long size;
+
+		/** The ID of the jar. */
+		private final long jarId;
+
+		private CachedJarId(BasicFileAttributes attributes, long jarId) {
+			this.lastModified = attributes.lastModifiedTime().toMillis();
+			this.size = attributes.size();
+			this.jarId = jarId;
+		}
+
+		/** Returns whether the given attributes still describe the same jar file. */
+		private boolean matches(BasicFileAttributes attributes) {
+			return lastModified == attributes.lastModifiedTime().toMillis() && size == attributes.size();
+		}
+	}
+}
@@ -2,18 +2,24 @@ package com.teamscale.report.testwise.jacoco.cache;
 
 import com.teamscale.report.EDuplicateClassFileBehavior;
 import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.SourceFileRegistry;
 import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
 import com.teamscale.report.util.ILogger;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.report.JavaNames;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Holds {@link ClassCoverageLookup}s for all analyzed classes.
+ * <p>
+ * Classes may be created concurrently by multiple analyzer threads.
  */
 public class ProbesCache {
 
@@ -21,18 +27,30 @@ public class ProbesCache {
 	private final ILogger logger;
 
 	/** A mapping from class ID (CRC64 of the class file) to {@link ClassCoverageLookup}. */
-	private final HashMap<Long, ClassCoverageLookup> classCoverageLookups = new HashMap<>();
+	private final Map<Long, ClassCoverageLookup> classCoverageLookups = new ConcurrentHashMap<>();
+
+	/**
+	 * Lookups that have been loaded from a persisted cache file via {@link #loadFrom(File)}, but whose class has not
+	 * been encountered in the current analysis yet. See {@link #restorePersistedClass(long)}.
+	 */
+	private final Map<Long, ClassCoverageLookup> persistedClassCoverageLookups = new HashMap<>();
+
+	/** Whether classes have been analyzed since the cache was loaded from or saved to a file. */
+	private volatile boolean modified = false;
 
 	/** Holds all fully-qualified class names that are already contained in the cache. */
 	private final Set<String> containedClasses = new HashSet<>();
 
-	private final Map<Long, Integer> containedJars = new HashMap<>();
+	private final Map<Long, Integer> containedJars = new ConcurrentHashMap<>();
 
 	/** Whether to ignore non-identical duplicates of class files. */
 	private final EDuplicateClassFileBehavior duplicateClassFileBehavior;
 
 	private final ClassNotFoundLogger classNotFoundLogger;
 
+	/** The source files of all converted classes, which are shared by the coverage of all tests. */
+	private final SourceFileRegistry sourceFileRegistry = new SourceFileRegistry();
+
 	/** Constructor. */
 	public ProbesCache(ILogger logger, EDuplicateClassFileBehavior duplicateClassFileBehavior) {
 		this.logger = logger;
@@ -41,7 +59,30 @@ public class ProbesCache {
 	}
 
 	/** Adds a new class entry to the cache and returns its {@link ClassCoverageLookup}. */
-	public ClassCoverageLookup createClass(long classId, String className) {
+	public synchronized ClassCoverageLookup createClass(long classId, String className) {
+		registerClassName(className);
+		ClassCoverageLookup classCoverageLookup = new ClassCoverageLookup(className);
+		classCoverageLookups.put(classId, classCoverageLookup);
+		modified = true;
+		return classCoverageLookup;
+	}
+
+	/**
+	 * Moves the persisted lookup for the given class ID to the active lookups, which makes the analysis of the class
+	 * file unnecessary. Returns false if no persisted lookup exists for the class ID.
+	 */
+	public synchronized boolean restorePersistedClass(long classId) {
+		ClassCoverageLookup classCoverageLookup = persistedClassCoverageLookups.remove(classId);
+		if (classCoverageLookup == null) {
+			return false;
+		}
+		registerClassName(classCoverageLookup.getClassName());
+		classCoverageLookups.put(classId, classCoverageLookup);
+		return true;
+	}
+
+	/** Remembers the given class name and handles non-identical duplicates of the class. */
+	private void registerClassName(String className) {
 		if (containedClasses.contains(className)) {
 			if (duplicateClassFileBehavior != EDuplicateClassFileBehavior.IGNORE) {
 				logger.warn("Non-identical class file for class " + className + "."
@@ -56,9 +97,6 @@ public class ProbesCache {
 			}
 		}
 		containedClasses.add(className);
-		ClassCoverageLookup classCoverageLookup = new ClassCoverageLookup(className);
-		classCoverageLookups.put(classId, classCoverageLookup);
-		return classCoverageLookup;
 	}
 
 	/** Returns whether a class with the given class ID has already been analyzed. */
@@ -98,7 +136,7 @@ public class ProbesCache {
 			return null;
 		}
 
-		return classCoverageLookups.get(classId).getFileCoverage(executionData, logger);
+		return classCoverageLookups.get(classId).getFileCoverage(executionData, sourceFileRegistry, logger);
 	}
 
 	/** Returns true if the cache does not contain coverage for any class. */
@@ -106,6 +144,30 @@ public class ProbesCache {
 		return classCoverageLookups.isEmpty();
 	}
 
+	/**
+	 * Loads lookups from a file previously written with {@link #saveTo(File)}. The loaded lookups are only used once
+	 * the analyzer encounters a class file with the same class ID. Files written with a different JaCoCo version are
+	 * ignored.
+	 */
+	public synchronized void loadFrom(File file) throws IOException {
+		persistedClassCoverageLookups.putAll(ProbesCacheFile.read(file));
+		modified = false;
+	}
+
+	/**
+	 * Writes the lookups of all classes found in the current analysis to the given file. Persisted lookups for classes
+	 * that no longer exist are dropped.
+	 */
+	public void saveTo(File file) throws IOException {
+		ProbesCacheFile.write(file, classCoverageLookups);
+		modified = false;
+	}
+
+	/** Returns whether classes have been analyzed since the cache was loaded from or saved to a file. */
+	public boolean isModified() {
+		return modified;
+	}
+
 	/** Prints a the collected class not found messages. */
 	public void flushLogger() {
 		classNotFoundLogger.flush();
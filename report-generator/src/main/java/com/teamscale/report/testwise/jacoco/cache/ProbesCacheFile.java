@@ -0,0 +1,181 @@
+package com.teamscale.report.testwise.jacoco.cache;
+
+import com.teamscale.report.util.LineSet;
+import org.jacoco.core.JaCoCo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the {@link ClassCoverageLookup}s of a {@link ProbesCache} from/to a compact binary file, so that
+ * the class file analysis does not have to be repeated in every JVM.
+ * <p>
+ * The file starts with a magic number, a format version and the JaCoCo version that was used to build the lookups.
+ * Files written by another format or JaCoCo version are ignored, because JaCoCo may place probes differently. The
+ * header is followed by the number of classes and one entry per class consisting of the class ID, class name, source
+ * file name and the probe-to-line table. Line numbers are written as delta-encoded variable length integers.
+ */
+/* package */ class ProbesCacheFile {
+
+	/** Magic number at the beginning of each probes cache file ("TSPC"). */
+	private static final int MAGIC_NUMBER = 0x54535043;
+
+	/** Version of the file format. Must be incremented whenever the format changes. */
+	private static final int FORMAT_VERSION = 1;
+
+	/** Marker for a probe that does not belong to any method. */
+	private static final int NO_LINES_MARKER = 0;
+
+	private ProbesCacheFile() {
+		// Utility class
+	}
+
+	/**
+	 * Reads the lookups from the given file. Returns an empty map if the file was written by another format or JaCoCo
+	 * version.
+	 */
+	/* package */
+	static Map<Long, ClassCoverageLookup> read(File file) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readInt() != MAGIC_NUMBER) {
+				throw new IOException("File " + file + " is not a probes cache file.");
+			}
+			if (input.readInt() != FORMAT_VERSION || !JaCoCo.VERSION.equals(input.readUTF())) {
+				return Collections.emptyMap();
+			}
+			int classCount = input.readInt();
+			Map<Long, ClassCoverageLookup> lookups = new HashMap<>(classCount * 4 / 3 + 1);
+			for (int i = 0; i < classCount; i++) {
+				long classId = input.readLong();
+				ClassCoverageLookup lookup = new ClassCoverageLookup(input.readUTF());
+				if (input.readBoolean()) {
+					lookup.setSourceFileName(input.readUTF());
+				}
+				int probeCount = readVarInt(input);
+				lookup.setTotalProbeCount(probeCount);
+				for (int probeId = 0; probeId < probeCount; probeId++) {
+					LineSet lines = readLines(input);
+					if (lines != null) {
+						lookup.addProbe(probeId, lines);
+					}
+				}
+				lookups.put(classId, lookup);
+			}
+			return lookups;
+		}
+	}
+
+	/**
+	 * Writes the given lookups to the given file. The file is first written to a temporary file and then moved to its
+	 * final location, so that concurrent readers never see a partially written cache.
+	 */
+	/* package */
+	static void write(File file, Map<Long, ClassCoverageLookup> lookups) throws IOException {
+		Path target = file.toPath().toAbsolutePath();
+		Files.createDirectories(target.getParent());
+		Path temporaryFile = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temporaryFile.toFile())))) {
+				output.writeInt(MAGIC_NUMBER);
+				output.writeInt(FORMAT_VERSION);
+				output.writeUTF(JaCoCo.VERSION);
+				output.writeInt(lookups.size());
+				for (Map.Entry<Long, ClassCoverageLookup> entry : lookups.entrySet()) {
+					writeClass(output, entry.getKey(), entry.getValue());
+				}
+			}
+			try {
+				Files.move(temporaryFile, target, StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryFile, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+	}
+
+	private static void writeClass(DataOutputStream output, long classId,
+								   ClassCoverageLookup lookup) throws IOException {
+		output.writeLong(classId);
+		output.writeUTF(lookup.getClassName());
+		String sourceFileName = lookup.getSourceFileName();
+		output.writeBoolean(sourceFileName != null);
+		if (sourceFileName != null) {
+			output.writeUTF(sourceFileName);
+		}
+		List<LineSet> probes = lookup.getProbes();
+		writeVarInt(output, probes.size());
+		for (LineSet lines : probes) {
+			writeLines(output, lines);
+		}
+	}
+
+	/**
+	 * Writes the lines of a single probe. The number of lines is written incremented by one, so that 0 can denote
+	 * probes without lines information (null).
+	 */
+	private static void writeLines(DataOutputStream output, LineSet lines) throws IOException {
+		if (lines == null) {
+			writeVarInt(output, NO_LINES_MARKER);
+			return;
+		}
+		writeVarInt(output, lines.size() + 1);
+		int previousLine = 0;
+		for (int line = lines.nextLine(0); line != -1; line = lines.nextLine(line + 1)) {
+			writeVarInt(output, line - previousLine);
+			previousLine = line;
+		}
+	}
+
+	private static LineSet readLines(DataInputStream input) throws IOException {
+		int lineCount = readVarInt(input);
+		if (lineCount == NO_LINES_MARKER) {
+			return null;
+		}
+		LineSet lines = new LineSet();
+		int line = 0;
+		for (int i = 1; i < lineCount; i++) {
+			line += readVarInt(input);
+			lines.add(line);
+		}
+		return lines;
+	}
+
+	/** Writes the given non-negative value with 7 bits per byte. */
+	private static void writeVarInt(DataOutputStream output, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			output.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+
+	/** Reads a value written by {@link #writeVarInt(DataOutputStream, int)}. */
+	private static int readVarInt(DataInputStream input) throws IOException {
+		int value = 0;
+		int shift = 0;
+		int currentByte;
+		do {
+			currentByte = input.readUnsignedByte();
+			value |= (currentByte & 0x7F) << shift;
+			shift += 7;
+		} while ((currentByte & 0x80) != 0);
+		return value;
+	}
+}
@@ -1,5 +1,8 @@
 package com.teamscale.report.testwise.model;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /** Holds a line range with start and end (both inclusive and 1-based). */
 public class LineRange {
 
@@ -15,6 +18,11 @@ public class LineRange {
 		this.end = end;
 	}
 
+	/** @see #start */
+	public int getStart() {
+		return start;
+	}
+
 	/** @see #end */
 	public int getEnd() {
 		return end;
@@ -37,6 +45,29 @@ public class LineRange {
 		}
 	}
 
+	/**
+	 * Parses ranges in the format of {@link #toReportString()} separated by commas, e.g. 1-5,7,9-11.
+	 *
+	 * @throws NumberFormatException if the string contains invalid line numbers.
+	 */
+	public static List<LineRange> parseReportString(String ranges) {
+		List<LineRange> result = new ArrayList<>();
+		if (ranges == null || ranges.trim().isEmpty()) {
+			return result;
+		}
+		for (String range : ranges.split(",")) {
+			int separatorIndex = range.indexOf('-');
+			if (separatorIndex < 0) {
+				int line = Integer.parseInt(range.trim());
+				result.add(new LineRange(line, line));
+			} else {
+				result.add(new LineRange(Integer.parseInt(range.substring(0, separatorIndex).trim()),
+						Integer.parseInt(range.substring(separatorIndex + 1).trim())));
+			}
+		}
+		return result;
+	}
+
 	@Override
 	public String toString() {
 		return toReportString();
@@ -1,17 +1,29 @@
 package com.teamscale.report.testwise.model;
 
+import com.teamscale.report.testwise.model.builder.CoverageDigest;
 import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-/** Container for coverage produced by multiple tests. */
+/**
+ * Container for coverage produced by multiple tests. Tests with identical coverage, e.g. parameterized tests, share a
+ * single copy of it.
+ */
 public class TestwiseCoverage {
 
 	/** A mapping from test ID to {@link TestCoverageBuilder}. */
 	private final Map<String, TestCoverageBuilder> tests = new HashMap<>();
 
+	/**
+	 * The tests for each distinct coverage. All tests with the same coverage share the coverage of the first one of
+	 * them.
+	 */
+	private final Map<CoverageDigest, List<TestCoverageBuilder>> testsByCoverage = new HashMap<>();
+
 	/**
 	 * Adds the {@link TestCoverageBuilder} to the map.
 	 * If there is already a test with the same ID the coverage is merged.
@@ -22,12 +34,35 @@ public class TestwiseCoverage {
 		}
 		if (tests.containsKey(coverage.getUniformPath())) {
 			TestCoverageBuilder testCoverage = tests.get(coverage.getUniformPath());
+			removeFromCoverageIndex(testCoverage);
 			testCoverage.addAll(coverage.getFiles());
+			addToCoverageIndex(testCoverage);
 		} else {
+			addToCoverageIndex(coverage);
 			tests.put(coverage.getUniformPath(), coverage);
 		}
 	}
 
+	/** Lets the test share the coverage of the other tests with identical coverage and adds it to the index. */
+	private void addToCoverageIndex(TestCoverageBuilder test) {
+		List<TestCoverageBuilder> testsWithSameCoverage = testsByCoverage.computeIfAbsent(test.getCoverageDigest(),
+				digest -> new ArrayList<>(1));
+		if (!testsWithSameCoverage.isEmpty()) {
+			test.shareCoverageOf(testsWithSameCoverage.get(0));
+		}
+		testsWithSameCoverage.add(test);
+	}
+
+	/** Removes the test from the index, so that the other tests with the same coverage can still be found. */
+	private void removeFromCoverageIndex(TestCoverageBuilder test) {
+		CoverageDigest digest = test.getCoverageDigest();
+		List<TestCoverageBuilder> testsWithSameCoverage = testsByCoverage.get(digest);
+		testsWithSameCoverage.remove(test);
+		if (testsWithSameCoverage.isEmpty()) {
+			testsByCoverage.remove(digest);
+		}
+	}
+
 	/**
 	 * Merges the given {@link TestwiseCoverage} with this one.
 	 */
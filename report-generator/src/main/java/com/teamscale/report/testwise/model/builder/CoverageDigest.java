@@ -0,0 +1,142 @@
+package com.teamscale.report.testwise.model.builder;
+
+import com.teamscale.report.testwise.model.FileCoverage;
+import com.teamscale.report.testwise.model.LineRange;
+import com.teamscale.report.testwise.model.PathCoverage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * SHA-256 hash of the coverage of a test, which identifies tests with identical coverage without keeping or comparing
+ * their coverage. Collisions are practically impossible, so equal digests are treated as equal coverage.
+ * <p>
+ * The digest is computed over the paths, file names and covered line ranges in the order in which they are reported.
+ * So the digest of a {@link TestCoverageBuilder} equals the digest of the {@link PathCoverage}s it builds.
+ */
+public final class CoverageDigest {
+
+	/** The hash value. */
+	private final byte[] hash;
+
+	/** Cached hash code derived from {@link #hash}. */
+	private final int hashCode;
+
+	private CoverageDigest(byte[] hash) {
+		this.hash = hash;
+		this.hashCode = Arrays.hashCode(hash);
+	}
+
+	/** Computes the digest of the coverage held by the given file builders, which must cover distinct files. */
+	/* package */
+	static CoverageDigest of(Collection<FileCoverageBuilder> fileCoverageBuilders) {
+		Hasher hasher = new Hasher();
+		List<FileCoverageBuilder> files = fileCoverageBuilders.stream()
+				.sorted(Comparator.comparing(FileCoverageBuilder::getPath)
+						.thenComparing(FileCoverageBuilder::getFileName))
+				.collect(Collectors.toList());
+		hasher.add((int) files.stream().map(FileCoverageBuilder::getPath).distinct().count());
+		int pathStart = 0;
+		while (pathStart < files.size()) {
+			String path = files.get(pathStart).getPath();
+			int pathEnd = pathStart;
+			while (pathEnd < files.size() && files.get(pathEnd).getPath().equals(path)) {
+				pathEnd++;
+			}
+			hasher.add(path);
+			hasher.add(pathEnd - pathStart);
+			for (FileCoverageBuilder file : files.subList(pathStart, pathEnd)) {
+				hasher.add(file.getFileName());
+				hasher.add(file.computeCompactifiedRanges());
+			}
+			pathStart = pathEnd;
+		}
+		return hasher.finish();
+	}
+
+	/**
+	 * Computes the digest of the given reported coverage.
+	 *
+	 * @throws NumberFormatException if the covered lines of a file are invalid.
+	 */
+	public static CoverageDigest of(List<PathCoverage> paths) {
+		Hasher hasher = new Hasher();
+		hasher.add(paths.size());
+		for (PathCoverage path : paths) {
+			hasher.add(path.getPath());
+			hasher.add(path.getFiles().size());
+			for (FileCoverage file : path.getFiles()) {
+				hasher.add(file.fileName);
+				hasher.add(LineRange.parseReportString(file.coveredLines));
+			}
+		}
+		return hasher.finish();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		return other instanceof CoverageDigest && Arrays.equals(hash, ((CoverageDigest) other).hash);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	/** Feeds the parts of the coverage to the message digest. */
+	private static class Hasher {
+
+		/** The message digest. */
+		private final MessageDigest messageDigest;
+
+		/** Buffer for converting integers to bytes. */
+		private final ByteBuffer intBuffer = ByteBuffer.allocate(Integer.BYTES);
+
+		private Hasher() {
+			try {
+				messageDigest = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+			}
+		}
+
+		private void add(int value) {
+			intBuffer.clear();
+			intBuffer.putInt(value);
+			messageDigest.update(intBuffer.array());
+		}
+
+		/** Adds the string with a length prefix, so that the concatenation of two strings cannot be ambiguous. */
+		private void add(String value) {
+			if (value == null) {
+				add(-1);
+				return;
+			}
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			add(bytes.length);
+			messageDigest.update(bytes);
+		}
+
+		private void add(List<LineRange> ranges) {
+			add(ranges.size());
+			for (LineRange range : ranges) {
+				add(range.getStart());
+				add(range.getEnd());
+			}
+		}
+
+		private CoverageDigest finish() {
+			return new CoverageDigest(messageDigest.digest());
+		}
+	}
+}
@@ -2,7 +2,7 @@ package com.teamscale.report.testwise.model.builder;
 
 import com.teamscale.report.testwise.model.FileCoverage;
 import com.teamscale.report.testwise.model.LineRange;
-import com.teamscale.report.util.SortedIntList;
+import com.teamscale.report.util.LineSet;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -11,31 +11,35 @@ import java.util.stream.Collectors;
 /** Holds coverage of a single file. */
 public class FileCoverageBuilder {
 
-	/** The file system path of the file not including the file itself. */
-	private final String path;
+	/** The covered file. */
+	private final SourceFile sourceFile;
 
-	/** The name of the file. */
-	private final String fileName;
-
-	/**
-	 * A list of line numbers that have been covered. Using a set here is too memory intensive.
-	 */
-	private final SortedIntList coveredLines = new SortedIntList();
+	/** The line numbers that have been covered. */
+	private final LineSet coveredLines = new LineSet();
 
 	/** Constructor. */
 	public FileCoverageBuilder(String path, String fileName) {
-		this.path = path;
-		this.fileName = fileName;
+		this(new SourceFile(path, fileName));
+	}
+
+	/** Constructor for a file obtained from a {@link SourceFileRegistry}. */
+	public FileCoverageBuilder(SourceFile sourceFile) {
+		this.sourceFile = sourceFile;
+	}
+
+	/** @see #sourceFile */
+	public SourceFile getSourceFile() {
+		return sourceFile;
 	}
 
-	/** @see #fileName */
+	/** Returns the name of the file. */
 	public String getFileName() {
-		return fileName;
+		return sourceFile.getFileName();
 	}
 
-	/** @see #path */
+	/** Returns the file system path of the file not including the file itself. */
 	public String getPath() {
-		return path;
+		return sourceFile.getPath();
 	}
 
 	/** Adds a line as covered. */
@@ -45,19 +49,17 @@ public class FileCoverageBuilder {
 
 	/** Adds a line range as covered. */
 	public void addLineRange(int start, int end) {
-		for (int i = start; i <= end; i++) {
-			coveredLines.add(i);
-		}
+		coveredLines.addRange(start, end);
 	}
 
 	/** Adds set of lines as covered. */
-	public void addLines(SortedIntList range) {
+	public void addLines(LineSet range) {
 		coveredLines.addAll(range);
 	}
 
 	/** Merges the list of ranges into the current list. */
 	public void merge(FileCoverageBuilder other) {
-		if (!other.fileName.equals(fileName) || !other.path.equals(path)) {
+		if (!other.sourceFile.equals(sourceFile)) {
 			throw new AssertionError("Cannot merge coverage of two different files! This is a bug!");
 		}
 		coveredLines.addAll(other.coveredLines);
@@ -67,45 +69,37 @@ public class FileCoverageBuilder {
 	 * Merges all neighboring line numbers to ranges. E.g. a list of [[1-5],[3-7],[8-10],[12-14]] becomes
 	 * [[1-10],[12-14]]
 	 */
-	public static List<LineRange> compactifyToRanges(SortedIntList lines) {
-		if (lines.size() == 0) {
-			return new ArrayList<>();
-		}
-
-		int firstLine = lines.get(0);
-		LineRange currentRange = new LineRange(firstLine, firstLine);
-
+	public static List<LineRange> compactifyToRanges(LineSet lines) {
 		List<LineRange> compactifiedRanges = new ArrayList<>();
-		compactifiedRanges.add(currentRange);
-
-		for (int i = 0; i < lines.size(); i++) {
-			int currentLine = lines.get(i);
-			if (currentRange.getEnd() == currentLine || currentRange.getEnd() == currentLine - 1) {
-				currentRange.setEnd(currentLine);
-			} else {
-				currentRange = new LineRange(currentLine, currentLine);
-				compactifiedRanges.add(currentRange);
-			}
+		int start = lines.nextLine(0);
+		while (start != -1) {
+			int end = lines.nextAbsentLine(start) - 1;
+			compactifiedRanges.add(new LineRange(start, end));
+			start = lines.nextLine(end + 1);
 		}
 		return compactifiedRanges;
 	}
 
+	/** Returns the covered lines merged to sorted ranges. */
+	public List<LineRange> computeCompactifiedRanges() {
+		return compactifyToRanges(coveredLines);
+	}
+
 	/**
 	 * Returns a compact string representation of the covered lines. Continuous line ranges are merged to ranges and
 	 * sorted. Individual ranges are separated by commas. E.g. 1-5,7,9-11.
 	 */
 	public String computeCompactifiedRangesAsString() {
-		List<LineRange> coveredRanges = compactifyToRanges(coveredLines);
-		return coveredRanges.stream().map(LineRange::toReportString).collect(Collectors.joining(","));
+		return computeCompactifiedRanges().stream().map(LineRange::toReportString).collect(Collectors.joining(","));
 	}
 
 	/** Returns true if there is no coverage for the file yet. */
 	public boolean isEmpty() {
-		return coveredLines.size() == 0;
+		return coveredLines.isEmpty();
 	}
 
 	/** Builds the {@link FileCoverage} object, which is serialized into the report. */
 	public FileCoverage build() {
-		return new FileCoverage(fileName, computeCompactifiedRangesAsString());
+		return new FileCoverage(getFileName(), computeCompactifiedRangesAsString());
 	}
 }
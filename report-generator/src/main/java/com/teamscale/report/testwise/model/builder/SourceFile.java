@@ -0,0 +1,59 @@
+package com.teamscale.report.testwise.model.builder;
+
+import java.util.Objects;
+
+/**
+ * A source file identified by its path and file name. Instances obtained from a {@link SourceFileRegistry} are shared
+ * by the coverage of all tests, so that the names are stored only once.
+ */
+public final class SourceFile {
+
+	/** The file system path of the file not including the file itself. */
+	private final String path;
+
+	/** The name of the file. */
+	private final String fileName;
+
+	/** Cached hash code. */
+	private final int hashCode;
+
+	/** Constructor. */
+	public SourceFile(String path, String fileName) {
+		this.path = path;
+		this.fileName = fileName;
+		this.hashCode = 31 * String.valueOf(path).hashCode() + String.valueOf(fileName).hashCode();
+	}
+
+	/** @see #path */
+	public String getPath() {
+		return path;
+	}
+
+	/** @see #fileName */
+	public String getFileName() {
+		return fileName;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof SourceFile)) {
+			return false;
+		}
+		SourceFile otherFile = (SourceFile) other;
+		return hashCode == otherFile.hashCode && Objects.equals(path, otherFile.path) &&
+				Objects.equals(fileName, otherFile.fileName);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public String toString() {
+		return path + "/" + fileName;
+	}
+}
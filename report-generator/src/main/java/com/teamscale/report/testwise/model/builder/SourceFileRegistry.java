@@ -0,0 +1,29 @@
+package com.teamscale.report.testwise.model.builder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out a single {@link SourceFile} per path and file name, so that the coverage of many tests references the same
+ * instances instead of storing the names again for every test. Strings for the report are only materialized when the
+ * coverage is built. The registry may be shared by multiple conversion threads and is thread-safe.
+ */
+public class SourceFileRegistry {
+
+	/** The registered paths, which are shared by all files in the same path. */
+	private final Map<String, String> paths = new HashMap<>();
+
+	/** The registered files. */
+	private final Map<SourceFile, SourceFile> files = new HashMap<>();
+
+	/** Returns the registered file with the given path and name and registers it if necessary. */
+	public synchronized SourceFile get(String path, String fileName) {
+		String registeredPath = paths.computeIfAbsent(path, key -> key);
+		SourceFile file = new SourceFile(registeredPath, fileName);
+		SourceFile registeredFile = files.putIfAbsent(file, file);
+		if (registeredFile != null) {
+			return registeredFile;
+		}
+		return file;
+	}
+}
@@ -2,6 +2,8 @@ package com.teamscale.report.testwise.model.builder;
 
 import com.teamscale.report.testwise.model.PathCoverage;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -15,8 +17,8 @@ public class TestCoverageBuilder {
 	/** The uniformPath of the test (see TEST_IMPACT_ANALYSIS_DOC.md for more information). */
 	private final String uniformPath;
 
-	/** Mapping from path names to all files on this path. */
-	private final Map<String, PathCoverageBuilder> pathCoverageList = new HashMap<>();
+	/** The coverage of the test, which may be shared with other tests that have identical coverage. */
+	private Coverage coverage = new Coverage();
 
 	/** Constructor. */
 	public TestCoverageBuilder(String uniformPath) {
@@ -28,10 +30,49 @@ public class TestCoverageBuilder {
 		return uniformPath;
 	}
 
-	/** Returns a collection of {@link PathCoverageBuilder}s associated with the test. */
+	/**
+	 * Returns a collection of {@link PathCoverageBuilder}s associated with the test. The file coverage is only grouped by
+	 * path here, so that the strings of the report are only created when they are needed. If the coverage is shared
+	 * with other tests, the paths are only built once for all of them.
+	 */
 	public List<PathCoverage> getPaths() {
-		return pathCoverageList.values().stream().sorted(Comparator.comparing(PathCoverageBuilder::getPath))
+		if (coverage.builtPaths != null) {
+			return coverage.builtPaths;
+		}
+		Map<String, PathCoverageBuilder> pathCoverageList = new HashMap<>();
+		for (FileCoverageBuilder fileCoverage : coverage.files.values()) {
+			pathCoverageList.computeIfAbsent(fileCoverage.getPath(), PathCoverageBuilder::new).add(fileCoverage);
+		}
+		List<PathCoverage> paths = pathCoverageList.values().stream()
+				.sorted(Comparator.comparing(PathCoverageBuilder::getPath))
 				.map(PathCoverageBuilder::build).collect(toList());
+		if (coverage.isShared()) {
+			coverage.builtPaths = Collections.unmodifiableList(paths);
+			return coverage.builtPaths;
+		}
+		return paths;
+	}
+
+	/** Returns the digest of the coverage, which is equal for all tests with identical coverage. */
+	public CoverageDigest getCoverageDigest() {
+		if (coverage.digest == null) {
+			coverage.digest = CoverageDigest.of(coverage.files.values());
+		}
+		return coverage.digest;
+	}
+
+	/**
+	 * Lets this test reference the coverage of the given test instead of its own, which must be identical. This allows
+	 * to store identical coverage of many tests, e.g. of parameterized tests, only once. The coverage is copied as soon
+	 * as one of the tests is modified.
+	 */
+	public void shareCoverageOf(TestCoverageBuilder other) {
+		if (coverage == other.coverage) {
+			return;
+		}
+		coverage.owners--;
+		other.coverage.owners++;
+		coverage = other.coverage;
 	}
 
 	/** Adds the {@link FileCoverageBuilder} to into the map, but filters out file coverage that is null or empty. */
@@ -40,9 +81,17 @@ public class TestCoverageBuilder {
 				|| fileCoverage.getFileName() == null || fileCoverage.getPath() == null) {
 			return;
 		}
-		PathCoverageBuilder pathCoverage = pathCoverageList
-				.computeIfAbsent(fileCoverage.getPath(), PathCoverageBuilder::new);
-		pathCoverage.add(fileCoverage);
+		if (coverage.isShared()) {
+			coverage.owners--;
+			coverage = coverage.copy();
+		}
+		coverage.builtPaths = null;
+		coverage.digest = null;
+		FileCoverageBuilder existingFileCoverage = coverage.files.putIfAbsent(fileCoverage.getSourceFile(),
+				fileCoverage);
+		if (existingFileCoverage != null) {
+			existingFileCoverage.merge(fileCoverage);
+		}
 	}
 
 	/** Adds the {@link FileCoverageBuilder}s into the map, but filters out empty ones. */
@@ -54,14 +103,43 @@ public class TestCoverageBuilder {
 
 	/** Returns all {@link FileCoverageBuilder}s stored for the test. */
 	public List<FileCoverageBuilder> getFiles() {
-		return pathCoverageList.values().stream()
-				.flatMap(path -> path.getFiles().stream())
-				.collect(toList());
+		return new ArrayList<>(coverage.files.values());
 	}
 
 	/** Returns true if there is no coverage for the test yet. */
 	public boolean isEmpty() {
-		return pathCoverageList.isEmpty();
+		return coverage.files.isEmpty();
 	}
 
+	/** Coverage of one or more tests. */
+	private static class Coverage {
+
+		/** Mapping from the covered files to their coverage. */
+		private final Map<SourceFile, FileCoverageBuilder> files = new HashMap<>();
+
+		/** The number of tests that reference the coverage. */
+		private int owners = 1;
+
+		/** The built paths, which are cached if the coverage is shared. */
+		private List<PathCoverage> builtPaths;
+
+		/** Cached digest of the coverage. */
+		private CoverageDigest digest;
+
+		/** Whether the coverage is referenced by multiple tests and must therefore be copied before modifying it. */
+		private boolean isShared() {
+			return owners > 1;
+		}
+
+		/** Returns a deep copy of the coverage, which is not shared. */
+		private Coverage copy() {
+			Coverage copy = new Coverage();
+			for (FileCoverageBuilder file : files.values()) {
+				FileCoverageBuilder fileCopy = new FileCoverageBuilder(file.getSourceFile());
+				fileCopy.merge(file);
+				copy.files.put(file.getSourceFile(), fileCopy);
+			}
+			return copy;
+		}
+	}
 }
@@ -43,11 +43,25 @@ public class TestInfoFactory {
 	 * test executions.
 	 */
 	public TestInfo createFor(TestCoverageBuilder testCoverageBuilder) {
+		return create(testCoverageBuilder, true);
+	}
+
+	/**
+	 * Same as {@link #createFor(TestCoverageBuilder)}, but does not build the coverage of the test, e.g. because
+	 * identical coverage has already been written.
+	 */
+	public TestInfo createWithoutCoverageFor(TestCoverageBuilder testCoverageBuilder) {
+		return create(testCoverageBuilder, false);
+	}
+
+	private TestInfo create(TestCoverageBuilder testCoverageBuilder, boolean includeCoverage) {
 		String resolvedUniformPath = resolveUniformPath(testCoverageBuilder.getUniformPath());
 		processedTestUniformPaths.add(resolvedUniformPath);
 
 		TestInfoBuilder container = new TestInfoBuilder(resolvedUniformPath);
-		container.setCoverage(testCoverageBuilder);
+		if (includeCoverage) {
+			container.setCoverage(testCoverageBuilder);
+		}
 		TestDetails testDetails = testDetailsMap.get(resolvedUniformPath);
 		if (testDetails == null) {
 			System.err.println("No test details found for " + resolvedUniformPath);
@@ -61,6 +75,14 @@ public class TestInfoFactory {
 		return container.build();
 	}
 
+	/**
+	 * Marks the test with the given uniform path as written, e.g. because it was read from another report, so that it
+	 * is not returned by {@link #createTestInfosWithoutCoverage()}.
+	 */
+	public void markAsProcessed(String uniformPath) {
+		processedTestUniformPaths.add(uniformPath);
+	}
+
 	/** Returns {@link TestInfo}s for all tests that have not been used yet in {@link #createFor(TestCoverageBuilder)}. */
 	public List<TestInfo> createTestInfosWithoutCoverage() {
 		ArrayList<TestInfo> results = new ArrayList<>();
@@ -86,9 +108,9 @@ public class TestInfoFactory {
 
 	/**
 	 * Strips parameterized test arguments when the full path given in the coverage file cannot be found in the test
-	 * details.
+	 * details. This is the uniform path of the {@link TestInfo} created for a test with the given uniform path.
 	 */
-	private String resolveUniformPath(String originalUniformPath) {
+	public String resolveUniformPath(String originalUniformPath) {
 		String uniformPath = originalUniformPath;
 		TestDetails testDetails = testDetailsMap.get(uniformPath);
 		if (testDetails == null) {
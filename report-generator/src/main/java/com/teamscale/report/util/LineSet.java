@@ -0,0 +1,215 @@
+package com.teamscale.report.util;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Compact set of non-negative line numbers, which is stored as a bitset of 64-bit words. Only the words between the
+ * smallest and the largest line are allocated, so a set of lines within a single method needs one or two words
+ * independent of where the method is located in the file. Merging two sets is a linear OR of their words.
+ */
+public class LineSet {
+
+	/** The number of bits by which a line number has to be shifted to get the index of its word. */
+	private static final int WORD_INDEX_SHIFT = 6;
+
+	/** The number of lines stored in a single word. */
+	private static final int LINES_PER_WORD = 1 << WORD_INDEX_SHIFT;
+
+	/** Words of an empty set. */
+	private static final long[] NO_WORDS = new long[0];
+
+	/**
+	 * The words of the bitset. Bit {@code i} of {@code words[j]} is set if line {@code (firstWordIndex + j) * 64 + i}
+	 * is contained in the set.
+	 */
+	private long[] words = NO_WORDS;
+
+	/** The absolute index of the first word in {@link #words}. */
+	private int firstWordIndex;
+
+	/** Creates an empty set. */
+	public LineSet() {
+		// nothing to do
+	}
+
+	private LineSet(int firstWordIndex, long[] words) {
+		this.firstWordIndex = firstWordIndex;
+		this.words = words;
+	}
+
+	/**
+	 * Creates a set from the given words, as returned by {@link #getFirstWordIndex()} and {@link #copyWordsTo(long[],
+	 * int)}. The array is used as storage of the set and must not be modified afterwards.
+	 */
+	public static LineSet ofWords(int firstWordIndex, long[] words) {
+		return new LineSet(firstWordIndex, words);
+	}
+
+	/** Adds the given line. */
+	public void add(int line) {
+		int wordIndex = wordIndex(line);
+		ensureCapacity(wordIndex, wordIndex);
+		words[wordIndex - firstWordIndex] |= 1L << line;
+	}
+
+	/** Adds all lines from start to end (both inclusive). */
+	public void addRange(int start, int end) {
+		if (start > end) {
+			return;
+		}
+		int startWordIndex = wordIndex(start);
+		int endWordIndex = wordIndex(end);
+		ensureCapacity(startWordIndex, endWordIndex);
+
+		long startMask = -1L << start;
+		long endMask = -1L >>> (LINES_PER_WORD - 1 - (end & (LINES_PER_WORD - 1)));
+		if (startWordIndex == endWordIndex) {
+			words[startWordIndex - firstWordIndex] |= startMask & endMask;
+			return;
+		}
+		words[startWordIndex - firstWordIndex] |= startMask;
+		for (int i = startWordIndex + 1; i < endWordIndex; i++) {
+			words[i - firstWordIndex] = -1L;
+		}
+		words[endWordIndex - firstWordIndex] |= endMask;
+	}
+
+	/** Adds all lines of the given set. */
+	public void addAll(LineSet other) {
+		if (other.words.length == 0) {
+			return;
+		}
+		ensureCapacity(other.firstWordIndex, other.firstWordIndex + other.words.length - 1);
+		int offset = other.firstWordIndex - firstWordIndex;
+		for (int i = 0; i < other.words.length; i++) {
+			words[offset + i] |= other.words[i];
+		}
+	}
+
+	/** Returns whether the given line is contained in the set. */
+	public boolean contains(int line) {
+		if (line < 0) {
+			return false;
+		}
+		int index = (line >> WORD_INDEX_SHIFT) - firstWordIndex;
+		return index >= 0 && index < words.length && (words[index] & (1L << line)) != 0;
+	}
+
+	/** Returns the smallest line in the set that is greater than or equal to the given line or -1 if there is none. */
+	public int nextLine(int fromLine) {
+		int index = Math.max(fromLine >> WORD_INDEX_SHIFT, firstWordIndex) - firstWordIndex;
+		if (index >= words.length) {
+			return -1;
+		}
+		long word = words[index];
+		if (fromLine >> WORD_INDEX_SHIFT == index + firstWordIndex) {
+			word &= -1L << fromLine;
+		}
+		while (word == 0) {
+			index++;
+			if (index == words.length) {
+				return -1;
+			}
+			word = words[index];
+		}
+		return (index + firstWordIndex) * LINES_PER_WORD + Long.numberOfTrailingZeros(word);
+	}
+
+	/** Returns the smallest line greater than or equal to the given line that is not contained in the set. */
+	public int nextAbsentLine(int fromLine) {
+		int index = (fromLine >> WORD_INDEX_SHIFT) - firstWordIndex;
+		if (index < 0 || index >= words.length) {
+			return fromLine;
+		}
+		long word = ~words[index] & (-1L << fromLine);
+		while (word == 0) {
+			index++;
+			if (index == words.length) {
+				return (index + firstWordIndex) * LINES_PER_WORD;
+			}
+			word = ~words[index];
+		}
+		return (index + firstWordIndex) * LINES_PER_WORD + Long.numberOfTrailingZeros(word);
+	}
+
+	/** Calls the given consumer for all lines in ascending order. */
+	public void forEach(IntConsumer consumer) {
+		for (int i = 0; i < words.length; i++) {
+			long word = words[i];
+			while (word != 0) {
+				consumer.accept((i + firstWordIndex) * LINES_PER_WORD + Long.numberOfTrailingZeros(word));
+				word &= word - 1;
+			}
+		}
+	}
+
+	/**
+	 * Returns the absolute index of the first allocated word. The word with index {@code i} stores the lines {@code i *
+	 * 64} to {@code i * 64 + 63}.
+	 */
+	public int getFirstWordIndex() {
+		return firstWordIndex;
+	}
+
+	/** Returns the number of allocated words. */
+	public int getWordCount() {
+		return words.length;
+	}
+
+	/**
+	 * Copies the allocated words to the given array starting at the given offset. Together with {@link
+	 * #getFirstWordIndex()} this allows callers to store many sets in a single flat array.
+	 */
+	public void copyWordsTo(long[] target, int offset) {
+		System.arraycopy(words, 0, target, offset, words.length);
+	}
+
+	/** Returns the number of lines in the set. */
+	public int size() {
+		int size = 0;
+		for (long word : words) {
+			size += Long.bitCount(word);
+		}
+		return size;
+	}
+
+	/** Returns whether the set is empty. */
+	public boolean isEmpty() {
+		for (long word : words) {
+			if (word != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Returns the index of the word that stores the given line. */
+	private static int wordIndex(int line) {
+		if (line < 0) {
+			throw new IllegalArgumentException("Line numbers must not be negative: " + line);
+		}
+		return line >> WORD_INDEX_SHIFT;
+	}
+
+	/**
+	 * Ensures that the words with the given absolute indices are allocated. The array is grown to exactly the needed
+	 * size, as most sets are built once and never modified afterwards.
+	 */
+	private void ensureCapacity(int fromWordIndex, int toWordIndex) {
+		if (words.length == 0) {
+			words = new long[toWordIndex - fromWordIndex + 1];
+			firstWordIndex = fromWordIndex;
+			return;
+		}
+		int lastWordIndex = firstWordIndex + words.length - 1;
+		if (fromWordIndex >= firstWordIndex && toWordIndex <= lastWordIndex) {
+			return;
+		}
+		int newFirstWordIndex = Math.min(firstWordIndex, fromWordIndex);
+		int newLastWordIndex = Math.max(lastWordIndex, toWordIndex);
+		long[] newWords = new long[newLastWordIndex - newFirstWordIndex + 1];
+		System.arraycopy(words, 0, newWords, firstWordIndex - newFirstWordIndex, words.length);
+		words = newWords;
+		firstWordIndex = newFirstWordIndex;
+	}
+}
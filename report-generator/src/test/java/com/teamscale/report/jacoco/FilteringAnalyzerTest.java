@@ -0,0 +1,108 @@
+package com.teamscale.report.jacoco;
+
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import com.teamscale.report.util.ILogger;
+import com.teamscale.test.TestDataBase;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/** Tests the analysis of archives in the {@link FilteringAnalyzer}. */
+class FilteringAnalyzerTest extends TestDataBase {
+
+	@TempDir
+	File tempDir;
+
+	/** Excluded class files must not be read, otherwise the invalid class file would fail the analysis. */
+	@Test
+	void archiveOnlyAnalyzesIncludedClassFiles() throws IOException {
+		byte[] testClass = Files.readAllBytes(useTestFile("empty-report-handling/TestClass.class").toPath());
+		Map<String, byte[]> nestedJarEntries = new LinkedHashMap<>();
+		nestedJarEntries.put("TestClass.class", testClass);
+		Map<String, byte[]> jarEntries = new LinkedHashMap<>();
+		jarEntries.put("META-INF/MANIFEST.MF", "Manifest-Version: 1.0".getBytes());
+		jarEntries.put("TestClass.class", testClass);
+		jarEntries.put("broken/Broken.class", new byte[]{1, 2, 3});
+		jarEntries.put("lib/nested.jar", createZip(nestedJarEntries));
+		File jar = new File(tempDir, "app.jar");
+		Files.write(jar.toPath(), createZip(jarEntries));
+
+		List<String> analyzedClasses = new ArrayList<>();
+		FilteringAnalyzer analyzer = new FilteringAnalyzer(new ExecutionDataStore(),
+				coverage -> analyzedClasses.add(coverage.getName()),
+				new ClasspathWildcardIncludeFilter("TestClass", null), mock(ILogger.class));
+
+		assertThat(analyzer.analyzeAll(jar)).isEqualTo(3);
+		assertThat(analyzedClasses).containsExactly("TestClass", "TestClass");
+	}
+
+	/** Nested archives must be found by their content even if their name does not look like an archive. */
+	@Test
+	void archiveAnalyzesNestedArchivesByContent() throws IOException {
+		byte[] testClass = Files.readAllBytes(useTestFile("empty-report-handling/TestClass.class").toPath());
+		Map<String, byte[]> nestedZipEntries = new LinkedHashMap<>();
+		nestedZipEntries.put("TestClass.class", testClass);
+		ByteArrayOutputStream gzippedClass = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(gzippedClass)) {
+			gzip.write(testClass);
+		}
+		Map<String, byte[]> jarEntries = new LinkedHashMap<>();
+		jarEntries.put("lib/classes.bundle", createZip(nestedZipEntries));
+		jarEntries.put("lib/TestClass.gz", gzippedClass.toByteArray());
+		File jar = new File(tempDir, "app.jar");
+		Files.write(jar.toPath(), createZip(jarEntries));
+
+		List<String> analyzedClasses = new ArrayList<>();
+		FilteringAnalyzer analyzer = new FilteringAnalyzer(new ExecutionDataStore(),
+				coverage -> analyzedClasses.add(coverage.getName()),
+				new ClasspathWildcardIncludeFilter(null, null), mock(ILogger.class));
+
+		assertThat(analyzer.analyzeAll(jar)).isEqualTo(2);
+		assertThat(analyzedClasses).containsExactly("TestClass", "TestClass");
+	}
+
+	/** Classes without hits must not be analyzed if they are skipped. */
+	@Test
+	void skipsClassesWithoutHits() throws IOException {
+		File classFile = useTestFile("ignore-uncovered-classes/TestClass.class");
+		ExecutionDataStore store = new ExecutionDataStore();
+		store.put(new ExecutionData(CRC64.classId(Files.readAllBytes(classFile.toPath())), "TestClass",
+				new boolean[]{true}));
+
+		List<String> analyzedClasses = new ArrayList<>();
+		FilteringAnalyzer analyzer = new FilteringAnalyzer(store, coverage -> analyzedClasses.add(coverage.getName()),
+				new ClasspathWildcardIncludeFilter(null, null), true, mock(ILogger.class));
+		analyzer.analyzeAll(classFile.getParentFile());
+
+		assertThat(analyzedClasses).containsExactly("TestClass");
+	}
+
+	private static byte[] createZip(Map<String, byte[]> entries) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (ZipOutputStream zip = new ZipOutputStream(output)) {
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				zip.putNextEntry(new ZipEntry(entry.getKey()));
+				zip.write(entry.getValue());
+				zip.closeEntry();
+			}
+		}
+		return output.toByteArray();
+	}
+}
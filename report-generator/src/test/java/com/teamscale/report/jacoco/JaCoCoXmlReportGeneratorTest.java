@@ -10,22 +10,32 @@ import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.SessionInfo;
 import org.jacoco.core.internal.data.CRC64;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 /** Tests report generation with and without duplicate classes. */
 public class JaCoCoXmlReportGeneratorTest extends TestDataBase {
 
+	@TempDir
+	File tempDir;
+
 	/** Ensures that the normal case (no duplicated classes) runs without exceptions. */
 	@Test
 	void testNormalCaseThrowsNoException() throws Exception {
@@ -126,6 +136,74 @@ public class JaCoCoXmlReportGeneratorTest extends TestDataBase {
 		assertThat(xmlString).contains("TestClassTwo");
 	}
 
+	/** Ensures that repeated conversions with a cached class structure yield the same report as without cache. */
+	@Test
+	void testCachedClassStructureYieldsSameReport() throws Exception {
+		String testFolderName = "ignore-uncovered-classes";
+		long classId = calculateClassId(testFolderName, "TestClass.class");
+		File classFileFolder = useTestFile(testFolderName);
+		ClasspathWildcardIncludeFilter filter = new ClasspathWildcardIncludeFilter("*", null);
+
+		String expectedXml = convertToString(new JaCoCoXmlReportGenerator(Collections.singletonList(classFileFolder),
+				filter, EDuplicateClassFileBehavior.FAIL, false, mock(ILogger.class)), createDummyDump(classId));
+		JaCoCoXmlReportGenerator cachingGenerator = new JaCoCoXmlReportGenerator(
+				Collections.singletonList(classFileFolder), filter, EDuplicateClassFileBehavior.FAIL, false, true,
+				mock(ILogger.class));
+
+		assertThat(convertToString(cachingGenerator, createDummyDump(classId))).isEqualTo(expectedXml);
+		assertThat(convertToString(cachingGenerator, createDummyDump(classId))).isEqualTo(expectedXml);
+	}
+
+	/**
+	 * Ensures that classes in jars nested in a war are analyzed from the cached class structure without falling back to
+	 * analyzing all class files.
+	 */
+	@Test
+	void testCachedClassStructureReadsClassesFromNestedArchives() throws Exception {
+		String testFolderName = "ignore-uncovered-classes";
+		File classFile = useTestFile(testFolderName + File.separator + "TestClass.class");
+		long classId = calculateClassId(testFolderName, "TestClass.class");
+		File war = createWarWithNestedJar(classFile);
+		ClasspathWildcardIncludeFilter filter = new ClasspathWildcardIncludeFilter("*", null);
+		ILogger logger = mock(ILogger.class);
+
+		String expectedXml = convertToString(new JaCoCoXmlReportGenerator(Collections.singletonList(war), filter,
+				EDuplicateClassFileBehavior.FAIL, false, mock(ILogger.class)), createDummyDump(classId));
+		JaCoCoXmlReportGenerator cachingGenerator = new JaCoCoXmlReportGenerator(Collections.singletonList(war),
+				filter, EDuplicateClassFileBehavior.FAIL, false, true, logger);
+
+		assertThat(convertToString(cachingGenerator, createDummyDump(classId))).isEqualTo(expectedXml);
+		assertThat(convertToString(cachingGenerator, createDummyDump(classId))).isEqualTo(expectedXml);
+		verify(logger, never()).debug(contains("Falling back"));
+	}
+
+	/** Creates a war file whose WEB-INF/lib/app.jar contains the given class file. */
+	private File createWarWithNestedJar(File classFile) throws IOException {
+		ByteArrayOutputStream jar = new ByteArrayOutputStream();
+		try (ZipOutputStream jarStream = new ZipOutputStream(jar)) {
+			jarStream.putNextEntry(new ZipEntry("com/example/" + classFile.getName()));
+			jarStream.write(Files.readAllBytes(classFile.toPath()));
+			jarStream.closeEntry();
+		}
+		File war = new File(tempDir, "app.war");
+		try (ZipOutputStream warStream = new ZipOutputStream(new FileOutputStream(war))) {
+			warStream.putNextEntry(new ZipEntry("WEB-INF/lib/app.jar"));
+			warStream.write(jar.toByteArray());
+			warStream.closeEntry();
+		}
+		return war;
+	}
+
+	private static String convertToString(JaCoCoXmlReportGenerator generator,
+										  Dump dump) throws IOException, EmptyReportException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		CoverageFile coverageFile = generator.convert(dump,
+				Paths.get("test-coverage-" + System.nanoTime() + ".xml").toFile());
+		coverageFile.copy(stream);
+		coverageFile.delete();
+		return stream.toString(StandardCharsets.UTF_8.name());
+	}
+
 	/**
 	 * Creates a dummy dump with the specified class ID. The class ID can currently be calculated with {@link
 	 * org.jacoco.core.internal.data.CRC64#classId(byte[])}. This might change in the future, as it's considered an
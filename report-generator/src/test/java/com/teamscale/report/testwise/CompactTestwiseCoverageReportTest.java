@@ -0,0 +1,118 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.client.JsonUtils;
+import com.teamscale.report.ReportUtils;
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.FileCoverage;
+import com.teamscale.report.testwise.model.PathCoverage;
+import com.teamscale.report.testwise.model.TestInfo;
+import com.teamscale.report.testwise.model.TestwiseCoverageReport;
+import com.teamscale.report.testwise.model.factory.TestInfoFactory;
+import org.conqat.lib.commons.filesystem.FileSystemUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for the {@link CompactTestwiseCoverageReportWriter} and {@link CompactTestwiseCoverageReportReader}. */
+public class CompactTestwiseCoverageReportTest {
+
+	/** A JSON testwise coverage report generated from real coverage. */
+	private static final File JSON_REPORT = new File(
+			"test-data/com.teamscale.report.testwise.jacoco/jacoco/cqddl/report.json.expected");
+
+	@Test
+	void roundTripYieldsSameJsonReport(@TempDir File tempDir) throws Exception {
+		String expected = FileSystemUtils.readFileUTF8(JSON_REPORT);
+		TestwiseCoverageReport report = JsonUtils.deserialize(expected, TestwiseCoverageReport.class);
+
+		for (boolean compress : new boolean[]{false, true}) {
+			File compactReport = new File(tempDir, "report-" + compress + ".tcov");
+			try (CompactTestwiseCoverageReportWriter writer = new CompactTestwiseCoverageReportWriter(
+					createEmptyTestInfoFactory(), compactReport, compress)) {
+				for (TestInfo testInfo : report.tests) {
+					writer.write(testInfo);
+				}
+			}
+			assertThat(compactReport.length()).isLessThan(JSON_REPORT.length() / 3);
+
+			TestwiseCoverageReport readReport = readCompactReport(compactReport, report.partial);
+			JSONAssert.assertEquals(expected, ReportUtils.getTestwiseCoverageReportAsString(readReport),
+					JSONCompareMode.STRICT);
+		}
+	}
+
+	@Test
+	void preservesOptionalFieldsAndUnsortedRanges(@TempDir File tempDir) throws Exception {
+		TestInfo testInfo = new TestInfo("test/with/message", null, null, null, ETestExecutionResult.FAILURE,
+				"java.lang.AssertionError: \u00e4\u00f6\u00fc");
+		testInfo.paths.add(new PathCoverage("", Arrays.asList(new FileCoverage("Default.java", "100-200,7,3-4"),
+				new FileCoverage("Empty.java", ""))));
+		TestInfo testWithoutResult = new TestInfo("test/without/result", "source", "content", 1.5, null, null);
+
+		File compactReport = new File(tempDir, "report.tcov");
+		try (CompactTestwiseCoverageReportWriter writer = new CompactTestwiseCoverageReportWriter(
+				createEmptyTestInfoFactory(), compactReport, true)) {
+			writer.write(testInfo);
+			writer.write(testWithoutResult);
+		}
+
+		TestwiseCoverageReport expected = new TestwiseCoverageReport(false);
+		expected.tests.add(testInfo);
+		expected.tests.add(testWithoutResult);
+		JSONAssert.assertEquals(ReportUtils.getTestwiseCoverageReportAsString(expected),
+				ReportUtils.getTestwiseCoverageReportAsString(readCompactReport(compactReport, false)),
+				JSONCompareMode.STRICT);
+	}
+
+	@Test
+	void identicalCoverageIsWrittenOnce(@TempDir File tempDir) throws Exception {
+		TestwiseCoverageReport report = new TestwiseCoverageReport(false);
+		for (int i = 0; i < 100; i++) {
+			TestInfo testInfo = new TestInfo("test[" + i + "]", null, null, null, ETestExecutionResult.PASSED, null);
+			testInfo.paths.add(new PathCoverage("com/example", Collections.singletonList(
+					new FileCoverage("Example.java", "1-20,25,30-1000"))));
+			report.tests.add(testInfo);
+		}
+
+		File uniqueCoverageReport = new File(tempDir, "unique.tcov");
+		try (CompactTestwiseCoverageReportWriter writer = new CompactTestwiseCoverageReportWriter(
+				createEmptyTestInfoFactory(), uniqueCoverageReport, false)) {
+			writer.write(report.tests.get(0));
+		}
+		File compactReport = new File(tempDir, "report.tcov");
+		try (CompactTestwiseCoverageReportWriter writer = new CompactTestwiseCoverageReportWriter(
+				createEmptyTestInfoFactory(), compactReport, false)) {
+			for (TestInfo testInfo : report.tests) {
+				writer.write(testInfo);
+			}
+		}
+
+		// Each further test only adds its name, result and coverage reference
+		assertThat(compactReport.length() - uniqueCoverageReport.length()).isLessThan(99 * 20);
+		JSONAssert.assertEquals(ReportUtils.getTestwiseCoverageReportAsString(report),
+				ReportUtils.getTestwiseCoverageReportAsString(readCompactReport(compactReport, false)),
+				JSONCompareMode.STRICT);
+	}
+
+	private static TestInfoFactory createEmptyTestInfoFactory() {
+		return new TestInfoFactory(Collections.emptyList(), Collections.emptyList());
+	}
+
+	private static TestwiseCoverageReport readCompactReport(File compactReport, boolean partial) throws IOException {
+		TestwiseCoverageReport report = new TestwiseCoverageReport(partial);
+		try (CompactTestwiseCoverageReportReader reader = new CompactTestwiseCoverageReportReader(compactReport)) {
+			for (TestInfo testInfo = reader.read(); testInfo != null; testInfo = reader.read()) {
+				report.tests.add(testInfo);
+			}
+		}
+		return report;
+	}
+}
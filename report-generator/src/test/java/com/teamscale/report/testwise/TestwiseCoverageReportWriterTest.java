@@ -0,0 +1,100 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.client.JsonUtils;
+import com.teamscale.report.testwise.model.TestInfo;
+import com.teamscale.report.testwise.model.TestwiseCoverageReport;
+import com.teamscale.report.testwise.model.factory.TestInfoFactory;
+import org.conqat.lib.commons.filesystem.FileSystemUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for the {@link TestwiseCoverageReportWriter}. */
+public class TestwiseCoverageReportWriterTest {
+
+	/** A JSON testwise coverage report generated from real coverage. */
+	private static final File JSON_REPORT = new File(
+			"test-data/com.teamscale.report.testwise.jacoco/jacoco/cqddl/report.json.expected");
+
+	/** How often the tests of {@link #JSON_REPORT} are repeated to get enough split files. */
+	private static final int REPETITIONS = 5;
+
+	/** After how many tests the reports are split. */
+	private static final int SPLIT_AFTER = 3;
+
+	@Test
+	void concurrentlyWrittenFilesEqualSequentiallyWrittenFiles(@TempDir File tempDir) throws Exception {
+		TestwiseCoverageReport report = JsonUtils.deserialize(FileSystemUtils.readFileUTF8(JSON_REPORT),
+				TestwiseCoverageReport.class);
+		File sequentialDir = new File(tempDir, "sequential");
+		File concurrentDir = new File(tempDir, "concurrent");
+		File compressedDir = new File(tempDir, "compressed");
+		writeReport(report, sequentialDir, 1, false);
+		writeReport(report, concurrentDir, 4, false);
+		writeReport(report, compressedDir, 4, true);
+
+		int fileCount = (report.tests.size() * REPETITIONS + SPLIT_AFTER - 1) / SPLIT_AFTER;
+		assertThat(sequentialDir.list()).hasSize(fileCount);
+		for (int i = 1; i <= fileCount; i++) {
+			byte[] expected = Files.readAllBytes(new File(sequentialDir, "report-" + i + ".json").toPath());
+			assertThat(Files.readAllBytes(new File(concurrentDir, "report-" + i + ".json").toPath()))
+					.isEqualTo(expected);
+			assertThat(decompress(new File(compressedDir, "report-" + i + ".json.gz"))).isEqualTo(expected);
+		}
+		assertThat(concurrentDir.list()).hasSize(fileCount);
+		assertThat(compressedDir.list()).hasSize(fileCount);
+	}
+
+	@Test
+	void writesPartialFlagAndReturnsReportFiles(@TempDir File tempDir) throws Exception {
+		TestwiseCoverageReportWriter writer = new TestwiseCoverageReportWriter(
+				new TestInfoFactory(Collections.emptyList(), Collections.emptyList()),
+				new File(tempDir, "report.json"), 1, 1, false, true, false);
+		try (TestwiseCoverageReportWriter ignored = writer) {
+			writer.write(new TestInfo("test1", null, null, null, null, null));
+			writer.write(new TestInfo("test2", null, null, null, null, null));
+		}
+
+		assertThat(writer.getReportFiles()).containsExactly(new File(tempDir, "report-1.json"),
+				new File(tempDir, "report-2.json"));
+		assertThat(FileSystemUtils.readFileUTF8(writer.getReportFiles().get(1)))
+				.isEqualTo("{\"partial\":true,\"tests\":[{\"uniformPath\":\"test2\",\"paths\":[]}]}");
+	}
+
+	private static void writeReport(TestwiseCoverageReport report, File directory, int writerThreads,
+									boolean compress) throws IOException {
+		assertThat(directory.mkdir()).isTrue();
+		try (TestwiseCoverageReportWriter writer = new TestwiseCoverageReportWriter(
+				new TestInfoFactory(Collections.emptyList(), Collections.emptyList()),
+				new File(directory, "report.json"), SPLIT_AFTER, writerThreads, compress)) {
+			for (int i = 0; i < REPETITIONS; i++) {
+				for (TestInfo testInfo : report.tests) {
+					TestInfo repeatedTest = new TestInfo(testInfo.uniformPath + "[" + i + "]", testInfo.sourcePath,
+							testInfo.content, testInfo.duration, testInfo.result, testInfo.message);
+					repeatedTest.paths.addAll(testInfo.paths);
+					writer.write(repeatedTest);
+				}
+			}
+		}
+	}
+
+	private static byte[] decompress(File file) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (InputStream input = new GZIPInputStream(Files.newInputStream(file.toPath()))) {
+			byte[] buffer = new byte[8192];
+			for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+				output.write(buffer, 0, read);
+			}
+		}
+		return output.toByteArray();
+	}
+}
@@ -14,13 +14,18 @@ import com.teamscale.report.util.ILogger;
 import com.teamscale.test.TestDataBase;
 import org.conqat.lib.commons.filesystem.FileSystemUtils;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.skyscreamer.jsonassert.JSONAssert;
 import org.skyscreamer.jsonassert.JSONCompareMode;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 
 /** Tests for the {@link JaCoCoTestwiseReportGenerator} class. */
@@ -47,12 +52,106 @@ public class JaCoCoTestwiseReportGeneratorTest extends TestDataBase {
 		JSONAssert.assertEquals(expected, report, JSONCompareMode.STRICT);
 	}
 
+	@Test
+	void reportGenerationWithPersistedProbesCacheYieldsSameReport(@TempDir File tempDir) throws Exception {
+		File probesCacheFile = new File(tempDir, "probes.cache");
+		String expected = FileSystemUtils.readFileUTF8(useTestFile("jacoco/cqddl/report.json.expected"));
+
+		String reportWithEmptyCache = runReportGenerator("jacoco/cqddl/classes.zip", "jacoco/cqddl/coverage.exec",
+				probesCacheFile, 1);
+		assertThat(probesCacheFile).exists();
+		long cacheFileModificationTime = probesCacheFile.lastModified();
+		String reportWithFilledCache = runReportGenerator("jacoco/cqddl/classes.zip", "jacoco/cqddl/coverage.exec",
+				probesCacheFile, 1);
+
+		JSONAssert.assertEquals(expected, reportWithEmptyCache, JSONCompareMode.STRICT);
+		JSONAssert.assertEquals(expected, reportWithFilledCache, JSONCompareMode.STRICT);
+		assertThat(probesCacheFile.lastModified()).isEqualTo(cacheFileModificationTime);
+	}
+
+	@Test
+	void parallelClassFileAnalysisYieldsSameReport() throws Exception {
+		String report = runReportGenerator("jacoco/cqddl/classes.zip", "jacoco/cqddl/coverage.exec", null, 4);
+		String expected = FileSystemUtils.readFileUTF8(useTestFile("jacoco/cqddl/report.json.expected"));
+		JSONAssert.assertEquals(expected, report, JSONCompareMode.STRICT);
+	}
+
+	@Test
+	void parallelSessionConversionYieldsSameReport() throws Exception {
+		File classFileFolder = useTestFile("jacoco/cqddl/classes.zip");
+		File execFile = useTestFile("jacoco/cqddl/coverage.exec");
+		JaCoCoTestwiseReportGenerator generator = new JaCoCoTestwiseReportGenerator(
+				Collections.singletonList(classFileFolder), new ClasspathWildcardIncludeFilter(null, null),
+				EDuplicateClassFileBehavior.IGNORE, mock(ILogger.class));
+		String expected = FileSystemUtils.readFileUTF8(useTestFile("jacoco/cqddl/report.json.expected"));
+
+		List<TestCoverageBuilder> sequentialTests = new ArrayList<>();
+		generator.convertAndConsume(execFile, sequentialTests::add);
+		List<TestCoverageBuilder> orderedTests = new ArrayList<>();
+		generator.convertAndConsume(execFile, orderedTests::add, 4, true);
+		TestwiseCoverage unorderedCoverage = new TestwiseCoverage();
+		generator.convertAndConsume(execFile, unorderedCoverage::add, 4, false);
+
+		assertThat(orderedTests).extracting(TestCoverageBuilder::getUniformPath)
+				.containsExactlyElementsOf(sequentialTests.stream().map(TestCoverageBuilder::getUniformPath)
+						.collect(Collectors.toList()));
+		JSONAssert.assertEquals(expected, ReportUtils.getTestwiseCoverageReportAsString(
+				generateDummyReportFrom(unorderedCoverage)), JSONCompareMode.STRICT);
+	}
+
+	@Test
+	void indexedSessionsAreConvertedSelectively(@TempDir File tempDir) throws Exception {
+		File execFile = new File(tempDir, "coverage.exec");
+		Files.copy(useTestFile("jacoco/cqddl/coverage.exec").toPath(), execFile.toPath());
+		List<String> sessionIds = writeSessionIndex(execFile);
+		JaCoCoTestwiseReportGenerator generator = new JaCoCoTestwiseReportGenerator(
+				Collections.singletonList(useTestFile("jacoco/cqddl/classes.zip")),
+				new ClasspathWildcardIncludeFilter(null, null), EDuplicateClassFileBehavior.IGNORE,
+				mock(ILogger.class));
+		String expected = FileSystemUtils.readFileUTF8(useTestFile("jacoco/cqddl/report.json.expected"));
+
+		TestwiseCoverage parallelCoverage = new TestwiseCoverage();
+		generator.convertAndConsume(execFile, parallelCoverage::add, 4, true);
+		JSONAssert.assertEquals(expected, ReportUtils.getTestwiseCoverageReportAsString(
+				generateDummyReportFrom(parallelCoverage)), JSONCompareMode.STRICT);
+
+		// Sessions with empty IDs contain the coverage between tests
+		List<String> testSessionIds = sessionIds.stream().filter(id -> !id.isEmpty()).collect(Collectors.toList());
+		String selectedSessionId = testSessionIds.get(testSessionIds.size() / 2);
+		for (int threads : new int[]{1, 4}) {
+			List<TestCoverageBuilder> tests = new ArrayList<>();
+			generator.convertAndConsume(execFile, selectedSessionId::equals, tests::add, threads, true);
+			assertThat(tests).extracting(TestCoverageBuilder::getUniformPath).containsExactly(selectedSessionId);
+		}
+	}
+
+	/** Writes an {@link ExecSessionIndex} with one entry per session and returns the session IDs. */
+	private static List<String> writeSessionIndex(File execFile) throws Exception {
+		List<String> sessionIds = new ArrayList<>();
+		try (MappedExecutionDataReader reader = new MappedExecutionDataReader(execFile)) {
+			List<Long> sessionOffsets = reader.indexSessions();
+			for (int i = 0; i < sessionOffsets.size(); i++) {
+				long offset = sessionOffsets.get(i);
+				long endOffset = i + 1 < sessionOffsets.size() ? sessionOffsets.get(i + 1) : reader.getFileSize();
+				String sessionId = reader.readSession(offset, endOffset).info.getId();
+				ExecSessionIndex.append(execFile, sessionId, offset, endOffset - offset);
+				sessionIds.add(sessionId);
+			}
+		}
+		return sessionIds;
+	}
+
 	private String runReportGenerator(String testDataFolder, String execFileName) throws Exception {
+		return runReportGenerator(testDataFolder, execFileName, null, 1);
+	}
+
+	private String runReportGenerator(String testDataFolder, String execFileName, File probesCacheFile,
+									  int analysisThreads) throws Exception {
 		File classFileFolder = useTestFile(testDataFolder);
 		ClasspathWildcardIncludeFilter includeFilter = new ClasspathWildcardIncludeFilter(null, null);
 		TestwiseCoverage testwiseCoverage = new JaCoCoTestwiseReportGenerator(
 				Collections.singletonList(classFileFolder),
-				includeFilter, EDuplicateClassFileBehavior.IGNORE,
+				includeFilter, EDuplicateClassFileBehavior.IGNORE, probesCacheFile, analysisThreads,
 				mock(ILogger.class)).convert(useTestFile(execFileName));
 		return ReportUtils.getTestwiseCoverageReportAsString(generateDummyReportFrom(testwiseCoverage));
 	}
@@ -0,0 +1,103 @@
+package com.teamscale.report.testwise.jacoco;
+
+import com.teamscale.report.jacoco.dump.Dump;
+import com.teamscale.test.TestDataBase;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for the {@link MappedExecutionDataReader} class. */
+public class MappedExecutionDataReaderTest extends TestDataBase {
+
+	@Test
+	void readsSameSessionsAsJaCoCo() throws Exception {
+		File execFile = useTestFile("jacoco/cqddl/coverage.exec");
+		List<String> expected = readWithJaCoCo(execFile);
+
+		// A tiny window forces remapping within almost every block
+		for (boolean memoryMapped : new boolean[]{true, false}) {
+			for (int windowSize : new int[]{1, 64, 1 << 20}) {
+				List<String> sessions = new ArrayList<>();
+				try (MappedExecutionDataReader reader = new MappedExecutionDataReader(execFile, new ProbeArrayPool(),
+						memoryMapped, windowSize)) {
+					reader.read(reader.releasingAfter(dump -> sessions.add(describe(dump))));
+				}
+				assertThat(sessions).containsExactlyElementsOf(expected);
+			}
+		}
+	}
+
+	@Test
+	void readsFromIndexedSessionOffsets() throws Exception {
+		File execFile = useTestFile("jacoco/cqddl/coverage.exec");
+		List<String> expected = readWithJaCoCo(execFile);
+
+		try (MappedExecutionDataReader reader = new MappedExecutionDataReader(execFile)) {
+			List<Long> sessionOffsets = reader.indexSessions();
+			assertThat(sessionOffsets).hasSameSizeAs(expected);
+
+			int middle = sessionOffsets.size() / 2;
+			List<String> sessions = new ArrayList<>();
+			reader.readFrom(sessionOffsets.get(middle), dump -> sessions.add(describe(dump)));
+			assertThat(sessions).containsExactlyElementsOf(expected.subList(middle, expected.size()));
+		}
+	}
+
+	@Test
+	void skipsSessionsNotMatchingTheFilter() throws Exception {
+		File execFile = useTestFile("jacoco/cqddl/coverage.exec");
+		List<String> expected = readWithJaCoCo(execFile).stream()
+				.filter(session -> session.startsWith("[engine:")).collect(Collectors.toList());
+
+		List<String> sessions = new ArrayList<>();
+		try (MappedExecutionDataReader reader = new MappedExecutionDataReader(execFile)) {
+			reader.setSessionIdFilter(sessionId -> !sessionId.isEmpty());
+			reader.read(dump -> sessions.add(describe(dump)));
+		}
+		assertThat(sessions).isNotEmpty().containsExactlyElementsOf(expected);
+	}
+
+	private static List<String> readWithJaCoCo(File execFile) throws IOException {
+		List<String> sessions = new ArrayList<>();
+		List<SessionInfo> sessionInfos = new ArrayList<>();
+		List<ExecutionDataStore> stores = new ArrayList<>();
+		try (InputStream input = new BufferedInputStream(new FileInputStream(execFile))) {
+			ExecutionDataReader reader = new ExecutionDataReader(input);
+			reader.setSessionInfoVisitor(info -> {
+				sessionInfos.add(info);
+				stores.add(new ExecutionDataStore());
+			});
+			reader.setExecutionDataVisitor(data -> stores.get(stores.size() - 1).put(data));
+			reader.read();
+		}
+		for (int i = 0; i < sessionInfos.size(); i++) {
+			sessions.add(describe(new Dump(sessionInfos.get(i), stores.get(i))));
+		}
+		return sessions;
+	}
+
+	/** Returns a string with the session info and all execution data of the given dump. */
+	private static String describe(Dump dump) {
+		StringBuilder description = new StringBuilder(dump.info.getId()).append(' ')
+				.append(dump.info.getStartTimeStamp()).append(' ').append(dump.info.getDumpTimeStamp());
+		for (ExecutionData data : dump.store.getContents()) {
+			description.append('\n').append(data.getId()).append(' ').append(data.getName()).append(' ')
+					.append(Arrays.toString(data.getProbes()));
+		}
+		return description.toString();
+	}
+}
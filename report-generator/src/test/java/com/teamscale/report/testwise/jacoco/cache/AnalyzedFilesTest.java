@@ -0,0 +1,87 @@
+package com.teamscale.report.testwise.jacoco.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnalyzedFilesTest {
+
+	/** A modification time that is long enough in the past to be trusted. */
+	private static final long OLD_MODIFICATION_TIME = System.currentTimeMillis() - 60_000;
+
+	@TempDir
+	File tempDir;
+
+	@Test
+	void unchangedFileIsSkipped() throws IOException {
+		File file = createFile("A.class", OLD_MODIFICATION_TIME);
+		AnalyzedFiles analyzedFiles = new AnalyzedFiles();
+		assertThat(analyzedFiles.getClassCountIfUnchanged(file, attributes(file))).isNull();
+
+		analyzedFiles.markAnalyzed(file, attributes(file), System.currentTimeMillis(), 1);
+		assertThat(analyzedFiles.getClassCountIfUnchanged(file, attributes(file))).isNull();
+
+		analyzedFiles.commitPending();
+		assertThat(analyzedFiles.getClassCountIfUnchanged(file, attributes(file))).isEqualTo(1);
+	}
+
+	@Test
+	void modifiedFileIsAnalyzedAgain() throws IOException {
+		File file = createFile("A.class", OLD_MODIFICATION_TIME);
+		AnalyzedFiles analyzedFiles = new AnalyzedFiles();
+		analyzedFiles.markAnalyzed(file, attributes(file), System.currentTimeMillis(), 1);
+		analyzedFiles.commitPending();
+
+		assertThat(file.setLastModified(OLD_MODIFICATION_TIME + 5000)).isTrue();
+		assertThat(analyzedFiles.getClassCountIfUnchanged(file, attributes(file))).isNull();
+	}
+
+	@Test
+	void discardedAndRecentlyModifiedFilesAreNotRemembered() throws IOException {
+		File discardedFile = createFile("A.class", OLD_MODIFICATION_TIME);
+		File recentFile = createFile("B.class", System.currentTimeMillis());
+		AnalyzedFiles analyzedFiles = new AnalyzedFiles();
+
+		analyzedFiles.markAnalyzed(discardedFile, attributes(discardedFile), System.currentTimeMillis(), 1);
+		analyzedFiles.discardPending();
+		analyzedFiles.markAnalyzed(recentFile, attributes(recentFile), System.currentTimeMillis(), 1);
+		analyzedFiles.commitPending();
+
+		assertThat(analyzedFiles.getClassCountIfUnchanged(discardedFile, attributes(discardedFile))).isNull();
+		assertThat(analyzedFiles.getClassCountIfUnchanged(recentFile, attributes(recentFile))).isNull();
+	}
+
+	@Test
+	void directoryIsListedAgainOnlyAfterModification() throws IOException {
+		File directory = new File(tempDir, "classes");
+		assertThat(directory.mkdir()).isTrue();
+		createFile("classes/A.class", OLD_MODIFICATION_TIME);
+		assertThat(directory.setLastModified(OLD_MODIFICATION_TIME)).isTrue();
+		AnalyzedFiles analyzedFiles = new AnalyzedFiles();
+		assertThat(analyzedFiles.listDirectory(directory, attributes(directory))).hasSize(1);
+
+		createFile("classes/B.class", OLD_MODIFICATION_TIME);
+		assertThat(directory.setLastModified(OLD_MODIFICATION_TIME)).isTrue();
+		assertThat(analyzedFiles.listDirectory(directory, attributes(directory))).hasSize(1);
+
+		assertThat(directory.setLastModified(OLD_MODIFICATION_TIME + 5000)).isTrue();
+		assertThat(analyzedFiles.listDirectory(directory, attributes(directory))).hasSize(2);
+	}
+
+	private File createFile(String path, long lastModified) throws IOException {
+		File file = new File(tempDir, path);
+		Files.write(file.toPath(), new byte[]{1, 2, 3});
+		assertThat(file.setLastModified(lastModified)).isTrue();
+		return file;
+	}
+
+	private static BasicFileAttributes attributes(File file) throws IOException {
+		return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+	}
+}
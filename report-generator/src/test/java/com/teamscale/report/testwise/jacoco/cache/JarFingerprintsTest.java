@@ -0,0 +1,75 @@
+package com.teamscale.report.testwise.jacoco.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class JarFingerprintsTest {
+
+	@TempDir
+	File tempDir;
+
+	@Test
+	void identicalJarsHaveSameId() throws IOException {
+		File jar = createJar("a.jar", "content");
+		File copy = createJar("b.jar", "content");
+		JarFingerprints jarFingerprints = new JarFingerprints();
+
+		assertThat(jarFingerprints.getJarId(jar.getPath())).isNotNull()
+				.isEqualTo(jarFingerprints.getJarId(copy.getPath()));
+	}
+
+	@Test
+	void modifiedJarGetsNewId() throws IOException {
+		File jar = createJar("a.jar", "content");
+		JarFingerprints jarFingerprints = new JarFingerprints();
+		Long originalId = jarFingerprints.getJarId(jar.getPath());
+
+		createJar("a.jar", "other content");
+		assertThat(jar.setLastModified(jar.lastModified() + 5000)).isTrue();
+
+		assertThat(jarFingerprints.getJarId(jar.getPath())).isNotNull().isNotEqualTo(originalId);
+	}
+
+	@Test
+	void recentlyModifiedJarIsNotCached() throws IOException {
+		File jar = createJar("a.jar", "aaaaaaa");
+		long lastModified = jar.lastModified();
+		JarFingerprints jarFingerprints = new JarFingerprints();
+		Long originalId = jarFingerprints.getJarId(jar.getPath());
+
+		long originalSize = jar.length();
+		createJar("a.jar", "bbbbbbb");
+		assertThat(jar.setLastModified(lastModified)).isTrue();
+		assumeTrue(jar.length() == originalSize);
+
+		assertThat(jarFingerprints.getJarId(jar.getPath())).isNotNull().isNotEqualTo(originalId);
+	}
+
+	@Test
+	void nestedJarHasNoId() throws IOException {
+		File war = createJar("app.war", "content");
+		JarFingerprints jarFingerprints = new JarFingerprints();
+
+		assertThat(jarFingerprints.getJarId(war.getPath() + "@WEB-INF/lib/a.jar")).isNull();
+	}
+
+	private File createJar(String name, String content) throws IOException {
+		File jar = new File(tempDir, name);
+		try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(jar))) {
+			zip.putNextEntry(new ZipEntry("com/example/A.class"));
+			zip.write(content.getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		}
+		return jar;
+	}
+}
@@ -0,0 +1,98 @@
+package com.teamscale.report.testwise.model;
+
+import com.teamscale.report.testwise.model.builder.CoverageDigest;
+import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link TestwiseCoverage} class. */
+class TestwiseCoverageTest {
+
+	@Test
+	void identicalCoverageIsShared() {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		testwiseCoverage.add(createTest("test[1]", 1, 5));
+		testwiseCoverage.add(createTest("test[2]", 1, 5));
+		testwiseCoverage.add(createTest("other", 7, 9));
+
+		Map<String, TestCoverageBuilder> tests = getTestsByUniformPath(testwiseCoverage);
+		assertThat(tests.get("test[1]").getPaths()).isSameAs(tests.get("test[2]").getPaths());
+		assertThat(tests.get("test[1]").getCoverageDigest()).isEqualTo(tests.get("test[2]").getCoverageDigest())
+				.isNotEqualTo(tests.get("other").getCoverageDigest());
+	}
+
+	@Test
+	void sharedCoverageIsCopiedWhenMerging() {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		testwiseCoverage.add(createTest("test[1]", 1, 5));
+		testwiseCoverage.add(createTest("test[2]", 1, 5));
+		testwiseCoverage.add(createTest("test[2]", 7, 9));
+		testwiseCoverage.add(createTest("test[3]", 1, 5));
+
+		Map<String, TestCoverageBuilder> tests = getTestsByUniformPath(testwiseCoverage);
+		assertThat(getCoveredLines(tests.get("test[1]"))).isEqualTo("1-5");
+		assertThat(getCoveredLines(tests.get("test[2]"))).isEqualTo("1-5,7-9");
+		assertThat(getCoveredLines(tests.get("test[3]"))).isEqualTo("1-5");
+		assertThat(tests.get("test[2]").getCoverageDigest()).isNotEqualTo(tests.get("test[1]").getCoverageDigest());
+	}
+
+	@Test
+	void coverageIsStillSharedAfterFirstTestIsMerged() {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		testwiseCoverage.add(createTest("test[1]", 1, 5));
+		testwiseCoverage.add(createTest("test[2]", 1, 5));
+		testwiseCoverage.add(createTest("test[1]", 7, 9));
+		testwiseCoverage.add(createTest("test[3]", 1, 5));
+		testwiseCoverage.add(createTest("test[4]", 1, 5));
+		testwiseCoverage.add(createTest("test[4]", 7, 9));
+
+		Map<String, TestCoverageBuilder> tests = getTestsByUniformPath(testwiseCoverage);
+		assertThat(tests.get("test[2]").getPaths()).isSameAs(tests.get("test[3]").getPaths());
+		assertThat(getCoveredLines(tests.get("test[1]"))).isEqualTo("1-5,7-9");
+		assertThat(tests.get("test[1]").getPaths()).isSameAs(tests.get("test[4]").getPaths());
+	}
+
+	@Test
+	void coverageIsNotSharedAnymoreAfterOtherTestsAreMerged() {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		testwiseCoverage.add(createTest("test[1]", 1, 5));
+		testwiseCoverage.add(createTest("test[2]", 1, 5));
+		testwiseCoverage.add(createTest("test[2]", 7, 9));
+
+		TestCoverageBuilder test = getTestsByUniformPath(testwiseCoverage).get("test[1]");
+		assertThat(test.getPaths()).isNotSameAs(test.getPaths());
+	}
+
+	@Test
+	void digestOfBuilderMatchesDigestOfBuiltCoverage() {
+		TestCoverageBuilder test = createTest("test", 1, 5);
+		FileCoverageBuilder otherFile = new FileCoverageBuilder("other/path", "Other.java");
+		otherFile.addLine(42);
+		test.add(otherFile);
+
+		assertThat(test.getCoverageDigest()).isEqualTo(CoverageDigest.of(test.getPaths()));
+	}
+
+	private static TestCoverageBuilder createTest(String uniformPath, int firstLine, int lastLine) {
+		FileCoverageBuilder file = new FileCoverageBuilder("com/example", "Example.java");
+		file.addLineRange(firstLine, lastLine);
+		TestCoverageBuilder test = new TestCoverageBuilder(uniformPath);
+		test.add(file);
+		return test;
+	}
+
+	private static Map<String, TestCoverageBuilder> getTestsByUniformPath(TestwiseCoverage testwiseCoverage) {
+		return testwiseCoverage.getTests().stream()
+				.collect(Collectors.toMap(TestCoverageBuilder::getUniformPath, Function.identity()));
+	}
+
+	private static String getCoveredLines(TestCoverageBuilder test) {
+		return test.getPaths().get(0).getFiles().get(0).coveredLines;
+	}
+}
@@ -0,0 +1,35 @@
+package com.teamscale.report.testwise.model.builder;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests the {@link SourceFileRegistry} class. */
+class SourceFileRegistryTest {
+
+	@Test
+	void sameFileIsReturnedForEqualNames() {
+		SourceFileRegistry registry = new SourceFileRegistry();
+		SourceFile file = registry.get(new String("com/example"), "Example.java");
+
+		assertThat(registry.get(new String("com/example"), "Example.java")).isSameAs(file);
+		assertThat(registry.get(new String("com/example"), "Other.java").getPath()).isSameAs(file.getPath());
+		assertThat(registry.get("com/other", "Example.java")).isNotEqualTo(file);
+	}
+
+	@Test
+	void coverageOfClassesInSameFileIsMerged() {
+		SourceFileRegistry registry = new SourceFileRegistry();
+		FileCoverageBuilder outerClass = new FileCoverageBuilder(registry.get("com/example", "Example.java"));
+		outerClass.addLineRange(1, 3);
+		FileCoverageBuilder innerClass = new FileCoverageBuilder(registry.get("com/example", "Example.java"));
+		innerClass.addLine(10);
+
+		TestCoverageBuilder test = new TestCoverageBuilder("test");
+		test.add(outerClass);
+		test.add(innerClass);
+
+		assertThat(test.getFiles()).hasSize(1);
+		assertThat(test.getPaths().get(0).getFiles().get(0).coveredLines).isEqualTo("1-3,10");
+	}
+}
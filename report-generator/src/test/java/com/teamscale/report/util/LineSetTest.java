@@ -0,0 +1,85 @@
+package com.teamscale.report.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LineSetTest {
+
+	@Test
+	void emptySet() {
+		LineSet lineSet = new LineSet();
+		assertThat(lineSet.isEmpty()).isTrue();
+		assertThat(lineSet.size()).isZero();
+		assertThat(lineSet.nextLine(0)).isEqualTo(-1);
+	}
+
+	@Test
+	void addReversed() {
+		LineSet lineSet = setOf(300, 130, 5, 2, 0);
+		assertThat(linesOf(lineSet)).containsExactly(0, 2, 5, 130, 300);
+		assertThat(lineSet.size()).isEqualTo(5);
+	}
+
+	@Test
+	void addDuplicates() {
+		LineSet lineSet = setOf(7, 7, 64, 64);
+		assertThat(linesOf(lineSet)).containsExactly(7, 64);
+	}
+
+	@Test
+	void addRangeAcrossWords() {
+		LineSet lineSet = new LineSet();
+		lineSet.addRange(60, 200);
+		assertThat(lineSet.size()).isEqualTo(141);
+		assertThat(lineSet.nextLine(0)).isEqualTo(60);
+		assertThat(lineSet.nextAbsentLine(60)).isEqualTo(201);
+	}
+
+	@Test
+	void mergeWithOverlap() {
+		LineSet lineSet = setOf(1, 2, 5, 8, 9);
+		lineSet.addAll(setOf(3, 4, 5, 1000));
+		assertThat(linesOf(lineSet)).containsExactly(1, 2, 3, 4, 5, 8, 9, 1000);
+	}
+
+	@Test
+	void mergeWithEmptySet() {
+		LineSet lineSet = setOf(1, 2);
+		lineSet.addAll(new LineSet());
+		assertThat(linesOf(lineSet)).containsExactly(1, 2);
+
+		LineSet emptySet = new LineSet();
+		emptySet.addAll(lineSet);
+		assertThat(linesOf(emptySet)).containsExactly(1, 2);
+	}
+
+	@Test
+	void nextLineAndAbsentLine() {
+		LineSet lineSet = setOf(10, 11, 12, 127, 128);
+		assertThat(lineSet.nextLine(13)).isEqualTo(127);
+		assertThat(lineSet.nextAbsentLine(10)).isEqualTo(13);
+		assertThat(lineSet.nextAbsentLine(127)).isEqualTo(129);
+		assertThat(lineSet.nextAbsentLine(500)).isEqualTo(500);
+		assertThat(lineSet.nextLine(129)).isEqualTo(-1);
+		assertThat(lineSet.contains(127)).isTrue();
+		assertThat(lineSet.contains(126)).isFalse();
+	}
+
+	private static LineSet setOf(int... lines) {
+		LineSet lineSet = new LineSet();
+		for (int line : lines) {
+			lineSet.add(line);
+		}
+		return lineSet;
+	}
+
+	private static List<Integer> linesOf(LineSet lineSet) {
+		List<Integer> lines = new ArrayList<>();
+		lineSet.forEach(lines::add);
+		return lines;
+	}
+}
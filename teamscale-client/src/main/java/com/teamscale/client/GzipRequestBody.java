@@ -0,0 +1,44 @@
+package com.teamscale.client;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import java.io.IOException;
+
+/**
+ * Compresses another {@link RequestBody} with gzip while it is sent, so that the compressed body never needs to be
+ * kept in memory. As the compressed length is not known upfront, the body is sent with chunked transfer encoding. The
+ * request must declare {@code Content-Encoding: gzip}.
+ */
+/* package */ class GzipRequestBody extends RequestBody {
+
+	/** The value of the {@code Content-Encoding} header for requests with this body. */
+	/* package */ static final String CONTENT_ENCODING = "gzip";
+
+	/** The body that is compressed. */
+	private final RequestBody body;
+
+	/* package */ GzipRequestBody(RequestBody body) {
+		this.body = body;
+	}
+
+	@Override
+	public MediaType contentType() {
+		return body.contentType();
+	}
+
+	@Override
+	public long contentLength() {
+		return -1;
+	}
+
+	@Override
+	public void writeTo(BufferedSink sink) throws IOException {
+		try (BufferedSink gzipSink = Okio.buffer(new GzipSink(sink))) {
+			body.writeTo(gzipSink);
+		}
+	}
+}
@@ -9,6 +9,7 @@ import retrofit2.Retrofit;
 import retrofit2.http.Body;
 import retrofit2.http.DELETE;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.Multipart;
 import retrofit2.http.POST;
 import retrofit2.http.PUT;
@@ -105,6 +106,47 @@ public interface ITeamscaleService {
 			@Part List<MultipartBody.Part> report
 	);
 
+	/**
+	 * Creates a session to which multiple reports can be uploaded with separate requests. The reports are processed
+	 * together once the session is committed.
+	 *
+	 * @return The ID of the session.
+	 * @see #uploadExternalReport(String, String, CommitDescriptor, String, Boolean, String, String, RequestBody)
+	 */
+	@POST("api/v5.9.0/projects/{projectName}/external-analysis/session")
+	Call<ResponseBody> createSession(
+			@Path("projectName") String projectName,
+			@Query("t") CommitDescriptor commit,
+			@Query("revision") String revision,
+			@Query("movetolastcommit") Boolean moveToLastCommit,
+			@Query("partition") String partition,
+			@Query("message") String message
+	);
+
+	/**
+	 * Uploads a report to the given session.
+	 *
+	 * @param contentEncoding The encoding with which the multipart body is compressed, e.g. {@code gzip}, or null if
+	 *                        it is not compressed.
+	 * @param multipartBody   The multipart body that contains the report in the {@code report} part.
+	 * @see #createSession(String, CommitDescriptor, String, Boolean, String, String)
+	 */
+	@POST("api/v5.9.0/projects/{projectName}/external-analysis/session/{sessionId}/report")
+	Call<ResponseBody> uploadReportToSession(
+			@Path("projectName") String projectName,
+			@Path("sessionId") String sessionId,
+			@Query("format") EReportFormat format,
+			@Header("Content-Encoding") String contentEncoding,
+			@Body RequestBody multipartBody
+	);
+
+	/** Commits the given session, which lets Teamscale process all reports uploaded to it. */
+	@POST("api/v5.9.0/projects/{projectName}/external-analysis/session/{sessionId}")
+	Call<ResponseBody> commitSession(
+			@Path("projectName") String projectName,
+			@Path("sessionId") String sessionId
+	);
+
 	/** Retrieve clustered impacted tests based on the given available tests and baseline timestamp. */
 	@PUT("api/v8.0.0/projects/{projectName}/impacted-tests")
 	Call<List<PrioritizableTestCluster>> getImpactedTests(
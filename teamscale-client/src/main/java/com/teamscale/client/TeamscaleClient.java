@@ -197,4 +197,71 @@ public class TeamscaleClient {
 		RequestBody requestBody = RequestBody.create(MultipartBody.FORM, report);
 		service.uploadReport(projectId, commitDescriptor, revision, partition, reportFormat, message, requestBody);
 	}
+
+	/**
+	 * Uploads the given reports to Teamscale in a single session with one request per report. Teamscale processes the
+	 * reports together like a single upload once all of them have been uploaded. This allows to split huge reports, e.g.
+	 * testwise coverage, into several parts without hitting request size limits of the server. The reports are streamed
+	 * from disk.
+	 *
+	 * @param compress Whether the requests are compressed with gzip on the fly. The server must accept requests with
+	 *                 {@code Content-Encoding: gzip}.
+	 */
+	public void uploadReportsInSession(EReportFormat reportFormat, List<File> reports,
+									   CommitDescriptor commitDescriptor, String revision, String partition,
+									   String message, boolean compress) throws IOException {
+		Boolean moveToLastCommit = false;
+		if (revision != null) {
+			// When uploading to a revision, we don't need commit adjustment.
+			commitDescriptor = null;
+			moveToLastCommit = null;
+		}
+		String sessionId;
+		try (ResponseBody body = checkSuccessful(
+				service.createSession(projectId, commitDescriptor, revision, moveToLastCommit, partition, message)
+						.execute(), "create upload session")) {
+			sessionId = readSessionId(body);
+		}
+
+		for (File report : reports) {
+			RequestBody requestBody = new MultipartBody.Builder().setType(MultipartBody.FORM)
+					.addFormDataPart("report", report.getName(), RequestBody.create(MultipartBody.FORM, report))
+					.build();
+			String contentEncoding = null;
+			if (compress) {
+				requestBody = new GzipRequestBody(requestBody);
+				contentEncoding = GzipRequestBody.CONTENT_ENCODING;
+			}
+			try (ResponseBody ignored = checkSuccessful(service.uploadReportToSession(projectId, sessionId,
+					reportFormat, contentEncoding, requestBody).execute(), "upload " + report)) {
+				// only the status of the response is relevant
+			}
+		}
+
+		try (ResponseBody ignored = checkSuccessful(service.commitSession(projectId, sessionId).execute(),
+				"commit upload session")) {
+			// only the status of the response is relevant
+		}
+	}
+
+	/** Returns the body of the given response or throws an {@link IOException} if the request was not successful. */
+	private static ResponseBody checkSuccessful(Response<ResponseBody> response, String action) throws IOException {
+		if (!response.isSuccessful()) {
+			throw new IOException("Failed to " + action + ". HTTP request failed with error code " + response.code()
+					+ ": " + HttpUtils.getErrorBodyStringSafe(response));
+		}
+		return response.body();
+	}
+
+	/** Reads the session ID from the body of a session creation response, which may be a plain or JSON string. */
+	private static String readSessionId(ResponseBody body) throws IOException {
+		if (body == null) {
+			throw new IOException("Teamscale did not return an ID for the upload session.");
+		}
+		String sessionId = body.string().trim();
+		if (sessionId.length() >= 2 && sessionId.startsWith("\"") && sessionId.endsWith("\"")) {
+			sessionId = sessionId.substring(1, sessionId.length() - 1);
+		}
+		return sessionId;
+	}
 }
@@ -0,0 +1,100 @@
+package com.teamscale.client;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.GzipSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Tests the report upload of the {@link TeamscaleClient}. */
+class TeamscaleClientTest {
+
+	private MockWebServer mockTeamscale;
+
+	private TeamscaleClient client;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		mockTeamscale = new MockWebServer();
+		mockTeamscale.start();
+		client = new TeamscaleClient(mockTeamscale.url("/").toString(), "user", "token", "project");
+	}
+
+	@Test
+	void uploadsCompressedReportsInOneSession(@TempDir File tempDir) throws Exception {
+		File firstReport = writeReport(tempDir, "report-1.json", "{\"tests\":[1]}");
+		File secondReport = writeReport(tempDir, "report-2.json", "{\"tests\":[2]}");
+		mockTeamscale.enqueue(new MockResponse().setBody("\"session-id\""));
+		mockTeamscale.enqueue(new MockResponse());
+		mockTeamscale.enqueue(new MockResponse());
+		mockTeamscale.enqueue(new MockResponse());
+
+		client.uploadReportsInSession(EReportFormat.TESTWISE_COVERAGE, Arrays.asList(firstReport, secondReport),
+				new CommitDescriptor("master", 1234), null, "partition", "message", true);
+
+		RecordedRequest createSession = mockTeamscale.takeRequest();
+		assertThat(createSession.getPath()).startsWith("/api/v5.9.0/projects/project/external-analysis/session?")
+				.contains("partition=partition");
+		for (File report : Arrays.asList(firstReport, secondReport)) {
+			RecordedRequest upload = mockTeamscale.takeRequest();
+			assertThat(upload.getPath()).isEqualTo(
+					"/api/v5.9.0/projects/project/external-analysis/session/session-id/report?format=TESTWISE_COVERAGE");
+			assertThat(upload.getHeader("Content-Encoding")).isEqualTo("gzip");
+			assertThat(decompress(upload.getBody())).contains("filename=\"" + report.getName() + "\"")
+					.contains(new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8));
+		}
+		assertThat(mockTeamscale.takeRequest().getPath()).isEqualTo(
+				"/api/v5.9.0/projects/project/external-analysis/session/session-id");
+	}
+
+	@Test
+	void failsIfReportIsRejected(@TempDir File tempDir) throws Exception {
+		File report = writeReport(tempDir, "report.json", "{\"tests\":[]}");
+		mockTeamscale.enqueue(new MockResponse().setBody("session-id"));
+		mockTeamscale.enqueue(new MockResponse().setResponseCode(413).setBody("Request too large"));
+
+		assertThatThrownBy(() -> client.uploadReportsInSession(EReportFormat.TESTWISE_COVERAGE,
+				Arrays.asList(report), null, "revision", "partition", "message", false))
+				.isInstanceOf(IOException.class).hasMessageContaining("413");
+
+		mockTeamscale.takeRequest();
+		RecordedRequest upload = mockTeamscale.takeRequest();
+		assertThat(upload.getPath()).contains("/session/session-id/report");
+		assertThat(upload.getHeader("Content-Encoding")).isNull();
+		assertThat(mockTeamscale.getRequestCount()).isEqualTo(2);
+	}
+
+	private static File writeReport(File directory, String name, String content) throws IOException {
+		File report = new File(directory, name);
+		Files.write(report.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return report;
+	}
+
+	private static String decompress(Buffer body) throws IOException {
+		Buffer decompressed = new Buffer();
+		try (GzipSource source = new GzipSource(body)) {
+			while (source.read(decompressed, Long.MAX_VALUE) != -1) {
+				// read everything
+			}
+		}
+		return decompressed.readUtf8();
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		mockTeamscale.shutdown();
+	}
+}
@@ -47,6 +47,29 @@ open class TestwiseCoverageReportTask : DefaultTask() {
     @InputFiles
     val classDirs = mutableSetOf<FileCollection>()
 
+    /**
+     * File in which the analysis results of the class files are persisted between builds. Classes that are already
+     * contained in this file are not analyzed again. Persistence is disabled if this is null.
+     */
+    @Internal
+    var probesCacheFile: File? = null
+
+    /** The number of threads used to analyze the class files. */
+    @Internal
+    var analysisThreads: Int = 1
+
+    /** The number of threads used to convert the sessions of the execution data files. */
+    @Internal
+    var conversionThreads: Int = 1
+
+    /**
+     * Regular expression that the IDs (uniform paths) of the tests must match completely to be included in the
+     * testwise coverage. All tests are included if this is null.
+     */
+    @Input
+    @Optional
+    var testIdPattern: String? = null
+
     /** The upload task that will be executed afterwards. */
     @Internal
     lateinit var uploadTask: TeamscaleUploadTask
@@ -93,6 +116,8 @@ open class TestwiseCoverageReportTask : DefaultTask() {
             classDirs.flatMap { it.files },
             agentFilter.getPredicate(),
             EDuplicateClassFileBehavior.IGNORE,
+            probesCacheFile,
+            analysisThreads,
             project.logger.wrapInILogger()
         )
 
@@ -138,8 +163,11 @@ open class TestwiseCoverageReportTask : DefaultTask() {
         logger.info("Generating testwise coverage for $jacocoExecutionData")
 
         val testwiseCoverage = TestwiseCoverage()
+        val sessionIdFilter = JaCoCoTestwiseReportGenerator.matchingSessionIds(testIdPattern)
         for (file in jacocoExecutionData) {
-            testwiseCoverage.add(jaCoCoTestwiseReportGenerator.convert(file))
+            jaCoCoTestwiseReportGenerator.convertAndConsume(
+                file, sessionIdFilter, { testwiseCoverage.add(it) }, conversionThreads, true
+            )
         }
         return testwiseCoverage
     }
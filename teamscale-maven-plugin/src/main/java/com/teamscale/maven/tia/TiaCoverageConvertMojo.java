@@ -68,6 +68,45 @@ public class TiaCoverageConvertMojo extends AbstractMojo {
 	@Parameter()
 	public String outputFolder;
 
+	/**
+	 * File in which the analysis results of the class files are persisted between builds. Classes contained in this
+	 * file are not analyzed again. Persistence is disabled if not set.
+	 */
+	@Parameter()
+	public String probesCacheFile;
+
+	/**
+	 * The number of threads used to analyze the class files (Default is 1).
+	 */
+	@Parameter(defaultValue = "1")
+	public int analysisThreads;
+
+	/**
+	 * The number of threads used to convert the sessions of the execution data files (Default is 1).
+	 */
+	@Parameter(defaultValue = "1")
+	public int conversionThreads;
+
+	/**
+	 * The number of threads that write the split testwise coverage reports concurrently (Default is 1).
+	 */
+	@Parameter(defaultValue = "1")
+	public int writerThreads;
+
+	/**
+	 * Whether the testwise coverage reports are compressed with gzip, in which case they end with {@code .json.gz}
+	 * (Default is false).
+	 */
+	@Parameter(defaultValue = "false")
+	public boolean compressReports;
+
+	/**
+	 * Regular expression that the IDs (uniform paths) of the tests must match completely to be included in the
+	 * testwise coverage. All tests are included if not set.
+	 */
+	@Parameter()
+	public String testIdPattern;
+
 	/**
 	 * The running Maven session. Provided automatically by Maven.
 	 */
@@ -99,10 +138,12 @@ public class TiaCoverageConvertMojo extends AbstractMojo {
 		String reportFilePath = Paths.get(outputFolder, "testwise-coverage.json").toString();
 
 		try (TestwiseCoverageReportWriter coverageWriter = new TestwiseCoverageReportWriter(testInfoFactory,
-				new File(reportFilePath), splitAfter)) {
+				new File(reportFilePath), splitAfter, writerThreads, compressReports)) {
 			for (File executionDataFile : jacocoExecutionDataList) {
 				logger.info("Writing execution data for file: " + executionDataFile.getName());
-				generator.convertAndConsume(executionDataFile, coverageWriter);
+				generator.convertAndConsume(executionDataFile,
+						JaCoCoTestwiseReportGenerator.matchingSessionIds(testIdPattern), coverageWriter,
+						conversionThreads, true);
 			}
 		} catch (IOException e) {
 			throw new RuntimeException(e);
@@ -144,8 +185,13 @@ public class TiaCoverageConvertMojo extends AbstractMojo {
 		if (this.excludes != null) {
 			excludes = String.join(":", this.excludes);
 		}
+		File probesCacheFile = null;
+		if (!Strings.isNullOrEmpty(this.probesCacheFile)) {
+			probesCacheFile = new File(this.probesCacheFile);
+		}
 		return new JaCoCoTestwiseReportGenerator(classFiles,
-				new ClasspathWildcardIncludeFilter(includes, excludes), EDuplicateClassFileBehavior.WARN, logger);
+				new ClasspathWildcardIncludeFilter(includes, excludes), EDuplicateClassFileBehavior.WARN,
+				probesCacheFile, analysisThreads, logger);
 	}
 
 	private List<File> getClassDirectoriesOrZips(String projectBuildDir) throws AgentOptionParseException {